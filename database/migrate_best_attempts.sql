@@ -0,0 +1,49 @@
+-- Migration: materialized best attempts and covering indexes for leaderboard and results
+-- Run once against an existing quiz_system database created from an older quiz_schema.sql.
+-- Stop the server first: attempts saved while the backfill runs would be missing from
+-- best_attempts. Safe to re-run; the backfill rebuilds the table from quiz_attempts.
+USE quiz_system;
+
+CREATE TABLE IF NOT EXISTS best_attempts (
+    quiz_id INT NOT NULL,
+    student_id INT NOT NULL,
+    score INT NOT NULL,
+    time_taken INT NOT NULL,
+    attempt_id INT NOT NULL,
+    PRIMARY KEY (quiz_id, student_id)
+);
+
+-- Same ranking as the leaderboard: highest score, then fastest, then earliest attempt.
+-- A missing time_taken counts as 0, which is where the old query ranked NULLs.
+DELETE FROM best_attempts;
+INSERT INTO best_attempts (quiz_id, student_id, score, time_taken, attempt_id)
+SELECT quiz_id, student_id, score, time_taken, attempt_id FROM (
+    SELECT quiz_id, student_id, score, COALESCE(time_taken, 0) AS time_taken, attempt_id,
+           ROW_NUMBER() OVER (PARTITION BY quiz_id, student_id
+                              ORDER BY score DESC, COALESCE(time_taken, 0) ASC, attempt_id ASC) AS rn
+    FROM quiz_attempts
+) ranked
+WHERE rn = 1;
+
+-- Index creation is online (ALGORITHM=INPLACE) on InnoDB; on a large quiz_attempts it
+-- still takes a while
+DROP PROCEDURE IF EXISTS create_index_if_missing;
+DELIMITER //
+CREATE PROCEDURE create_index_if_missing(IN tbl VARCHAR(64), IN idx VARCHAR(64), IN ddl TEXT)
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.statistics
+                   WHERE table_schema = DATABASE() AND table_name = tbl AND index_name = idx) THEN
+        SET @ddl = ddl;
+        PREPARE stmt FROM @ddl;
+        EXECUTE stmt;
+        DEALLOCATE PREPARE stmt;
+    END IF;
+END //
+DELIMITER ;
+
+CALL create_index_if_missing('quiz_attempts', 'idx_attempt_student_date',
+    'CREATE INDEX idx_attempt_student_date ON quiz_attempts(student_id, attempt_date, attempt_id, quiz_id, score, total_questions, percentage, time_taken)');
+CALL create_index_if_missing('best_attempts', 'idx_best_rank',
+    'CREATE INDEX idx_best_rank ON best_attempts(quiz_id, score DESC, time_taken, attempt_id)');
+
+DROP PROCEDURE create_index_if_missing;
@@ -0,0 +1,44 @@
+-- Migration: item analysis totals
+-- Run once against an existing quiz_system database created from an older quiz_schema.sql.
+-- Stop the server first: the backfill reads student_answers, and attempts saved while it
+-- runs would be counted twice or not at all.
+USE quiz_system;
+
+CREATE TABLE IF NOT EXISTS item_stats (
+    question_id INT PRIMARY KEY,
+    quiz_id INT NOT NULL,
+    responses BIGINT NOT NULL DEFAULT 0,
+    correct BIGINT NOT NULL DEFAULT 0,
+    count_a BIGINT NOT NULL DEFAULT 0,
+    count_b BIGINT NOT NULL DEFAULT 0,
+    count_c BIGINT NOT NULL DEFAULT 0,
+    count_d BIGINT NOT NULL DEFAULT 0,
+    blank BIGINT NOT NULL DEFAULT 0,
+    sum_score BIGINT NOT NULL DEFAULT 0,
+    sum_score_sq BIGINT NOT NULL DEFAULT 0,
+    sum_score_correct BIGINT NOT NULL DEFAULT 0,
+    FOREIGN KEY (question_id) REFERENCES questions(question_id) ON DELETE CASCADE,
+    INDEX idx_item_stats_quiz (quiz_id)
+);
+
+-- Totals from every recorded answer. Attempts saved before per-question answers were
+-- stored have no student_answers rows and are not counted. SUM over only NULLs is NULL,
+-- hence the COALESCEs.
+DELETE FROM item_stats;
+INSERT INTO item_stats (question_id, quiz_id, responses, correct, count_a, count_b, count_c, count_d, blank,
+                        sum_score, sum_score_sq, sum_score_correct)
+SELECT sa.question_id, qa.quiz_id,
+       COUNT(*),
+       COALESCE(SUM(sa.is_correct), 0),
+       COALESCE(SUM(sa.selected_answer = 'A'), 0),
+       COALESCE(SUM(sa.selected_answer = 'B'), 0),
+       COALESCE(SUM(sa.selected_answer = 'C'), 0),
+       COALESCE(SUM(sa.selected_answer = 'D'), 0),
+       COALESCE(SUM(sa.selected_answer IS NULL), 0),
+       COALESCE(SUM(qa.score), 0),
+       COALESCE(SUM(qa.score * qa.score), 0),
+       COALESCE(SUM(IF(sa.is_correct, qa.score, 0)), 0)
+FROM student_answers sa
+JOIN quiz_attempts qa ON qa.attempt_id = sa.attempt_id
+JOIN questions q ON q.question_id = sa.question_id
+GROUP BY sa.question_id, qa.quiz_id;
@@ -67,6 +67,36 @@ CREATE TABLE student_answers (
     FOREIGN KEY (question_id) REFERENCES questions(question_id)
 );
 
+-- Each student's best attempt per quiz (highest score, then fastest), maintained by
+-- QuizDAO.saveQuizAttempts in the same transaction as the attempt, so leaderboards read
+-- the top rows of an index instead of ranking every attempt
+CREATE TABLE best_attempts (
+    quiz_id INT NOT NULL,
+    student_id INT NOT NULL,
+    score INT NOT NULL,
+    time_taken INT NOT NULL,
+    attempt_id INT NOT NULL,
+    PRIMARY KEY (quiz_id, student_id)
+);
+
+-- Running item-analysis totals per question (see server.ItemAnalysis), flushed by the
+-- server as increments; percent correct, option spread and discrimination derive from them
+CREATE TABLE item_stats (
+    question_id INT PRIMARY KEY,
+    quiz_id INT NOT NULL,
+    responses BIGINT NOT NULL DEFAULT 0,
+    correct BIGINT NOT NULL DEFAULT 0,
+    count_a BIGINT NOT NULL DEFAULT 0,
+    count_b BIGINT NOT NULL DEFAULT 0,
+    count_c BIGINT NOT NULL DEFAULT 0,
+    count_d BIGINT NOT NULL DEFAULT 0,
+    blank BIGINT NOT NULL DEFAULT 0,
+    sum_score BIGINT NOT NULL DEFAULT 0, -- attempt scores
+    sum_score_sq BIGINT NOT NULL DEFAULT 0, -- squared attempt scores
+    sum_score_correct BIGINT NOT NULL DEFAULT 0, -- scores of attempts that got this question right
+    FOREIGN KEY (question_id) REFERENCES questions(question_id) ON DELETE CASCADE
+);
+
 -- Insert default teacher account
 INSERT INTO users (username, password, full_name, role) 
 VALUES ('teacher', 'teacher123', 'Default Teacher', 'TEACHER');
@@ -83,4 +113,9 @@ CREATE INDEX idx_quiz_teacher ON quizzes(teacher_id);
 CREATE INDEX idx_quiz_active ON quizzes(is_active);
 CREATE INDEX idx_attempt_quiz ON quiz_attempts(quiz_id);
 CREATE INDEX idx_attempt_student ON quiz_attempts(student_id);
+-- Covers the results page: a student's attempts newest first, with every column it reads
+CREATE INDEX idx_attempt_student_date ON quiz_attempts(student_id, attempt_date, attempt_id, quiz_id, score, total_questions, percentage, time_taken);
+-- Covers the leaderboard: the first 10 entries for a quiz in rank order
+CREATE INDEX idx_best_rank ON best_attempts(quiz_id, score DESC, time_taken, attempt_id);
 CREATE INDEX idx_answers_attempt ON student_answers(attempt_id);
+CREATE INDEX idx_item_stats_quiz ON item_stats(quiz_id);
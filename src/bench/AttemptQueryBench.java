@@ -0,0 +1,204 @@
+package bench;
+
+import model.Quiz;
+import model.QuizAttempt;
+import server.DatabaseConnection;
+import server.LatencyHistogram;
+import server.QuizDAO;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * Fills the configured MySQL database with generated attempts, then times the leaderboard
+ * and results queries against the queries they replaced, on the same data.
+ *
+ * Usage: java bench.AttemptQueryBench [--attempts=10000000] [--students=100000] [--quizzes=1000]
+ *        [--runs=500] [--skip-generate]
+ *
+ * Generation creates gen-student-N users and "Generated quiz N" quizzes, then saves
+ * attempts through QuizDAO.saveQuizAttempts in batches, so best_attempts is maintained
+ * the way the server maintains it. Quiz popularity is skewed (a few quizzes get most
+ * attempts), which is where the old leaderboard query hurt. Attempts carry no per-question
+ * answers. 10M attempts take a while; --skip-generate reuses the data of an earlier run.
+ * Use a scratch database with the current quiz_schema.sql (or migrate_best_attempts.sql).
+ *
+ *   leaderboard         QuizDAO.getLeaderboard: top rows of idx_best_rank
+ *   leaderboard-window  the previous ROW_NUMBER() query over every attempt of the quiz
+ *   results             QuizDAO.getStudentResults: idx_attempt_student_date, covering
+ *   results-sort        the previous query, made to ignore the covering index
+ */
+public class AttemptQueryBench {
+	private static final String PREFIX = "gen-student-";
+	private static final int BATCH = 1000;
+
+	private static final String LEADERBOARD_WINDOW = "SELECT qa.*, u.full_name as student_name, q.quiz_name " +
+		"FROM quiz_attempts qa " +
+		"JOIN users u ON qa.student_id = u.user_id " +
+		"JOIN quizzes q ON qa.quiz_id = q.quiz_id " +
+		"WHERE qa.quiz_id = ? AND qa.attempt_id IN ( " +
+		"  SELECT attempt_id FROM ( " +
+		"    SELECT attempt_id, ROW_NUMBER() OVER ( " +
+		"      PARTITION BY student_id " +
+		"      ORDER BY score DESC, time_taken ASC " +
+		"    ) as rn " +
+		"    FROM quiz_attempts " +
+		"    WHERE quiz_id = ? " +
+		"  ) ranked WHERE rn = 1 " +
+		") " +
+		"ORDER BY qa.score DESC, qa.time_taken ASC " +
+		"LIMIT 10";
+
+	private static final String RESULTS_SORT = "SELECT qa.*, q.quiz_name " +
+		"FROM quiz_attempts qa IGNORE INDEX (idx_attempt_student_date) " +
+		"JOIN quizzes q ON qa.quiz_id = q.quiz_id " +
+		"WHERE qa.student_id = ? " +
+		"ORDER BY qa.attempt_date DESC";
+
+	private interface Query {
+		void run(int id) throws SQLException;
+	}
+
+	public static void main(String[] args) throws Exception {
+		long attempts = Long.parseLong(ConnectionScaleBench.option(args, "attempts", "10000000"));
+		int students = Integer.parseInt(ConnectionScaleBench.option(args, "students", "100000"));
+		int quizCount = Integer.parseInt(ConnectionScaleBench.option(args, "quizzes", "1000"));
+		int runs = Integer.parseInt(ConnectionScaleBench.option(args, "runs", "500"));
+		boolean generate = !Arrays.asList(args).contains("--skip-generate");
+
+		QuizDAO dao = new QuizDAO();
+		try {
+			if (generate) {
+				generate(dao, attempts, students, quizCount);
+			}
+			int[] studentIds = ids("SELECT user_id FROM users WHERE username LIKE '" + PREFIX + "%' ORDER BY user_id");
+			int[] quizIds = ids("SELECT quiz_id FROM quizzes WHERE quiz_name LIKE 'Generated quiz %' ORDER BY quiz_id");
+			if (studentIds.length == 0 || quizIds.length == 0) {
+				throw new IllegalStateException("No generated data; run without --skip-generate first");
+			}
+			System.out.printf("attempts=%d students=%d quizzes=%d runs=%d%n",
+				count("SELECT COUNT(*) FROM quiz_attempts"), studentIds.length, quizIds.length, runs);
+
+			Random random = new Random(7);
+			System.out.printf("%-19s %10s %10s %10s %10s%n", "query", "mean ms", "p50 ms", "p99 ms", "max ms");
+			time("leaderboard", runs, () -> popular(quizIds, random), dao::getLeaderboard);
+			time("leaderboard-window", runs, () -> popular(quizIds, random), id -> drain(LEADERBOARD_WINDOW, id, id));
+			time("results", runs, () -> studentIds[random.nextInt(studentIds.length)], dao::getStudentResults);
+			time("results-sort", runs, () -> studentIds[random.nextInt(studentIds.length)], id -> drain(RESULTS_SORT, id));
+		} finally {
+			DatabaseConnection.closeConnection();
+		}
+	}
+
+	private static void generate(QuizDAO dao, long attempts, int students, int quizCount) throws SQLException {
+		try (Connection conn = DatabaseConnection.getConnection();
+			 PreparedStatement stmt = conn.prepareStatement(
+				 "INSERT IGNORE INTO users (username, password, full_name, role) VALUES (?, ?, ?, ?)")) {
+			for (int i = 0; i < students + 1; i++) {
+				boolean teacher = i == students;
+				stmt.setString(1, teacher ? "gen-teacher" : PREFIX + i);
+				stmt.setString(2, "generated");
+				stmt.setString(3, teacher ? "Generated Teacher" : "Generated Student " + i);
+				stmt.setString(4, teacher ? "TEACHER" : "STUDENT");
+				stmt.addBatch();
+				if (i % BATCH == BATCH - 1) {
+					stmt.executeBatch();
+				}
+			}
+			stmt.executeBatch();
+		}
+		int teacherId = dao.findUserByUsername("gen-teacher").getUserId();
+		int[] studentIds = ids("SELECT user_id FROM users WHERE username LIKE '" + PREFIX + "%' ORDER BY user_id");
+
+		List<Quiz> quizzes = new ArrayList<>(quizCount);
+		for (int i = 0; i < quizCount; i++) {
+			Quiz quiz = new Quiz("Generated quiz " + i, teacherId, 30);
+			quiz.setTotalQuestions(20);
+			quizzes.add(quiz);
+		}
+		int[] quizIds = dao.createQuizzes(quizzes);
+
+		Random random = new Random(42);
+		List<QuizAttempt> batch = new ArrayList<>(BATCH);
+		long start = System.nanoTime();
+		for (long n = 1; n <= attempts; n++) {
+			int score = random.nextInt(21);
+			QuizAttempt attempt = new QuizAttempt(popular(quizIds, random), studentIds[random.nextInt(studentIds.length)],
+				score, 20, 60 + random.nextInt(1140));
+			batch.add(attempt);
+			if (batch.size() == BATCH || n == attempts) {
+				dao.saveQuizAttempts(batch);
+				batch.clear();
+			}
+			if (n % 1_000_000 == 0) {
+				double seconds = (System.nanoTime() - start) / 1e9;
+				System.out.printf("generated %d attempts, %.0f/s%n", n, n / seconds);
+			}
+		}
+	}
+
+	/**
+	 * Skewed choice: the first quizzes get most of the attempts
+	 */
+	private static int popular(int[] quizIds, Random random) {
+		double r = random.nextDouble();
+		return quizIds[(int) (quizIds.length * r * r * r)];
+	}
+
+	private static void time(String name, int runs, IntSupplier ids, Query query) throws SQLException {
+		// Warm the buffer pool and the statement caches first
+		for (int i = 0; i < Math.max(10, runs / 10); i++) {
+			query.run(ids.getAsInt());
+		}
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < runs; i++) {
+			int id = ids.getAsInt();
+			long start = System.nanoTime();
+			query.run(id);
+			histogram.record(System.nanoTime() - start);
+		}
+		System.out.printf("%-19s %10.2f %10.2f %10.2f %10.2f%n", name, histogram.getMeanNanos() / 1e6,
+			histogram.percentileNanos(0.50) / 1e6, histogram.percentileNanos(0.99) / 1e6, histogram.getMaxNanos() / 1e6);
+	}
+
+	private static void drain(String query, int... params) throws SQLException {
+		try (Connection conn = DatabaseConnection.getConnection();
+			 PreparedStatement stmt = conn.prepareStatement(query)) {
+			for (int i = 0; i < params.length; i++) {
+				stmt.setInt(i + 1, params[i]);
+			}
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					rs.getInt(1);
+				}
+			}
+		}
+	}
+
+	private static int[] ids(String query) throws SQLException {
+		List<Integer> ids = new ArrayList<>();
+		try (Connection conn = DatabaseConnection.getConnection();
+			 PreparedStatement stmt = conn.prepareStatement(query);
+			 ResultSet rs = stmt.executeQuery()) {
+			while (rs.next()) {
+				ids.add(rs.getInt(1));
+			}
+		}
+		return ids.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	private static long count(String query) throws SQLException {
+		try (Connection conn = DatabaseConnection.getConnection();
+			 PreparedStatement stmt = conn.prepareStatement(query);
+			 ResultSet rs = stmt.executeQuery()) {
+			return rs.next() ? rs.getLong(1) : 0;
+		}
+	}
+}
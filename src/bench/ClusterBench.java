@@ -0,0 +1,204 @@
+package bench;
+
+import common.Protocol;
+import loadgen.StubQuizDAO;
+import server.LoopbackClusterBackend;
+import server.QuizServer;
+import server.ServerContext;
+import server.ServerTransport;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Multi-node harness: starts N server nodes in this process, joined by a
+ * LoopbackClusterBackend and sharing one StubQuizDAO in place of the database, and drives
+ * them with students taking quizzes. Each client logs in once, then repeatedly runs
+ * START_QUIZ, one SUBMIT_ANSWER per question and FINISH_QUIZ against its node. Every
+ * --moveEvery attempts it drops its socket halfway through a quiz and RESUMEs on the
+ * next node, as it would after a load balancer re-route, so session takeover and the
+ * cross-node leaderboard events are part of the load.
+ *
+ * Usage: java bench.ClusterBench [--nodes=1,2,4] [--clients=64] [--seconds=10]
+ *        [--questions=10] [--moveEvery=20] [--port=9700]
+ *
+ * Reports requests/s and finished attempts/s for each node count. All nodes share this
+ * machine's cores, so the numbers show the coordination overhead of adding nodes rather
+ * than the extra capacity separate machines would bring.
+ */
+public class ClusterBench {
+	public static void main(String[] args) throws Exception {
+		String[] nodeCounts = ConnectionScaleBench.option(args, "nodes", "1,2,4").split(",");
+		int clients = Integer.parseInt(ConnectionScaleBench.option(args, "clients", "64"));
+		int seconds = Integer.parseInt(ConnectionScaleBench.option(args, "seconds", "10"));
+		int questions = Integer.parseInt(ConnectionScaleBench.option(args, "questions", "10"));
+		int moveEvery = Integer.parseInt(ConnectionScaleBench.option(args, "moveEvery", "20"));
+		int basePort = Integer.parseInt(ConnectionScaleBench.option(args, "port", "9700"));
+
+		StubQuizDAO dao = new StubQuizDAO(4, questions);
+		System.out.printf("%-6s %8s %12s %12s %8s%n", "nodes", "clients", "requests/s", "attempts/s", "moves");
+		for (String count : nodeCounts) {
+			run(Integer.parseInt(count.trim()), clients, seconds, moveEvery, basePort, dao);
+		}
+		System.exit(0);
+	}
+
+	private static void run(int nodes, int clients, int seconds, int moveEvery, int basePort, StubQuizDAO dao)
+			throws Exception {
+		LoopbackClusterBackend.Hub hub = new LoopbackClusterBackend.Hub();
+		List<ServerContext> contexts = new ArrayList<>();
+		List<ServerTransport> transports = new ArrayList<>();
+		for (int i = 0; i < nodes; i++) {
+			ServerContext context = new ServerContext(dao, hub.join());
+			ServerTransport transport = QuizServer.createTransport("nio", basePort + i, context);
+			transport.start();
+			contexts.add(context);
+			transports.add(transport);
+		}
+
+		LongAdder requests = new LongAdder();
+		LongAdder attempts = new LongAdder();
+		LongAdder moves = new LongAdder();
+		CountDownLatch loggedIn = new CountDownLatch(clients);
+		CountDownLatch done = new CountDownLatch(clients);
+		long[] deadline = new long[1];
+		for (int c = 0; c < clients; c++) {
+			int client = c;
+			Thread t = new Thread(() -> {
+				try {
+					new Student(client, nodes, basePort, dao, moveEvery, requests, attempts, moves)
+						.run(loggedIn, deadline);
+				} catch (Exception e) {
+					System.err.println("Client " + client + " failed: " + e);
+				} finally {
+					loggedIn.countDown();
+					done.countDown();
+				}
+			}, "bench-student-" + c);
+			t.start();
+		}
+		// Logins hash passwords; measure from when everyone is in
+		loggedIn.await();
+		long start = System.nanoTime();
+		long requestsAtStart = requests.sum();
+		long attemptsAtStart = attempts.sum();
+		synchronized (deadline) {
+			deadline[0] = start + seconds * 1_000_000_000L;
+			deadline.notifyAll();
+		}
+		done.await();
+		double elapsed = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("%-6d %8d %12.0f %12.0f %8d%n", nodes, clients,
+			(requests.sum() - requestsAtStart) / elapsed, (attempts.sum() - attemptsAtStart) / elapsed, moves.sum());
+
+		for (ServerTransport transport : transports) {
+			transport.stop();
+		}
+		for (ServerContext context : contexts) {
+			context.shutdown();
+		}
+	}
+
+	/**
+	 * One student on the line protocol, following the server's untagged replies in order
+	 */
+	private static final class Student {
+		private final int id;
+		private final int nodes;
+		private final int basePort;
+		private final int quizzes;
+		private final int questions;
+		private final int moveEvery;
+		private final LongAdder requests;
+		private final LongAdder attempts;
+		private final LongAdder moves;
+		private int node;
+		private Socket socket;
+		private BufferedReader in;
+		private PrintWriter out;
+
+		Student(int id, int nodes, int basePort, StubQuizDAO dao, int moveEvery,
+				LongAdder requests, LongAdder attempts, LongAdder moves) {
+			this.id = id;
+			this.nodes = nodes;
+			this.basePort = basePort;
+			this.quizzes = dao.getQuizCount();
+			this.questions = dao.getQuestionCount();
+			this.moveEvery = moveEvery;
+			this.requests = requests;
+			this.attempts = attempts;
+			this.moves = moves;
+			this.node = id % nodes;
+		}
+
+		void run(CountDownLatch loggedIn, long[] deadline) throws Exception {
+			connect();
+			String login = call(Protocol.LOGIN + "|||" + StubQuizDAO.USERNAME_PREFIX + id + "|||" + StubQuizDAO.PASSWORD);
+			if (!login.startsWith(Protocol.LOGIN_SUCCESS)) {
+				throw new IOException("Login failed: " + login);
+			}
+			String token = login.substring(login.lastIndexOf(Protocol.DELIMITER) + Protocol.DELIMITER.length());
+			loggedIn.countDown();
+			long end;
+			synchronized (deadline) {
+				while (deadline[0] == 0) {
+					deadline.wait();
+				}
+				end = deadline[0];
+			}
+
+			int quizId = 1 + id % quizzes;
+			int finished = 0;
+			while (System.nanoTime() < end) {
+				expect(call(Protocol.START_QUIZ + "|||" + quizId), Protocol.QUIZ_DATA);
+				for (int q = 0; q < questions; q++) {
+					if (q == questions / 2 && moveEvery > 0 && nodes > 1 && finished % moveEvery == moveEvery - 1) {
+						socket.close();
+						node = (node + 1) % nodes;
+						connect();
+						expect(call(Protocol.RESUME + "|||" + token), Protocol.RESUMED);
+						moves.increment();
+					}
+					expect(call(Protocol.SUBMIT_ANSWER + "|||" + quizId + "|||" + q + "|||" + "ABCD".charAt((id + q) & 3) + "|||1"),
+						Protocol.ANSWER_RECEIVED);
+				}
+				expect(call(Protocol.FINISH_QUIZ + "|||" + quizId + "|||" + questions), Protocol.QUIZ_RESULT);
+				attempts.increment();
+				finished++;
+			}
+			socket.close();
+		}
+
+		private void connect() throws IOException {
+			socket = new Socket("localhost", basePort + node);
+			socket.setTcpNoDelay(true);
+			in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			out = new PrintWriter(socket.getOutputStream(), true);
+		}
+
+		private String call(String line) throws IOException {
+			out.println(line);
+			String reply = in.readLine();
+			if (reply == null) {
+				throw new IOException("Connection closed by node " + node);
+			}
+			requests.increment();
+			return reply;
+		}
+
+		private static void expect(String reply, String command) throws IOException {
+			if (!reply.startsWith(command)) {
+				throw new IOException("Expected " + command + " but got " + reply);
+			}
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package bench;
+
+import common.BinaryWireFormat;
+import common.DeflateWireFormat;
+import common.Message;
+import common.Protocol;
+import common.WireFormat;
+
+import java.util.Random;
+
+/**
+ * Bytes saved by the DEFLATE wire format against the CPU it costs, per message and zlib
+ * level, next to plain binary.
+ *
+ * Usage: java bench.CompressionBench [--questions=50] [--textWords=40] [--iterations=20000]
+ *        [--mbps=20]
+ *
+ * Messages: a QUIZ_DATA whose questions and options are generated prose (--textWords
+ * words per question, a quarter of that per option), a 50-row page of results, and a
+ * small ANSWER_RECEIVED, which stays under the threshold and is only stored.
+ *
+ *   bytes       frame size on the wire
+ *   saved       bytes saved against binary
+ *   encode us   CPU per encode of an unshared message (a shared QUIZ_DATA is compressed
+ *               once and then costs what binary does)
+ *   decode us   CPU per decode, on the client
+ *   wire us     time the frame takes at --mbps, the classroom link's share per client
+ *
+ * Compression pays while encode + decode time is below the wire time it saves.
+ */
+public class CompressionBench {
+	private static final String[] WORDS = {
+		"the", "of", "network", "packet", "which", "layer", "address", "is", "a", "to", "routing", "protocol",
+		"in", "segment", "what", "frame", "for", "header", "does", "transport", "switch", "and", "checksum",
+		"port", "session", "when", "host", "gateway", "between", "data", "link", "sent", "receiver", "window",
+		"congestion", "control", "bandwidth", "latency", "table", "request", "response", "server", "client"
+	};
+
+	// Keeps results reachable so the JIT cannot drop the work
+	private static long sink;
+
+	public static void main(String[] args) throws Exception {
+		int questions = Integer.parseInt(ConnectionScaleBench.option(args, "questions", "50"));
+		int textWords = Integer.parseInt(ConnectionScaleBench.option(args, "textWords", "40"));
+		int iterations = Integer.parseInt(ConnectionScaleBench.option(args, "iterations", "20000"));
+		double mbps = Double.parseDouble(ConnectionScaleBench.option(args, "mbps", "20"));
+
+		Random random = new Random(11);
+		Message[] messages = {
+			quizData(random, questions, textWords),
+			resultsPage(random, 50),
+			Message.of(Protocol.ANSWER_RECEIVED, 7)
+		};
+		WireFormat[] formats = {
+			BinaryWireFormat.INSTANCE,
+			new DeflateWireFormat(DeflateWireFormat.DEFAULT_MIN_BYTES, 1),
+			new DeflateWireFormat(DeflateWireFormat.DEFAULT_MIN_BYTES, 6),
+			new DeflateWireFormat(DeflateWireFormat.DEFAULT_MIN_BYTES, 9)
+		};
+		String[] names = {"binary", "deflate-1", "deflate-6", "deflate-9"};
+
+		System.out.printf("link %.0f Mbit/s, %d questions of %d words%n", mbps, questions, textWords);
+		System.out.printf("%-16s %-10s %8s %7s %10s %10s %10s %10s%n", "message", "format", "bytes", "saved",
+			"encode us", "decode us", "wire us", "net us");
+		for (Message message : messages) {
+			int binaryBytes = BinaryWireFormat.INSTANCE.encode(message).length;
+			for (int f = 0; f < formats.length; f++) {
+				WireFormat format = formats[f];
+				byte[] frame = format.encode(message);
+				double encodeMicros = time(iterations, () -> format.encode(message).length);
+				double decodeMicros = time(iterations,
+					() -> format.decodeFrame(frame, 0, format.frameEnd(frame, 0, frame.length)).size());
+				double wireMicros = frame.length * 8 / mbps;
+				double savedMicros = (binaryBytes - frame.length) * 8 / mbps;
+				// Positive: the frame arrives sooner than it would uncompressed
+				double netMicros = f == 0 ? 0 : savedMicros - encodeMicros - decodeMicros;
+				System.out.printf("%-16s %-10s %8d %6.1f%% %10.1f %10.1f %10.1f %+10.1f%n", label(message),
+					names[f], frame.length, 100.0 * (binaryBytes - frame.length) / binaryBytes,
+					encodeMicros, decodeMicros, wireMicros, netMicros);
+			}
+		}
+	}
+
+	private interface Op {
+		long run() throws Exception;
+	}
+
+	/**
+	 * Microseconds per op, after the same number of iterations of warm-up
+	 */
+	private static double time(int iterations, Op op) throws Exception {
+		for (int i = 0; i < iterations; i++) {
+			sink += op.run();
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			sink += op.run();
+		}
+		return (System.nanoTime() - start) / 1000.0 / iterations;
+	}
+
+	private static String label(Message message) {
+		return message.getCommand().toLowerCase() + (message.size() > 1 ? "/" + message.size() : "");
+	}
+
+	private static Message quizData(Random random, int questions, int textWords) {
+		Message message = new Message(Protocol.QUIZ_DATA)
+			.add(42)
+			.add("Networking fundamentals")
+			.add(questions)
+			.add(1800);
+		for (int i = 0; i < questions; i++) {
+			message.addRow(1000 + i, prose(random, textWords) + "?", prose(random, textWords / 4),
+				prose(random, textWords / 4), prose(random, textWords / 4), prose(random, textWords / 4));
+		}
+		return message;
+	}
+
+	private static Message resultsPage(Random random, int rows) {
+		Message message = new Message(Protocol.ROWS);
+		for (int i = 0; i < rows; i++) {
+			int total = 10 + random.nextInt(40);
+			int score = random.nextInt(total + 1);
+			message.addRow(90_000 + i, "Quiz " + random.nextInt(500) + ": " + prose(random, 3), score, total,
+				String.format("%.2f", 100.0 * score / total), 60 + random.nextInt(1800),
+				"2026-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10) + " 1" + random.nextInt(10) + ":"
+					+ (10 + random.nextInt(50)) + ":" + (10 + random.nextInt(50)) + ".0");
+		}
+		return message;
+	}
+
+	private static String prose(Random random, int words) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < Math.max(1, words); i++) {
+			if (i > 0) {
+				text.append(' ');
+			}
+			text.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return text.toString();
+	}
+}
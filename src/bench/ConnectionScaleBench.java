@@ -0,0 +1,126 @@
+package bench;
+
+import common.Protocol;
+import server.QuizServer;
+import server.ServerContext;
+import server.ServerTransport;
+import server.VirtualThreads;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Connection-scaling load test: holds many idle sockets open while a subset of
+ * clients sends PING round-trips, then reports throughput and latency percentiles.
+ *
+ * Usage: java bench.ConnectionScaleBench [--embedded=nio|thread|virtual] [--host=localhost]
+ *        [--port=9999] [--connections=2000] [--active=200] [--seconds=20] [--virtual-clients]
+ *
+ * With --embedded the transport is started in-process (no database needed for PING),
+ * which makes it easy to compare modes on the same machine; jvmPeakThreads then
+ * includes the server's threads next to the benchmark's own active clients.
+ * --virtual-clients (JDK 21+) runs the active clients on virtual threads, which
+ * ThreadMXBean does not count, so jvmPeakThreads is left with the server's threads.
+ *
+ * The single-node target (10k idle + 1k active students) needs ~22k file descriptors:
+ *   ulimit -n 65536
+ *   java bench.ConnectionScaleBench --embedded=virtual --connections=11000 --active=1000 --virtual-clients
+ */
+public class ConnectionScaleBench {
+	public static void main(String[] args) throws Exception {
+		String embedded = option(args, "embedded", null);
+		String host = option(args, "host", "localhost");
+		int port = Integer.parseInt(option(args, "port", "9999"));
+		int connections = Integer.parseInt(option(args, "connections", "2000"));
+		int active = Integer.parseInt(option(args, "active", "200"));
+		int seconds = Integer.parseInt(option(args, "seconds", "20"));
+		ThreadFactory clientThreads = Arrays.asList(args).contains("--virtual-clients")
+			? VirtualThreads.factory("bench-client-")
+			: r -> new Thread(r);
+
+		ServerTransport transport = null;
+		if (embedded != null) {
+			transport = QuizServer.createTransport(embedded, port, new ServerContext());
+			transport.start();
+		}
+
+		List<Socket> idle = new ArrayList<>();
+		for (int i = 0; i < connections - active; i++) {
+			idle.add(new Socket(host, port));
+		}
+
+		long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+		long[][] samples = new long[active][];
+		int[] counts = new int[active];
+		CountDownLatch done = new CountDownLatch(active);
+		for (int i = 0; i < active; i++) {
+			int slot = i;
+			Thread t = clientThreads.newThread(() -> {
+				long[] latencies = new long[1 << 16];
+				int n = 0;
+				try (Socket socket = new Socket(host, port);
+					 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+					 PrintWriter out = new PrintWriter(socket.getOutputStream(), true)) {
+					socket.setTcpNoDelay(true);
+					while (System.nanoTime() < deadline) {
+						long start = System.nanoTime();
+						out.println(Protocol.PING);
+						if (in.readLine() == null) break;
+						if (n == latencies.length) latencies = Arrays.copyOf(latencies, n * 2);
+						latencies[n++] = System.nanoTime() - start;
+					}
+				} catch (IOException e) {
+					System.err.println("Client " + slot + " failed: " + e.getMessage());
+				}
+				samples[slot] = latencies;
+				counts[slot] = n;
+				done.countDown();
+			});
+			t.start();
+		}
+		done.await();
+
+		int total = 0;
+		for (int c : counts) total += c;
+		long[] all = new long[total];
+		int pos = 0;
+		for (int i = 0; i < active; i++) {
+			System.arraycopy(samples[i], 0, all, pos, counts[i]);
+			pos += counts[i];
+		}
+		Arrays.sort(all);
+
+		System.out.printf("mode=%s connections=%d active=%d requests=%d throughput=%.0f req/s " +
+				"p50=%.3fms p99=%.3fms p999=%.3fms jvmPeakThreads=%d%n",
+			embedded == null ? "remote" : embedded, connections, active, total, total / (double) seconds,
+			percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999),
+			ManagementFactory.getThreadMXBean().getPeakThreadCount());
+
+		for (Socket s : idle) s.close();
+		if (transport != null) transport.stop();
+		System.exit(0);
+	}
+
+	static double percentile(long[] sorted, double p) {
+		if (sorted.length == 0) return 0;
+		int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+		return sorted[Math.max(0, index)] / 1_000_000.0;
+	}
+
+	static String option(String[] args, String name, String defaultValue) {
+		String prefix = "--" + name + "=";
+		for (String arg : args) {
+			if (arg.startsWith(prefix)) return arg.substring(prefix.length());
+		}
+		return defaultValue;
+	}
+}
@@ -0,0 +1,113 @@
+package bench;
+
+import model.Question;
+import model.Quiz;
+import server.AnswerKey;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Grading throughput for one quiz: the compiled AnswerKey against the String
+ * comparison (Question.isCorrect) that FINISH_QUIZ used before.
+ *
+ * Usage: java bench.GradingBench [--questions=100] [--submissions=1024] [--rounds=20000]
+ *
+ *   legacy        equalsIgnoreCase per question on the submitted Strings
+ *   decode+score  AnswerKey.option() into a reused byte[], then AnswerKey.score()
+ *   score         AnswerKey.score() on already decoded answers
+ *
+ * Reports ns and bytes allocated per graded submission (HotSpot only, -1 elsewhere)
+ * and submissions per second on one thread.
+ */
+public class GradingBench {
+	// Keeps results reachable so the JIT cannot drop the work
+	private static long sink;
+
+	public static void main(String[] args) {
+		int questions = Integer.parseInt(ConnectionScaleBench.option(args, "questions", "100"));
+		int submissions = Integer.parseInt(ConnectionScaleBench.option(args, "submissions", "1024"));
+		int rounds = Integer.parseInt(ConnectionScaleBench.option(args, "rounds", "20000"));
+
+		Random random = new Random(42);
+		Quiz quiz = new Quiz("Bench", 1, 30);
+		for (int i = 0; i < questions; i++) {
+			Question q = new Question("Question " + i, "a", "b", "c", "d", letter(random.nextInt(4)));
+			q.setQuestionId(i + 1);
+			quiz.addQuestion(q);
+		}
+		AnswerKey key = AnswerKey.compile(quiz);
+		List<Question> questionList = quiz.getQuestions();
+
+		// Submitted answers as they arrive on the wire (one String per question) and pre-decoded
+		String[][] submitted = new String[submissions][questions];
+		byte[][] decoded = new byte[submissions][questions];
+		for (int s = 0; s < submissions; s++) {
+			for (int i = 0; i < questions; i++) {
+				submitted[s][i] = random.nextInt(10) == 0 ? "" : letter(random.nextInt(4));
+				decoded[s][i] = AnswerKey.option(submitted[s][i]);
+			}
+		}
+		byte[] buffer = new byte[questions];
+
+		System.out.printf("%-14s %10s %14s %12s%n", "grader", "ns/op", "submissions/s", "alloc B/op");
+		run("legacy", submissions, rounds, s -> {
+			int score = 0;
+			String[] answers = submitted[s];
+			for (int i = 0; i < answers.length; i++) {
+				if (questionList.get(i).isCorrect(answers[i])) {
+					score++;
+				}
+			}
+			return score;
+		});
+		run("decode+score", submissions, rounds, s -> {
+			String[] answers = submitted[s];
+			for (int i = 0; i < answers.length; i++) {
+				buffer[i] = AnswerKey.option(answers[i]);
+			}
+			return key.score(buffer);
+		});
+		run("score", submissions, rounds, s -> key.score(decoded[s]));
+	}
+
+	private interface Grader {
+		int grade(int submission);
+	}
+
+	private static void run(String name, int submissions, int rounds, Grader grader) {
+		long ops = (long) submissions * rounds;
+		// Warm-up to let the JIT settle before measuring
+		for (int r = 0; r < rounds; r++) {
+			for (int s = 0; s < submissions; s++) {
+				sink += grader.grade(s);
+			}
+		}
+		long allocBefore = allocatedBytes();
+		long start = System.nanoTime();
+		for (int r = 0; r < rounds; r++) {
+			for (int s = 0; s < submissions; s++) {
+				sink += grader.grade(s);
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		long allocated = allocatedBytes() - allocBefore;
+		System.out.printf("%-14s %10.1f %14.0f %12d%n", name, (double) elapsed / ops, ops * 1e9 / elapsed,
+			allocBefore < 0 ? -1 : allocated / ops);
+	}
+
+	private static String letter(int option) {
+		return String.valueOf((char) ('A' + option));
+	}
+
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
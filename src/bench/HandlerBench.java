@@ -0,0 +1,246 @@
+package bench;
+
+import common.BinaryWireFormat;
+import common.Message;
+import common.Protocol;
+import common.TextWireFormat;
+import common.WireFormat;
+import model.Question;
+import model.Quiz;
+import model.QuizAttempt;
+import model.StudentAnswer;
+import model.User;
+import server.DatabaseConnection;
+import server.InMemoryQuizRepository;
+import server.LocalConnection;
+import server.QuizDAO;
+import server.QuizRepository;
+import server.QuizServer;
+import server.ServerContext;
+import server.ServerTransport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Where the time of a student's quiz goes: the same session timed at three layers, so
+ * protocol and handler overhead can be told apart from storage cost.
+ *
+ *   repository  the QuizRepository calls the session needs, made directly
+ *   handler     the session's requests through ClientHandler and the server's caches and
+ *               write-behind, in-process (server.LocalConnection: no socket, no encoding)
+ *   protocol    the same requests over a loopback socket in the binary wire format,
+ *               one at a time, against an embedded transport
+ *
+ * A session is one page of GET_ACTIVE_QUIZZES, START_QUIZ, --questions SUBMIT_ANSWERs,
+ * FINISH_QUIZ and GET_LEADERBOARD, on one thread. Login (PBKDF2) happens once, before
+ * timing. handler - repository is roughly the handler's own cost (it can come out
+ * negative, since the handler serves quizzes and leaderboards from cache) and
+ * protocol - handler the cost of the transport and wire format.
+ *
+ * Usage: java bench.HandlerBench [--repository=memory|mysql] [--embedded=nio|thread|virtual]
+ *        [--port=9713] [--quizzes=50] [--questions=20] [--seconds=10]
+ *
+ * --repository=mysql adds a bench teacher, student and quizzes to the configured
+ * database on every run; point it at a scratch schema.
+ */
+public class HandlerBench {
+	private static final String TEACHER = "bench-teacher";
+	private static final String STUDENT = "bench-student";
+	private static final String PASSWORD = "bench";
+	private static final int PAGE = 20;
+
+	public static void main(String[] args) throws Exception {
+		String repositoryName = ConnectionScaleBench.option(args, "repository", "memory");
+		String mode = ConnectionScaleBench.option(args, "embedded", "nio");
+		int port = Integer.parseInt(ConnectionScaleBench.option(args, "port", "9713"));
+		int quizCount = Integer.parseInt(ConnectionScaleBench.option(args, "quizzes", "50"));
+		int questions = Integer.parseInt(ConnectionScaleBench.option(args, "questions", "20"));
+		int seconds = Integer.parseInt(ConnectionScaleBench.option(args, "seconds", "10"));
+
+		QuizRepository repository = "mysql".equals(repositoryName) ? new QuizDAO() : new InMemoryQuizRepository();
+		int[] quizIds = setUp(repository, quizCount, questions);
+		User student = repository.findUserByUsername(STUDENT);
+		int requestsPerSession = questions + 4;
+
+		ServerContext context = new ServerContext(repository);
+		ServerTransport transport = QuizServer.createTransport(mode, port, context);
+		transport.start();
+
+		System.out.printf("repository=%s transport=%s quizzes=%d questions=%d%n", repositoryName, mode, quizCount, questions);
+		System.out.printf("%-11s %10s %12s %12s %12s%n", "layer", "sessions", "us/session", "us/request", "requests/s");
+		double repositoryMicros = run("repository", seconds, requestsPerSession,
+			i -> repositorySession(repository, student.getUserId(), quizIds[i % quizIds.length], questions));
+
+		LocalClient local = new LocalClient(context);
+		local.login();
+		double handlerMicros = run("handler", seconds, requestsPerSession,
+			i -> session(local, quizIds[i % quizIds.length], questions));
+		local.close();
+
+		SocketClient remote = new SocketClient(port);
+		remote.login();
+		double protocolMicros = run("protocol", seconds, requestsPerSession,
+			i -> session(remote, quizIds[i % quizIds.length], questions));
+		remote.close();
+
+		System.out.printf("handler - repository: %+.1f us/session%n", handlerMicros - repositoryMicros);
+		System.out.printf("protocol - handler:   %+.1f us/session%n", protocolMicros - handlerMicros);
+
+		transport.stop();
+		context.shutdown();
+		DatabaseConnection.closeConnection();
+	}
+
+	private static int[] setUp(QuizRepository repository, int quizCount, int questions) throws Exception {
+		repository.registerUser(new User(TEACHER, PASSWORD, "Bench Teacher", "TEACHER"));
+		repository.registerUser(new User(STUDENT, PASSWORD, "Bench Student", "STUDENT"));
+		int teacherId = repository.findUserByUsername(TEACHER).getUserId();
+		List<Quiz> quizzes = new ArrayList<>(quizCount);
+		for (int i = 0; i < quizCount; i++) {
+			Quiz quiz = new Quiz("Bench quiz " + i, teacherId, 30);
+			for (int q = 0; q < questions; q++) {
+				quiz.addQuestion(new Question("Question " + q + " of bench quiz " + i,
+					"Option A", "Option B", "Option C", "Option D", String.valueOf("ABCD".charAt((i + q) & 3))));
+			}
+			quiz.setTotalQuestions(questions);
+			quizzes.add(quiz);
+		}
+		return repository.createQuizzes(quizzes);
+	}
+
+	private interface Session {
+		void run(int iteration) throws Exception;
+	}
+
+	/**
+	 * Warms up for a third of the time, then times sessions for the rest
+	 */
+	private static double run(String layer, int seconds, int requestsPerSession, Session session) throws Exception {
+		long warmupEnd = System.nanoTime() + seconds * 1_000_000_000L / 3;
+		int i = 0;
+		while (System.nanoTime() < warmupEnd) {
+			session.run(i++);
+		}
+		long start = System.nanoTime();
+		long end = start + seconds * 2_000_000_000L / 3;
+		int sessions = 0;
+		long now;
+		do {
+			session.run(i++);
+			sessions++;
+			now = System.nanoTime();
+		} while (now < end);
+		double micros = (now - start) / 1000.0 / sessions;
+		System.out.printf("%-11s %10d %12.1f %12.2f %12.0f%n", layer, sessions, micros, micros / requestsPerSession,
+			requestsPerSession * 1e6 / micros);
+		return micros;
+	}
+
+	private static void repositorySession(QuizRepository repository, int studentId, int quizId, int questions)
+			throws Exception {
+		repository.streamActiveQuizzes(0, PAGE, quiz -> { });
+		Quiz quiz = repository.getQuizWithQuestions(quizId);
+		QuizAttempt attempt = new QuizAttempt(quizId, studentId, 0, questions, questions);
+		List<StudentAnswer> answers = new ArrayList<>(questions);
+		for (Question question : quiz.getQuestions()) {
+			answers.add(new StudentAnswer(question.getQuestionId(), "A", "A".equals(question.getCorrectAnswer()), 1));
+		}
+		attempt.setAnswers(answers);
+		repository.saveQuizAttempts(Collections.singletonList(attempt));
+		repository.getLeaderboard(quizId);
+	}
+
+	private static void session(Client client, int quizId, int questions) throws IOException {
+		client.call(Message.of(Protocol.GET_ACTIVE_QUIZZES, 0, PAGE), Protocol.PAGE_END);
+		client.call(Message.of(Protocol.START_QUIZ, quizId), Protocol.QUIZ_DATA);
+		for (int q = 0; q < questions; q++) {
+			client.call(Message.of(Protocol.SUBMIT_ANSWER, quizId, q, "A", 1), Protocol.ANSWER_RECEIVED);
+		}
+		client.call(Message.of(Protocol.FINISH_QUIZ, quizId, questions), Protocol.QUIZ_RESULT);
+		client.call(Message.of(Protocol.GET_LEADERBOARD, quizId), Protocol.LEADERBOARD_DATA);
+	}
+
+	private abstract static class Client {
+		/**
+		 * Sends the request and reads responses until one with the expected command
+		 */
+		abstract void call(Message request, String until) throws IOException;
+
+		abstract void close() throws IOException;
+
+		void login() throws IOException {
+			call(Message.of(Protocol.LOGIN, STUDENT, PASSWORD), Protocol.LOGIN_SUCCESS);
+		}
+
+		static void check(Message response, String until) throws IOException {
+			if (Protocol.ERROR.equals(response.getCommand()) || response.getCommand().endsWith("_FAILED")) {
+				throw new IOException("Expected " + until + " but got " + response.getCommand() + " " +
+					(response.size() > 0 ? response.getString(0) : ""));
+			}
+		}
+	}
+
+	private static final class LocalClient extends Client {
+		private final LocalConnection connection;
+		private Message last;
+
+		LocalClient(ServerContext context) {
+			connection = new LocalConnection(context, message -> last = message);
+		}
+
+		@Override
+		void call(Message request, String until) throws IOException {
+			connection.request(request);
+			// Paged responses arrive as ROWS frames followed by PAGE_END, all before request() returns
+			check(last, until);
+		}
+
+		@Override
+		void close() {
+			connection.close();
+		}
+	}
+
+	private static final class SocketClient extends Client {
+		private final Socket socket;
+		private final InputStream in;
+		private final OutputStream out;
+		private WireFormat format = TextWireFormat.INSTANCE;
+
+		SocketClient(int port) throws IOException {
+			socket = new Socket("localhost", port);
+			socket.setTcpNoDelay(true);
+			in = new BufferedInputStream(socket.getInputStream());
+			out = new BufferedOutputStream(socket.getOutputStream());
+			call(Message.of(Protocol.HELLO, Protocol.FEATURE_BINARY), Protocol.HELLO);
+			format = BinaryWireFormat.INSTANCE;
+		}
+
+		@Override
+		void call(Message request, String until) throws IOException {
+			out.write(format.encode(request));
+			out.flush();
+			Message response;
+			do {
+				response = format.read(in);
+				if (response == null) {
+					throw new IOException("Connection closed by server");
+				}
+				check(response, until);
+			} while (!until.equals(response.getCommand()));
+		}
+
+		@Override
+		void close() throws IOException {
+			socket.close();
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package bench;
+
+import common.BinaryWireFormat;
+import common.Message;
+import common.Protocol;
+import common.TextWireFormat;
+import common.WireFormat;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * Encode/decode cost of the wire formats for the two largest messages, a 50-question
+ * QUIZ_DATA and the matching FINISH_QUIZ, plus the original regex split path.
+ *
+ * Usage: java bench.ProtocolCodecBench [--questions=50] [--iterations=200000]
+ *
+ * Reports ns/op, bytes per frame and bytes allocated per op (HotSpot only, -1 elsewhere).
+ * Run with -Xmx/-Xms fixed and compare runs on the same machine only.
+ */
+public class ProtocolCodecBench {
+	private static final Pattern DELIMITER = Pattern.compile(Pattern.quote(Protocol.DELIMITER));
+	private static final Pattern SUB_DELIMITER = Pattern.compile(Pattern.quote(Protocol.SUB_DELIMITER));
+
+	// Keeps results reachable so the JIT cannot drop the work
+	private static long sink;
+
+	public static void main(String[] args) throws Exception {
+		int questions = Integer.parseInt(ConnectionScaleBench.option(args, "questions", "50"));
+		int iterations = Integer.parseInt(ConnectionScaleBench.option(args, "iterations", "200000"));
+
+		Message quizData = quizData(questions);
+		Message finishQuiz = finishQuiz(questions);
+
+		System.out.printf("%-12s %-8s %-7s %10s %8s %12s%n", "message", "format", "op", "ns/op", "bytes", "alloc B/op");
+		for (Message message : new Message[]{quizData, finishQuiz}) {
+			String line = TextWireFormat.toLine(message);
+			run(message.getCommand(), "legacy", "decode", iterations,
+				line.getBytes(StandardCharsets.UTF_8).length + 1, () -> legacyDecode(line));
+			for (WireFormat format : new WireFormat[]{TextWireFormat.INSTANCE, BinaryWireFormat.INSTANCE}) {
+				byte[] frame = format.encode(message);
+				run(message.getCommand(), format.getName(), "encode", iterations, frame.length,
+					() -> format.encode(message).length);
+				run(message.getCommand(), format.getName(), "decode", iterations, frame.length,
+					() -> decodeAll(format, frame));
+			}
+		}
+	}
+
+	private interface Op {
+		long run() throws Exception;
+	}
+
+	private static void run(String message, String format, String op, int iterations, int bytes, Op work)
+			throws Exception {
+		// Warm-up to let the JIT settle before measuring
+		for (int i = 0; i < iterations; i++) {
+			sink += work.run();
+		}
+		long allocBefore = allocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			sink += work.run();
+		}
+		long elapsed = System.nanoTime() - start;
+		long allocated = allocatedBytes() - allocBefore;
+		System.out.printf("%-12s %-8s %-7s %10.1f %8d %12d%n", message, format, op,
+			(double) elapsed / iterations, bytes, allocBefore < 0 ? -1 : allocated / iterations);
+	}
+
+	/**
+	 * What the handlers did before Message: regex split into fields, then each row
+	 */
+	private static long legacyDecode(String line) {
+		String[] parts = DELIMITER.split(line);
+		long n = parts.length;
+		for (int i = 1; i < parts.length; i++) {
+			n += SUB_DELIMITER.split(parts[i]).length;
+		}
+		return n;
+	}
+
+	/**
+	 * Decodes the frame and touches every row, as the handlers do
+	 */
+	private static long decodeAll(WireFormat format, byte[] frame) throws Exception {
+		Message decoded = format.decodeFrame(frame, 0, format.frameEnd(frame, 0, frame.length));
+		long n = decoded.size();
+		for (int i = 0; i < decoded.size(); i++) {
+			if (decoded.get(i) instanceof Message.Row || format == TextWireFormat.INSTANCE) {
+				n += decoded.getRow(i).size();
+			}
+		}
+		return n;
+	}
+
+	private static Message quizData(int questions) {
+		Message message = new Message(Protocol.QUIZ_DATA)
+			.add(42)
+			.add("Networking fundamentals")
+			.add(questions)
+			.add(1800);
+		for (int i = 0; i < questions; i++) {
+			message.addRow(1000 + i, "Which layer of the OSI model is responsible for routing, question " + i + "?",
+				"Physical", "Data link", "Network", "Transport");
+		}
+		return message;
+	}
+
+	private static Message finishQuiz(int questions) {
+		Message message = new Message(Protocol.FINISH_QUIZ).add(42).add(1234);
+		for (int i = 0; i < questions; i++) {
+			message.addRow(String.valueOf((char) ('A' + i % 4)), 10 + i % 30);
+		}
+		return message;
+	}
+
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
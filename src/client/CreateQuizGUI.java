@@ -1,5 +1,6 @@
 package client;
 
+import common.Message;
 import common.Protocol;
 import model.User;
 
@@ -154,9 +155,9 @@ public class CreateQuizGUI extends JFrame {
 			return;
 		}
 
-		List<String> questionData = new ArrayList<>();
+		List<Object[]> questionData = new ArrayList<>();
 		for (QuestionPanel qPanel : questionPanels) {
-			String data = qPanel.getQuestionData();
+			Object[] data = qPanel.getQuestionData();
 			if (data == null) {
 				JOptionPane.showMessageDialog(this,
 					"Please fill in all fields for question " + qPanel.getQuestionNumber(),
@@ -169,21 +170,18 @@ public class CreateQuizGUI extends JFrame {
 		int timeLimit = (Integer) timeLimitSpinner.getValue();
 
 		try {
-			StringBuilder message = new StringBuilder(Protocol.CREATE_QUIZ);
-			message.append(Protocol.DELIMITER).append(quizName);
-			message.append(Protocol.DELIMITER).append(timeLimit);
-			message.append(Protocol.DELIMITER).append(questionData.size());
+			Message message = new Message(Protocol.CREATE_QUIZ)
+				.add(quizName)
+				.add(timeLimit)
+				.add(questionData.size());
 
-			for (String data : questionData) {
-				message.append(Protocol.DELIMITER).append(data);
+			for (Object[] data : questionData) {
+				message.addRow(data);
 			}
 
-			connection.sendMessage(message.toString());
-			String response = connection.receiveMessage();
+			Message response = connection.call(message);
 
-			String[] parts = response.split(java.util.regex.Pattern.quote(Protocol.DELIMITER));
-
-			if (parts[0].equals(Protocol.QUIZ_CREATED)) {
+			if (response != null && response.getCommand().equals(Protocol.QUIZ_CREATED)) {
 				JOptionPane.showMessageDialog(this,
 					"Quiz created successfully!",
 					"Success",
@@ -192,7 +190,7 @@ public class CreateQuizGUI extends JFrame {
 				dispose();
 			} else {
 				JOptionPane.showMessageDialog(this,
-					"Failed to create quiz: " + (parts.length > 1 ? parts[1] : "Unknown error"),
+					"Failed to create quiz: " + (response != null && response.size() > 0 ? response.getString(0) : "Unknown error"),
 					"Error",
 					JOptionPane.ERROR_MESSAGE);
 			}
@@ -270,7 +268,7 @@ public class CreateQuizGUI extends JFrame {
 			return questionNumber;
 		}
 
-		public String getQuestionData() {
+		public Object[] getQuestionData() {
 			String questionText = questionTextArea.getText().trim();
 			String optionA = optionAField.getText().trim();
 			String optionB = optionBField.getText().trim();
@@ -283,12 +281,7 @@ public class CreateQuizGUI extends JFrame {
 				return null;
 			}
 
-			return questionText + Protocol.SUB_DELIMITER +
-				optionA + Protocol.SUB_DELIMITER +
-				optionB + Protocol.SUB_DELIMITER +
-				optionC + Protocol.SUB_DELIMITER +
-				optionD + Protocol.SUB_DELIMITER +
-				correctAnswer;
+			return new Object[]{questionText, optionA, optionB, optionC, optionD, correctAnswer};
 		}
 
 		private void removeQuestion() {
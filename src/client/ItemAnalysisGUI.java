@@ -0,0 +1,137 @@
+package client;
+
+import common.Message;
+import common.Protocol;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableModel;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.io.IOException;
+
+public class ItemAnalysisGUI extends JFrame {
+	private static final long serialVersionUID = 1L;
+
+	private final ServerConnection connection;
+	private final int quizId;
+	private final String quizName;
+	private DefaultTableModel tableModel;
+	private JLabel attemptsLabel;
+
+	public ItemAnalysisGUI(ServerConnection connection, int quizId, String quizName) {
+		this.connection = connection;
+		this.quizId = quizId;
+		this.quizName = quizName;
+
+		setTitle("Item Analysis - " + quizName);
+		setSize(1000, 600);
+		setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+		setLocationRelativeTo(null);
+
+		initComponents();
+		new Thread(this::loadAnalysis).start();
+	}
+
+	private void initComponents() {
+		setLayout(new BorderLayout());
+
+		JPanel topPanel = new JPanel();
+		topPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+		topPanel.setBackground(new Color(70, 130, 180));
+
+		JLabel titleLabel = new JLabel("Item Analysis: " + quizName);
+		titleLabel.setFont(new Font("Arial", Font.BOLD, 20));
+		titleLabel.setForeground(Color.WHITE);
+		topPanel.add(titleLabel);
+
+		add(topPanel, BorderLayout.NORTH);
+
+		JPanel centerPanel = new JPanel(new BorderLayout());
+		centerPanel.setBorder(BorderFactory.createEmptyBorder(10, 15, 10, 15));
+
+		String[] columnNames = {"#", "Question", "Correct", "% Correct", "A", "B", "C", "D", "Blank", "Discrimination"};
+		tableModel = new DefaultTableModel(columnNames, 0) {
+			@Override
+			public boolean isCellEditable(int row, int column) {
+				return false;
+			}
+		};
+		JTable table = new JTable(tableModel);
+		table.getTableHeader().setReorderingAllowed(false);
+		table.setRowHeight(25);
+		table.getColumnModel().getColumn(0).setMaxWidth(40);
+		table.getColumnModel().getColumn(1).setPreferredWidth(400);
+
+		centerPanel.add(new JScrollPane(table), BorderLayout.CENTER);
+
+		attemptsLabel = new JLabel(" ");
+		attemptsLabel.setBorder(BorderFactory.createEmptyBorder(5, 0, 0, 0));
+		centerPanel.add(attemptsLabel, BorderLayout.SOUTH);
+
+		add(centerPanel, BorderLayout.CENTER);
+
+		JPanel bottomPanel = new JPanel(new FlowLayout());
+		bottomPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+		JButton refreshButton = new JButton("Refresh");
+		JButton closeButton = new JButton("Close");
+
+		refreshButton.addActionListener(e -> new Thread(this::loadAnalysis).start());
+		closeButton.addActionListener(e -> dispose());
+
+		bottomPanel.add(refreshButton);
+		bottomPanel.add(closeButton);
+
+		add(bottomPanel, BorderLayout.SOUTH);
+	}
+
+	private void loadAnalysis() {
+		try {
+			Message response = connection.call(Message.of(Protocol.GET_ITEM_ANALYSIS, quizId));
+
+			if (response == null) return;
+
+			if (!response.getCommand().equals(Protocol.ITEM_ANALYSIS)) {
+				String error = response.size() > 0 ? response.getString(0) : response.getCommand();
+				javax.swing.SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+					"Could not load item analysis: " + error, "Error", JOptionPane.ERROR_MESSAGE));
+				return;
+			}
+
+			javax.swing.SwingUtilities.invokeLater(() -> {
+				tableModel.setRowCount(0);
+				int attempts = response.getInt(1);
+				attemptsLabel.setText(attempts == 0 ? "No students have taken this quiz yet."
+					: "Based on " + attempts + " attempt" + (attempts == 1 ? "" : "s") +
+					". Discrimination compares each question with the rest of the quiz; low or negative values deserve a look.");
+
+				// ITEM_ANALYSIS|||quizId|||attempts|||(questionId, text, correct, %, A, B, C, D, blank, discrimination)...
+				for (int i = 2; i < response.size(); i++) {
+					Message.Row item = response.getRow(i);
+					String percent = item.getString(3);
+					String discrimination = item.getString(9);
+					tableModel.addRow(new Object[]{
+						i - 1, item.getString(1), item.getString(2),
+						percent.isEmpty() ? "-" : percent + "%",
+						item.getInt(4), item.getInt(5), item.getInt(6), item.getInt(7), item.getInt(8),
+						discrimination.isEmpty() ? "-" : discrimination
+					});
+				}
+			});
+		} catch (IOException e) {
+			javax.swing.SwingUtilities.invokeLater(() -> {
+				JOptionPane.showMessageDialog(this, "Error loading item analysis: " + e.getMessage(),
+					"Error", JOptionPane.ERROR_MESSAGE);
+			});
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package client;
 
+import common.Message;
 import common.Protocol;
 import model.User;
 
@@ -31,6 +32,11 @@ public class LoginGUI extends JFrame {
 
 	public LoginGUI() {
 		connection = new ServerConnection();
+		connection.addConnectionLostListener(reason -> SwingUtilities.invokeLater(() ->
+			JOptionPane.showMessageDialog(null,
+				"Lost the connection to the server (" + reason + "). Please log in again.",
+				"Connection Error",
+				JOptionPane.ERROR_MESSAGE)));
 
 		setTitle("Quiz System - Login");
 		setSize(400, 300);
@@ -105,21 +111,16 @@ public class LoginGUI extends JFrame {
 		}
 
 		try {
-			String message = Protocol.LOGIN + Protocol.DELIMITER + username + Protocol.DELIMITER + password;
-			connection.sendMessage(message);
-
-			String response = connection.receiveMessage();
+			Message response = connection.call(Message.of(Protocol.LOGIN, username, password));
 			if (response == null) {
 				JOptionPane.showMessageDialog(this, "No response from server",
 					"Error", JOptionPane.ERROR_MESSAGE);
 				return;
 			}
-			String[] parts = response.split(java.util.regex.Pattern.quote(Protocol.DELIMITER));
-
-			if (parts[0].equals(Protocol.LOGIN_SUCCESS)) {
-				int userId = Integer.parseInt(parts[1]);
-				String fullName = parts[2];
-				String role = parts[3];
+			if (response.getCommand().equals(Protocol.LOGIN_SUCCESS)) {
+				int userId = response.getInt(0);
+				String fullName = response.getString(1);
+				String role = response.getString(2);
 
 				// Validate that selected role matches user's actual role
 				if (!selectedRole.equals(role)) {
@@ -139,7 +140,7 @@ public class LoginGUI extends JFrame {
 
 				this.dispose();
 			} else {
-				JOptionPane.showMessageDialog(this, parts.length > 1 ? parts[1] : "Login failed",
+				JOptionPane.showMessageDialog(this, response.size() > 0 ? response.getString(0) : "Login failed",
 					"Login Failed", JOptionPane.ERROR_MESSAGE);
 			}
 		} catch (IOException e) {
@@ -0,0 +1,104 @@
+package client;
+
+import common.Message;
+import common.Protocol;
+
+import javax.swing.JScrollBar;
+import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Fills a table from a paged request one page at a time, fetching the next page when
+ * the user scrolls near the bottom. Must be used from the Swing event thread; the
+ * callbacks also run there.
+ */
+class PageLoader {
+	static final int PAGE_SIZE = 50;
+	// Start loading the next page this close (in pixels) to the bottom
+	private static final int LOAD_AHEAD = 100;
+
+	private final ServerConnection connection;
+	private final IntFunction<Message> pageRequest;
+	// Pages go through the connection's versioned cache (see ServerConnection.cachedStream)
+	private final boolean cached;
+	private final Consumer<Message> onRows;
+	private final Runnable onLastPage;
+	private final Consumer<String> onError;
+	private final JScrollBar scrollBar;
+
+	private int afterId = 0;
+	private boolean loading = false;
+	private boolean exhausted = false;
+	// Bumped by reset() so responses to an older load are ignored
+	private int generation = 0;
+
+	/**
+	 * @param pageRequest builds the request for the page after the given id (0 = first page)
+	 * @param cached      whether the pages are a versioned read the connection may cache
+	 * @param onRows      receives each ROWS frame
+	 * @param onLastPage  runs once the last page has arrived
+	 */
+	PageLoader(ServerConnection connection, JScrollPane scrollPane, IntFunction<Message> pageRequest, boolean cached,
+			   Consumer<Message> onRows, Runnable onLastPage, Consumer<String> onError) {
+		this.connection = connection;
+		this.pageRequest = pageRequest;
+		this.cached = cached;
+		this.onRows = onRows;
+		this.onLastPage = onLastPage;
+		this.onError = onError;
+		this.scrollBar = scrollPane.getVerticalScrollBar();
+		scrollBar.addAdjustmentListener(e -> {
+			if (!e.getValueIsAdjusting() && nearBottom()) {
+				loadNextPage();
+			}
+		});
+	}
+
+	/**
+	 * Starts again from the first page; the caller clears the table
+	 */
+	void reset() {
+		generation++;
+		afterId = 0;
+		loading = false;
+		exhausted = false;
+		loadNextPage();
+	}
+
+	void loadNextPage() {
+		if (loading || exhausted) return;
+
+		loading = true;
+		int requestGeneration = generation;
+		Consumer<Message> onFrame = rows ->
+			SwingUtilities.invokeLater(() -> {
+				if (requestGeneration == generation) onRows.accept(rows);
+			});
+		Message request = pageRequest.apply(afterId);
+		(cached ? connection.cachedStream(request, onFrame) : connection.stream(request, onFrame)).whenComplete((response, error) -> SwingUtilities.invokeLater(() -> {
+			if (requestGeneration != generation) return;
+
+			loading = false;
+			if (error != null) {
+				onError.accept(error.getMessage());
+			} else if (!Protocol.PAGE_END.equals(response.getCommand())) {
+				onError.accept(response.size() > 0 ? response.getString(0) : response.getCommand());
+			} else {
+				afterId = response.getInt(0);
+				exhausted = afterId == 0;
+				if (exhausted) {
+					onLastPage.run();
+				} else if (nearBottom()) {
+					// The page did not fill the view, so no scrolling will ask for the next one
+					loadNextPage();
+				}
+			}
+		}));
+	}
+
+	private boolean nearBottom() {
+		return scrollBar.getValue() + scrollBar.getVisibleAmount() >= scrollBar.getMaximum() - LOAD_AHEAD;
+	}
+}
@@ -1,5 +1,6 @@
 package client;
 
+import common.Message;
 import common.Protocol;
 import model.User;
 
@@ -156,8 +157,7 @@ public class QuizResultGUI extends JFrame {
 		// Load leaderboard in background thread
 		new Thread(() -> {
 			try {
-				connection.sendMessage(Protocol.GET_LEADERBOARD + Protocol.DELIMITER + quizId);
-				String response = connection.receiveMessage();
+				Message response = connection.call(new Message(Protocol.GET_LEADERBOARD).add(quizId));
 
 				if (response == null) {
 					javax.swing.SwingUtilities.invokeLater(() -> {
@@ -167,23 +167,21 @@ public class QuizResultGUI extends JFrame {
 					return;
 				}
 
-				String[] parts = response.split(java.util.regex.Pattern.quote(Protocol.DELIMITER));
-
-				if (parts[0].equals(Protocol.LEADERBOARD_DATA)) {
+				if (response.getCommand().equals(Protocol.LEADERBOARD_DATA)) {
 					javax.swing.SwingUtilities.invokeLater(() -> {
 						leaderboardModel.setRowCount(0);
 
-						for (int i = 1; i < parts.length; i++) {
-							String[] entryData = parts[i].split(Protocol.SUB_DELIMITER);
-							if (entryData.length >= 5) {
-								String studentName = entryData[0];
-								int entryScore = Integer.parseInt(entryData[1]);
-								int entryTotal = Integer.parseInt(entryData[2]);
-								String entryPercentage = entryData[3];
-								long entryTime = Long.parseLong(entryData[4]);
+						for (int i = 0; i < response.size(); i++) {
+							Message.Row entryData = response.getRow(i);
+							if (entryData.size() >= 5) {
+								String studentName = entryData.getString(0);
+								int entryScore = entryData.getInt(1);
+								int entryTotal = entryData.getInt(2);
+								String entryPercentage = entryData.getString(3);
+								long entryTime = entryData.getInt(4);
 
 								Object[] row = {
-									i,
+									i + 1,
 									studentName,
 									entryScore + "/" + entryTotal,
 									entryPercentage + "%",
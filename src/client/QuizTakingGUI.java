@@ -1,5 +1,6 @@
 package client;
 
+import common.Message;
 import common.Protocol;
 import model.Question;
 import model.Quiz;
@@ -28,6 +29,8 @@ import java.awt.Font;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class QuizTakingGUI extends JFrame {
 	private final ServerConnection connection;
@@ -37,7 +40,13 @@ public class QuizTakingGUI extends JFrame {
 	private List<Question> questions;
 	private int currentQuestionIndex = 0;
 	private List<String> studentAnswers;
+	private List<Long> questionMillis;
 	private long quizStartTime;
+	private long questionShownAt;
+	private boolean submitted = false;
+	// Answers whose SUBMIT_ANSWER was lost with a dropped connection; resent after it resumes
+	private final Set<Integer> unsentAnswers = ConcurrentHashMap.newKeySet();
+	private final Runnable reconnectListener = () -> SwingUtilities.invokeLater(this::resendAnswers);
 
 	private JLabel questionLabel;
 	private JRadioButton optionA;
@@ -58,15 +67,23 @@ public class QuizTakingGUI extends JFrame {
 		this.currentUser = user;
 		this.quizId = quizId;
 		this.studentAnswers = new ArrayList<>();
+		this.questionMillis = new ArrayList<>();
 
 		setTitle("Taking Quiz");
 		setSize(900, 700);
 		setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
 		setLocationRelativeTo(null);
 
+		connection.addReconnectListener(reconnectListener);
 		loadQuiz();
 	}
 
+	@Override
+	public void dispose() {
+		connection.removeReconnectListener(reconnectListener);
+		super.dispose();
+	}
+
 	private void loadQuiz() {
 		// Show loading message
 		JPanel loadingPanel = new JPanel(new BorderLayout());
@@ -78,8 +95,8 @@ public class QuizTakingGUI extends JFrame {
 		// Load quiz data in background thread
 		new Thread(() -> {
 			try {
-				connection.sendMessage(Protocol.START_QUIZ + Protocol.DELIMITER + quizId);
-				String response = connection.receiveMessage();
+				// Quizzes never change, so a quiz taken before comes from the connection's cache
+				Message response = connection.cachedCall(new Message(Protocol.START_QUIZ).add(quizId));
 
 				if (response == null) {
 					javax.swing.SwingUtilities.invokeLater(() -> {
@@ -90,27 +107,26 @@ public class QuizTakingGUI extends JFrame {
 					return;
 				}
 
-				String[] parts = response.split(java.util.regex.Pattern.quote(Protocol.DELIMITER));
-
-				if (parts[0].equals(Protocol.QUIZ_DATA)) {
+				if (response.getCommand().equals(Protocol.QUIZ_DATA)) {
 					quiz = new Quiz();
-					quiz.setQuizId(Integer.parseInt(parts[1]));
-					quiz.setQuizName(parts[2]);
-					quiz.setTotalQuestions(Integer.parseInt(parts[3]));
-					quiz.setTimeLimit(Integer.parseInt(parts[4]));
+					quiz.setQuizId(response.getInt(0));
+					quiz.setQuizName(response.getString(1));
+					quiz.setTotalQuestions(response.getInt(2));
+					quiz.setTimeLimit(response.getInt(3));
 
 					questions = new ArrayList<>();
-					for (int i = 5; i < parts.length; i++) {
-						String[] questionData = parts[i].split(java.util.regex.Pattern.quote(Protocol.SUB_DELIMITER));
+					for (int i = 4; i < response.size(); i++) {
+						Message.Row questionData = response.getRow(i);
 						Question question = new Question();
-						question.setQuestionId(Integer.parseInt(questionData[0]));
-						question.setQuestionText(questionData[1]);
-						question.setOptionA(questionData[2]);
-						question.setOptionB(questionData[3]);
-						question.setOptionC(questionData[4]);
-						question.setOptionD(questionData[5]);
+						question.setQuestionId(questionData.getInt(0));
+						question.setQuestionText(questionData.getString(1));
+						question.setOptionA(questionData.getString(2));
+						question.setOptionB(questionData.getString(3));
+						question.setOptionC(questionData.getString(4));
+						question.setOptionD(questionData.getString(5));
 						questions.add(question);
 						studentAnswers.add("");
+						questionMillis.add(0L);
 					}
 
 					// Update UI on EDT
@@ -245,6 +261,7 @@ public class QuizTakingGUI extends JFrame {
 		progressBar.setValue(currentQuestionIndex + 1);
 		progressBar.setString("Question " + (currentQuestionIndex + 1) + " of " + questions.size());
 
+		questionShownAt = System.currentTimeMillis();
 		startQuestionTimer();
 	}
 
@@ -289,6 +306,44 @@ public class QuizTakingGUI extends JFrame {
 		else if (optionD.isSelected()) answer = "D";
 
 		studentAnswers.set(currentQuestionIndex, answer);
+
+		// Time spent on a question accumulates across visits (Previous/Next)
+		long now = System.currentTimeMillis();
+		questionMillis.set(currentQuestionIndex, questionMillis.get(currentQuestionIndex) + (now - questionShownAt));
+		questionShownAt = now;
+
+		submitAnswer(currentQuestionIndex, answer, (int) Math.round(questionMillis.get(currentQuestionIndex) / 1000.0));
+	}
+
+	/**
+	 * Streams one answer to the server, which grades it right away. Requests are
+	 * pipelined, so this does not wait for the acknowledgement.
+	 */
+	private void submitAnswer(int index, String answer, int seconds) {
+		Message message = new Message(Protocol.SUBMIT_ANSWER)
+			.add(quizId)
+			.add(index)
+			.add(answer)
+			.add(seconds);
+		connection.request(message).whenComplete((response, error) -> {
+			if (error != null) {
+				unsentAnswers.add(index);
+				System.err.println("Error sending answer: " + error.getMessage());
+			} else if (!response.getCommand().equals(Protocol.ANSWER_RECEIVED)) {
+				System.err.println("Answer " + (index + 1) + " not accepted: " + response);
+			}
+		});
+	}
+
+	/**
+	 * The server resumed the attempt as it was; send the latest value of any answer it missed
+	 */
+	private void resendAnswers() {
+		if (submitted) return;
+		for (Integer index : unsentAnswers) {
+			unsentAnswers.remove(index);
+			submitAnswer(index, studentAnswers.get(index), (int) Math.round(questionMillis.get(index) / 1000.0));
+		}
 	}
 
 	private void previousQuestion() {
@@ -313,6 +368,10 @@ public class QuizTakingGUI extends JFrame {
 			return;
 		}
 
+		if (submitted) {
+			return;
+		}
+
 		saveCurrentAnswer();
 
 		if (timer != null) {
@@ -336,34 +395,21 @@ public class QuizTakingGUI extends JFrame {
 		int finalQuizId = quizId;
 		String finalQuizName = quiz.getQuizName();
 
-		// Save quiz result in background thread
-		new Thread(() -> {
-			try {
-				// Build message with all student answers
-				StringBuilder message = new StringBuilder(Protocol.FINISH_QUIZ);
-				message.append(Protocol.DELIMITER).append(finalQuizId);
-				message.append(Protocol.DELIMITER).append(finalTotalTime);
-				
-				// Add all student answers
-				for (String answer : studentAnswers) {
-					message.append(Protocol.DELIMITER).append(answer);
-				}
-				
-				System.out.println("Sending quiz submission with answers: " + message.toString());
-				connection.sendMessage(message.toString());
+		resendAnswers();
+		submitted = true;
 
-				String response = connection.receiveMessage();
+		// Answers are already on the server; FINISH_QUIZ is sent after the last of them
+		Message message = new Message(Protocol.FINISH_QUIZ)
+			.add(finalQuizId)
+			.add((int) finalTotalTime);
+		System.out.println("Sending quiz submission: " + message);
+		connection.request(message).whenComplete((response, error) -> {
+			if (error == null && response.size() >= 3 && response.getCommand().equals(Protocol.QUIZ_RESULT)) {
 				System.out.println("Server response: " + response);
 				
 				// Parse server response to get score and percentage
-				String[] responseParts = response.split(java.util.regex.Pattern.quote(Protocol.DELIMITER));
-				int finalScore = 0;
-				double finalPercentage = 0.0;
-				
-				if (responseParts.length >= 4 && responseParts[0].equals(Protocol.QUIZ_RESULT)) {
-					finalScore = Integer.parseInt(responseParts[1]);
-					finalPercentage = Double.parseDouble(responseParts[3]);
-				}
+				int finalScore = response.getInt(0);
+				double finalPercentage = response.getDouble(2);
 				
 				// Show results window
 				final int score = finalScore;
@@ -373,15 +419,20 @@ public class QuizTakingGUI extends JFrame {
 						percentage, finalTotalTime, finalQuizId, finalQuizName).setVisible(true);
 					QuizTakingGUI.this.dispose();
 				});
-				
-			} catch (IOException e) {
-				System.err.println("Error saving quiz: " + e.getMessage());
-				e.printStackTrace();
+			} else {
+				String reason = error != null ? error.getMessage()
+					: response.getCommand().equals(Protocol.ERROR) && response.size() > 0 ? response.getString(0)
+					: "Unexpected response " + response.getCommand();
+				System.err.println("Error saving quiz: " + reason);
+				// The server keeps the answers until the attempt is stored, so the student can submit again
 				javax.swing.SwingUtilities.invokeLater(() -> {
-					JOptionPane.showMessageDialog(QuizTakingGUI.this, "Error saving quiz: " + e.getMessage(),
+					submitted = false;
+					JOptionPane.showMessageDialog(QuizTakingGUI.this,
+						"Error saving quiz: " + reason + "\nPlease submit again.",
 						"Error", JOptionPane.ERROR_MESSAGE);
+					startQuestionTimer();
 				});
 			}
-		}).start();
+		});
 	}
 }
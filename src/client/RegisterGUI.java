@@ -1,5 +1,6 @@
 package client;
 
+import common.Message;
 import common.Protocol;
 
 import javax.swing.BorderFactory;
@@ -127,21 +128,14 @@ public class RegisterGUI extends JFrame {
         }
 
         try {
-            String message = Protocol.REGISTER + Protocol.DELIMITER + username +
-                Protocol.DELIMITER + password + Protocol.DELIMITER +
-                fullName + Protocol.DELIMITER + role;
-            connection.sendMessage(message);
-
-            String response = connection.receiveMessage();
+            Message response = connection.call(Message.of(Protocol.REGISTER, username, password, fullName, role));
             if (response == null) {
                 JOptionPane.showMessageDialog(this, "No response from server",
                     "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
-            String[] parts = response.split(java.util.regex.Pattern.quote(Protocol.DELIMITER));
-
-            if (parts[0].equals(Protocol.REGISTER_SUCCESS)) {
+            if (response.getCommand().equals(Protocol.REGISTER_SUCCESS)) {
                 JOptionPane.showMessageDialog(this, "Registration successful! Please login.",
                     "Success", JOptionPane.INFORMATION_MESSAGE);
                 dispose();
@@ -149,7 +143,7 @@ public class RegisterGUI extends JFrame {
                     parent.requestFocus();
                 }
             } else {
-                String errorText = parts.length > 1 ? parts[1] : ("Registration failed: " + response);
+                String errorText = response.size() > 0 ? response.getString(0) : ("Registration failed: " + response);
                 JOptionPane.showMessageDialog(this, errorText,
                     "Registration Failed", JOptionPane.ERROR_MESSAGE);
             }
@@ -1,56 +1,557 @@
 package client;
 
+import common.BinaryWireFormat;
+import common.DeflateWireFormat;
+import common.Message;
 import common.Protocol;
+import common.TextWireFormat;
+import common.WireFormat;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
+/**
+ * Client side of the connection. Every request carries an id and a reader thread
+ * completes the matching future when its response arrives, so several requests can
+ * be in flight on the one socket (e.g. a dashboard loading its tables in parallel).
+ * Untagged messages are server pushes (SUBSCRIBE) and go to the push listeners.
+ *
+ * After a successful login the connection keeps the session token from LOGIN_SUCCESS.
+ * If the socket then drops, it reconnects in the background with backoff and sends
+ * RESUME, which restores the login and any quiz in progress on the server. Requests in
+ * flight when the socket dropped fail (they may or may not have been handled); requests
+ * made while reconnecting wait and are sent once the session is back.
+ *
+ * Reads the server versions (quiz lists and quiz data) can go through cachedCall() and
+ * cachedStream(), which keep the last reply to each request and send its version along
+ * next time, so asking again for something unchanged costs one small NOT_MODIFIED.
+ */
 public class ServerConnection {
-	private static final String SERVER_HOST = "localhost";
-	private static final int SERVER_PORT = 9999;
+	private static final String DEFAULT_HOST = "localhost";
+	private static final int DEFAULT_PORT = 9999;
+	// -Dquiz.protocol=text keeps the connection on the line protocol (handy with a packet sniffer)
+	private static final boolean OFFER_BINARY = !"text".equalsIgnoreCase(System.getProperty("quiz.protocol"));
+	// -Dquiz.protocol.deflate=false turns down compression of large responses (binary only)
+	private static final boolean OFFER_DEFLATE = OFFER_BINARY
+		&& Boolean.parseBoolean(System.getProperty("quiz.protocol.deflate", "true"));
+	private static final DeflateWireFormat DEFLATE = new DeflateWireFormat(DeflateWireFormat.DEFAULT_MIN_BYTES,
+		DeflateWireFormat.DEFAULT_LEVEL);
+	// Requests in flight at once; further requests wait for a response first
+	private static final int MAX_IN_FLIGHT = 32;
+	private static final long CALL_TIMEOUT_SECONDS = 60;
+	// Reconnect backoff, and how long to keep trying before giving up on the session
+	private static final long RECONNECT_INITIAL_DELAY_MS = 250;
+	private static final long RECONNECT_MAX_DELAY_MS = 5000;
+	private static final long RECONNECT_WINDOW_MS = 120_000;
+	// Replies kept for versioned reads, least recently used dropped first
+	private static final int MAX_CACHED_REPLIES = 64;
 
+	private final String host;
+	private final int port;
 	private Socket socket;
-	private BufferedReader in;
-	private PrintWriter out;
-	private boolean connected = false;
+	private InputStream in;
+	private OutputStream out;
+	private WireFormat format = TextWireFormat.INSTANCE;
+	private volatile boolean connected = false;
+	// Whether the server agreed to versioned reads in HELLO
+	private volatile boolean versioned = false;
+	// Set by disconnect(); stops any reconnecting
+	private volatile boolean closed = false;
+	private volatile String sessionToken;
+
+	private final AtomicInteger nextRequestId = new AtomicInteger();
+	private final Map<Integer, CompletableFuture<Message>> pending = new ConcurrentHashMap<>();
+	// Paged requests: ROWS frames go to the consumer until the final response arrives
+	private final Map<Integer, Consumer<Message>> streams = new ConcurrentHashMap<>();
+	private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private final List<Consumer<Message>> pushListeners = new CopyOnWriteArrayList<>();
+	private final List<Runnable> reconnectListeners = new CopyOnWriteArrayList<>();
+	private final List<Consumer<String>> connectionLostListeners = new CopyOnWriteArrayList<>();
+	// Versioned reads: request line (without the version) -> last reply
+	private final Map<String, CachedReply> replies = Collections.synchronizedMap(
+		new LinkedHashMap<String, CachedReply>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedReply> eldest) {
+				return size() > MAX_CACHED_REPLIES;
+			}
+		});
+
+	// Guards reconnecting and deferred, and the switch between connected and reconnecting
+	private final ReentrantLock stateLock = new ReentrantLock();
+	private boolean reconnecting = false;
+	private final List<DeferredRequest> deferred = new ArrayList<>();
+
+	public ServerConnection() {
+		this(DEFAULT_HOST, DEFAULT_PORT);
+	}
+
+	public ServerConnection(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
 
 	public boolean connect() {
 		try {
-			socket = new Socket(SERVER_HOST, SERVER_PORT);
-			in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-			out = new PrintWriter(socket.getOutputStream(), true);
+			open();
 			connected = true;
+			startReader();
 			return true;
 		} catch (IOException e) {
+			closeSocket();
 			return false;
 		}
 	}
 
-	public void sendMessage(String message) {
-		if (connected && out != null) {
-			out.println(message);
+	private void open() throws IOException {
+		socket = new Socket(host, port);
+		socket.setTcpNoDelay(true);
+		in = new BufferedInputStream(socket.getInputStream());
+		out = new BufferedOutputStream(socket.getOutputStream());
+		format = TextWireFormat.INSTANCE;
+		negotiate();
+	}
+
+	private void startReader() {
+		Thread reader = new Thread(this::readLoop, "quiz-connection-reader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * Offers the binary protocol, compression and versioned reads; stays on text (or
+	 * uncompressed, or re-downloads everything) if the server does not accept them
+	 */
+	private void negotiate() throws IOException {
+		Message hello = new Message(Protocol.HELLO);
+		if (OFFER_BINARY) {
+			hello.add(Protocol.FEATURE_BINARY);
+		}
+		if (OFFER_DEFLATE) {
+			hello.add(Protocol.FEATURE_DEFLATE);
+		}
+		hello.add(Protocol.FEATURE_VERSIONS);
+		write(hello, 0);
+		Message reply = format.read(in);
+		if (reply == null || !Protocol.HELLO.equals(reply.getCommand())) {
+			throw new IOException("Unexpected handshake reply: " + reply);
+		}
+		boolean binary = false;
+		boolean deflate = false;
+		boolean versions = false;
+		for (int i = 0; i < reply.size(); i++) {
+			binary |= Protocol.FEATURE_BINARY.equals(reply.getString(i));
+			deflate |= Protocol.FEATURE_DEFLATE.equals(reply.getString(i));
+			versions |= Protocol.FEATURE_VERSIONS.equals(reply.getString(i));
+		}
+		if (binary) {
+			format = deflate ? DEFLATE : BinaryWireFormat.INSTANCE;
 		}
+		versioned = versions;
 	}
 
-	public String receiveMessage() throws IOException {
-		if (connected && in != null) {
-			return in.readLine();
+	/**
+	 * Sends a request without waiting; the future completes with its response, or
+	 * exceptionally with an IOException if the connection is lost first
+	 */
+	public CompletableFuture<Message> request(Message message) {
+		return send(message, null);
+	}
+
+	/**
+	 * Sends a paged request (see Protocol.ROWS). Each ROWS frame is handed to the consumer
+	 * on the reader thread as it arrives; the future completes with PAGE_END (or ERROR).
+	 */
+	public CompletableFuture<Message> stream(Message message, Consumer<Message> rows) {
+		return send(message, rows);
+	}
+
+	private CompletableFuture<Message> send(Message message, Consumer<Message> rows) {
+		CompletableFuture<Message> future = new CompletableFuture<>();
+		if (!connected) {
+			stateLock.lock();
+			try {
+				if (reconnecting) {
+					deferred.add(new DeferredRequest(message, rows, future));
+					return future;
+				}
+			} finally {
+				stateLock.unlock();
+			}
+			if (!connected) {
+				future.completeExceptionally(new IOException("Not connected to server"));
+				return future;
+			}
+		}
+		try {
+			inFlight.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.completeExceptionally(new IOException("Interrupted while waiting to send", e));
+			return future;
+		}
+		int requestId = nextId();
+		future.whenComplete((response, error) -> {
+			inFlight.release();
+			if (rows != null) {
+				streams.remove(requestId);
+			}
+		});
+
+		if (rows != null) {
+			streams.put(requestId, rows);
+		}
+		pending.put(requestId, future);
+		try {
+			write(message, requestId);
+		} catch (IOException e) {
+			pending.remove(requestId);
+			future.completeExceptionally(e);
+		}
+		// The reader may have failed everything before this request was registered
+		if (!connected && pending.remove(requestId) != null) {
+			future.completeExceptionally(new IOException("Connection closed"));
 		}
-		return null;
+		return future;
 	}
 
-	public void disconnect() {
+	/**
+	 * Like request(), for reads the server versions (START_QUIZ, GET_ACTIVE_QUIZZES and
+	 * SUBSCRIBE|||QUIZZES, see Protocol.NOT_MODIFIED). The reply is kept, and when the
+	 * same request is made again and the server answers NOT_MODIFIED the kept reply is
+	 * returned instead; callers see the reply without its version either way.
+	 */
+	public CompletableFuture<Message> cachedRequest(Message message) {
+		return sendCached(message, null);
+	}
+
+	/**
+	 * cachedRequest() for paged reads; on NOT_MODIFIED the kept ROWS frames are handed to
+	 * the consumer again, on the reader thread as usual, before the future completes
+	 */
+	public CompletableFuture<Message> cachedStream(Message message, Consumer<Message> rows) {
+		return sendCached(message, rows);
+	}
+
+	/**
+	 * cachedRequest(), waiting for the reply
+	 */
+	public Message cachedCall(Message message) throws IOException {
+		return await(cachedRequest(message));
+	}
+
+	private CompletableFuture<Message> sendCached(Message message, Consumer<Message> rows) {
+		if (!versioned) {
+			return send(message, rows);
+		}
+		String key = message.toString();
+		CachedReply cached = replies.get(key);
+		Message request = copy(message, message.size()).add(cached != null ? cached.version : Protocol.NO_VERSION);
+		// Only touched on the reader thread, before the reply completes the future
+		List<Message> frames = new ArrayList<>();
+		Consumer<Message> collect = rows == null ? null : frame -> {
+			frames.add(frame);
+			rows.accept(frame);
+		};
+		return send(request, collect).thenApply(reply -> {
+			String command = reply.getCommand();
+			if (Protocol.NOT_MODIFIED.equals(command) && cached != null) {
+				if (rows != null) {
+					cached.rows.forEach(rows);
+				}
+				return cached.reply;
+			}
+			if (Protocol.ERROR.equals(command) || Protocol.NOT_MODIFIED.equals(command) || reply.size() == 0) {
+				replies.remove(key);
+				return reply;
+			}
+			Message stripped = copy(reply, reply.size() - 1);
+			replies.put(key, new CachedReply(reply.getString(reply.size() - 1), frames, stripped));
+			return stripped;
+		});
+	}
+
+	private static Message copy(Message message, int fields) {
+		Object[] values = new Object[fields];
+		for (int i = 0; i < fields; i++) {
+			values[i] = message.get(i);
+		}
+		return Message.of(message.getCommand(), values);
+	}
+
+	/**
+	 * Sends a request and waits for its response
+	 */
+	public Message call(Message message) throws IOException {
+		return await(request(message));
+	}
+
+	private static Message await(CompletableFuture<Message> response) throws IOException {
+		try {
+			return response.get(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new IOException(cause);
+		} catch (TimeoutException e) {
+			throw new IOException("No response from server", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the server", e);
+		}
+	}
+
+	/**
+	 * Listeners run on the reader thread; Swing code should hand off to the EDT
+	 */
+	public void addPushListener(Consumer<Message> listener) {
+		pushListeners.add(listener);
+	}
+
+	public void removePushListener(Consumer<Message> listener) {
+		pushListeners.remove(listener);
+	}
+
+	/**
+	 * Runs after the connection has been re-established and the session resumed, on a
+	 * background thread. Subscriptions do not survive a reconnect, so subscribers should
+	 * reload (and so resubscribe) here.
+	 */
+	public void addReconnectListener(Runnable listener) {
+		reconnectListeners.add(listener);
+	}
+
+	public void removeReconnectListener(Runnable listener) {
+		reconnectListeners.remove(listener);
+	}
+
+	/**
+	 * Runs on a background thread when the connection was lost and could not be resumed,
+	 * with the reason; requests fail from then on. Not called after disconnect().
+	 */
+	public void addConnectionLostListener(Consumer<String> listener) {
+		connectionLostListeners.add(listener);
+	}
+
+	public void removeConnectionLostListener(Consumer<String> listener) {
+		connectionLostListeners.remove(listener);
+	}
+
+	private int nextId() {
+		// Ids are positive; 0 marks untagged messages
+		int id = nextRequestId.incrementAndGet() & Integer.MAX_VALUE;
+		return id == 0 ? nextId() : id;
+	}
+
+	private void write(Message message, int requestId) throws IOException {
+		writeLock.lock();
 		try {
+			out.write(format.encode(message, requestId));
+			out.flush();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private void readLoop() {
+		IOException failure = new IOException("Connection closed by server");
+		try {
+			Message message;
+			while ((message = format.read(in)) != null) {
+				if (message.getRequestId() == 0) {
+					dispatchPush(message);
+					continue;
+				}
+				if (Protocol.ROWS.equals(message.getCommand())) {
+					Consumer<Message> rows = streams.get(message.getRequestId());
+					if (rows != null) {
+						rows.accept(message);
+					}
+					continue;
+				}
+				if (Protocol.LOGIN_SUCCESS.equals(message.getCommand()) && message.size() > 3) {
+					sessionToken = message.getString(3);
+				}
+				CompletableFuture<Message> future = pending.remove(message.getRequestId());
+				// No future: the request already failed locally (e.g. its write threw), so the
+				// caller has had its error and the late reply is dropped
+				if (future != null) {
+					future.complete(message);
+				}
+			}
+		} catch (IOException e) {
 			if (connected) {
-				sendMessage(Protocol.DISCONNECT);
-				if (in != null) in.close();
-				if (out != null) out.close();
-				if (socket != null) socket.close();
-				connected = false;
+				failure = e;
+			}
+		}
+		boolean resume;
+		stateLock.lock();
+		try {
+			resume = !closed && sessionToken != null;
+			reconnecting = resume;
+			connected = false;
+		} finally {
+			stateLock.unlock();
+		}
+		for (Integer id : pending.keySet()) {
+			CompletableFuture<Message> future = pending.remove(id);
+			if (future != null) {
+				future.completeExceptionally(failure);
+			}
+		}
+		if (resume) {
+			reconnect();
+		}
+	}
+
+	/**
+	 * Runs on the old reader thread once its socket is gone
+	 */
+	private void reconnect() {
+		closeSocket();
+		long delay = RECONNECT_INITIAL_DELAY_MS;
+		long deadline = System.currentTimeMillis() + RECONNECT_WINDOW_MS;
+		boolean resumed = false;
+		String failure = "Could not reconnect to server";
+		while (!closed && sessionToken != null && System.currentTimeMillis() < deadline) {
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			try {
+				open();
+				Message reply = resume();
+				resumed = Protocol.RESUMED.equals(reply.getCommand());
+				if (!resumed) {
+					// The server no longer knows the session (expired, or the server restarted)
+					failure = "Session not resumed: " + reply;
+					sessionToken = null;
+					closeSocket();
+				}
+				break;
+			} catch (IOException e) {
+				closeSocket();
+				delay = Math.min(delay * 2, RECONNECT_MAX_DELAY_MS);
+			}
+		}
+
+		List<DeferredRequest> waiting;
+		stateLock.lock();
+		try {
+			reconnecting = false;
+			resumed = resumed && !closed;
+			connected = resumed;
+			waiting = new ArrayList<>(deferred);
+			deferred.clear();
+		} finally {
+			stateLock.unlock();
+		}
+
+		if (!resumed) {
+			closeSocket();
+			for (DeferredRequest request : waiting) {
+				request.future.completeExceptionally(new IOException("Connection to server lost"));
+			}
+			if (!closed) {
+				for (Consumer<String> listener : connectionLostListeners) {
+					try {
+						listener.accept(failure);
+					} catch (RuntimeException e) {
+						listenerFailed(e);
+					}
+				}
 			}
+			return;
+		}
+		startReader();
+		for (DeferredRequest request : waiting) {
+			send(request.message, request.rows).whenComplete((response, error) -> {
+				if (error != null) {
+					request.future.completeExceptionally(error);
+				} else {
+					request.future.complete(response);
+				}
+			});
+		}
+		for (Runnable listener : reconnectListeners) {
+			try {
+				listener.run();
+			} catch (RuntimeException e) {
+				listenerFailed(e);
+			}
+		}
+	}
+
+	/**
+	 * Hands a listener's exception to the thread's uncaught exception handler, so one
+	 * broken listener does not stop the others or the connection thread
+	 */
+	private static void listenerFailed(RuntimeException e) {
+		Thread thread = Thread.currentThread();
+		thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+	}
+
+	/**
+	 * Sends RESUME on a freshly opened socket, before the reader starts, and returns the reply
+	 */
+	private Message resume() throws IOException {
+		write(Message.of(Protocol.RESUME, sessionToken), nextId());
+		Message reply = format.read(in);
+		if (reply == null) {
+			throw new IOException("Connection closed during resume");
+		}
+		return reply;
+	}
+
+	private void dispatchPush(Message message) {
+		for (Consumer<Message> listener : pushListeners) {
+			try {
+				listener.accept(message);
+			} catch (RuntimeException e) {
+				listenerFailed(e);
+			}
+		}
+	}
+
+	public void disconnect() {
+		closed = true;
+		if (connected) {
+			connected = false;
+			try {
+				write(new Message(Protocol.DISCONNECT), 0);
+			} catch (IOException e) {
+				// ignore disconnect errors
+			}
+			closeSocket();
+		}
+	}
+
+	private void closeSocket() {
+		try {
+			if (socket != null) socket.close();
 		} catch (IOException e) {
 			// ignore disconnect errors
 		}
@@ -59,4 +560,28 @@ public class ServerConnection {
 	public boolean isConnected() {
 		return connected;
 	}
+
+	private static final class CachedReply {
+		final String version;
+		final List<Message> rows;
+		final Message reply;
+
+		CachedReply(String version, List<Message> rows, Message reply) {
+			this.version = version;
+			this.rows = rows;
+			this.reply = reply;
+		}
+	}
+
+	private static final class DeferredRequest {
+		final Message message;
+		final Consumer<Message> rows;
+		final CompletableFuture<Message> future;
+
+		DeferredRequest(Message message, Consumer<Message> rows, CompletableFuture<Message> future) {
+			this.message = message;
+			this.rows = rows;
+			this.future = future;
+		}
+	}
 }
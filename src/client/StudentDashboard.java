@@ -1,5 +1,6 @@
 package client;
 
+import common.Message;
 import common.Protocol;
 import model.User;
 
@@ -16,9 +17,9 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.BorderLayout;
 import java.awt.FlowLayout;
 import java.awt.Font;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class StudentDashboard extends JFrame {
 	private final ServerConnection connection;
@@ -29,6 +30,10 @@ public class StudentDashboard extends JFrame {
 	private JButton viewResultsButton;
 	private JButton refreshButton;
 	private final List<Integer> quizIds;
+	private PageLoader pageLoader;
+	private final Consumer<Message> pushListener = this::onPush;
+	// Subscriptions are lost with the old socket; reloading subscribes again
+	private final Runnable reconnectListener = () -> javax.swing.SwingUtilities.invokeLater(this::loadQuizzes);
 
 	public StudentDashboard(ServerConnection connection, User user) {
 		this.connection = connection;
@@ -41,8 +46,10 @@ public class StudentDashboard extends JFrame {
 		setLocationRelativeTo(null);
 
 		initComponents();
-		// Load quizzes in background
-		new Thread(this::loadQuizzes).start();
+		connection.addPushListener(pushListener);
+		connection.addReconnectListener(reconnectListener);
+		// Load the first page in background; further pages load as the table is scrolled
+		loadQuizzes();
 	}
 
 	private void initComponents() {
@@ -90,6 +97,14 @@ public class StudentDashboard extends JFrame {
 		JScrollPane scrollPane = new JScrollPane(quizTable);
 		centerPanel.add(scrollPane, BorderLayout.CENTER);
 
+		// The first page also subscribes, so quizzes created or deleted later arrive as QUIZ_LIST_DELTA.
+		// Pages are cached: opening the dashboard again with no quiz changes costs NOT_MODIFIEDs
+		pageLoader = new PageLoader(connection, scrollPane,
+			afterId -> afterId == 0
+				? new Message(Protocol.SUBSCRIBE).add(Protocol.TOPIC_QUIZZES).add(PageLoader.PAGE_SIZE)
+				: new Message(Protocol.GET_ACTIVE_QUIZZES).add(afterId).add(PageLoader.PAGE_SIZE), true,
+			this::addQuizRows, () -> {}, this::showLoadError);
+
 		add(centerPanel, BorderLayout.CENTER);
 
 		JPanel bottomPanel = new JPanel(new FlowLayout());
@@ -111,42 +126,69 @@ public class StudentDashboard extends JFrame {
 	}
 
 	private void loadQuizzes() {
-		try {
-			connection.sendMessage(Protocol.GET_ACTIVE_QUIZZES);
-			String response = connection.receiveMessage();
-
-			if (response == null) return;
-
-			String[] parts = response.split(java.util.regex.Pattern.quote(Protocol.DELIMITER));
-
-			if (parts[0].equals(Protocol.QUIZ_LIST)) {
-				javax.swing.SwingUtilities.invokeLater(() -> {
-					tableModel.setRowCount(0);
-					quizIds.clear();
-
-					for (int i = 1; i < parts.length; i++) {
-						String[] quizData = parts[i].split(java.util.regex.Pattern.quote(Protocol.SUB_DELIMITER));
-						if (quizData.length >= 5) {
-							int quizId = Integer.parseInt(quizData[0]);
-							String quizName = quizData[1];
-							String teacherName = quizData[2];
-							int totalQuestions = Integer.parseInt(quizData[3]);
-							int timeLimit = Integer.parseInt(quizData[4]);
-
-							quizIds.add(quizId);
-							tableModel.addRow(new Object[]{
-								quizName, teacherName, totalQuestions, timeLimit + "s"
-							});
-						}
+		tableModel.setRowCount(0);
+		quizIds.clear();
+		pageLoader.reset();
+	}
+
+	private void addQuizRows(Message rows) {
+		for (int i = 0; i < rows.size(); i++) {
+			addQuizRow(rows.getRow(i), 0, tableModel.getRowCount());
+		}
+	}
+
+	private void showLoadError(String error) {
+		JOptionPane.showMessageDialog(this, "Error loading quizzes: " + error,
+			"Error", JOptionPane.ERROR_MESSAGE);
+	}
+
+	/**
+	 * Inserts (id, name, teacher, questions, timeLimit), starting at the given offset in the row,
+	 * at the given table position
+	 */
+	private void addQuizRow(Message.Row quizData, int offset, int position) {
+		if (quizData.size() < offset + 5) return;
+
+		int quizId = quizData.getInt(offset);
+		if (quizIds.contains(quizId)) return;
+
+		String quizName = quizData.getString(offset + 1);
+		String teacherName = quizData.getString(offset + 2);
+		int totalQuestions = quizData.getInt(offset + 3);
+		int timeLimit = quizData.getInt(offset + 4);
+
+		quizIds.add(position, quizId);
+		tableModel.insertRow(position, new Object[]{
+			quizName, teacherName, totalQuestions, timeLimit + "s"
+		});
+	}
+
+	private void onPush(Message message) {
+		if (!Protocol.QUIZ_LIST_DELTA.equals(message.getCommand())) return;
+
+		javax.swing.SwingUtilities.invokeLater(() -> {
+			for (int i = 0; i < message.size(); i++) {
+				Message.Row change = message.getRow(i);
+				if ("+".equals(change.getString(0))) {
+					// Newest first, so a new quiz goes on top
+					addQuizRow(change, 1, 0);
+				} else {
+					int index = quizIds.indexOf(change.getInt(1));
+					if (index >= 0) {
+						quizIds.remove(index);
+						tableModel.removeRow(index);
 					}
-				});
+				}
 			}
-		} catch (IOException e) {
-			javax.swing.SwingUtilities.invokeLater(() -> {
-				JOptionPane.showMessageDialog(this, "Error loading quizzes: " + e.getMessage(),
-					"Error", JOptionPane.ERROR_MESSAGE);
-			});
-		}
+		});
+	}
+
+	@Override
+	public void dispose() {
+		connection.removePushListener(pushListener);
+		connection.removeReconnectListener(reconnectListener);
+		connection.request(new Message(Protocol.UNSUBSCRIBE).add(Protocol.TOPIC_QUIZZES));
+		super.dispose();
 	}
 
 	private void handleTakeQuiz() {
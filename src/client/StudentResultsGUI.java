@@ -1,5 +1,6 @@
 package client;
 
+import common.Message;
 import common.Protocol;
 import model.User;
 
@@ -15,13 +16,13 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.BorderLayout;
 import java.awt.FlowLayout;
 import java.awt.Font;
-import java.io.IOException;
 
 public class StudentResultsGUI extends JFrame {
 	private final ServerConnection connection;
 	private final User currentUser;
 	private JTable resultsTable;
 	private DefaultTableModel tableModel;
+	private PageLoader pageLoader;
 
 	public StudentResultsGUI(ServerConnection connection, User user) {
 		this.connection = connection;
@@ -33,8 +34,8 @@ public class StudentResultsGUI extends JFrame {
 		setLocationRelativeTo(null);
 
 		initComponents();
-		// Load results in background
-		new Thread(this::loadResults).start();
+		// Load the first page in background; further pages load as the table is scrolled
+		pageLoader.loadNextPage();
 	}
 
 	private void initComponents() {
@@ -62,6 +63,10 @@ public class StudentResultsGUI extends JFrame {
 		JScrollPane scrollPane = new JScrollPane(resultsTable);
 		add(scrollPane, BorderLayout.CENTER);
 
+		pageLoader = new PageLoader(connection, scrollPane,
+			afterId -> new Message(Protocol.GET_MY_RESULTS).add(afterId).add(PageLoader.PAGE_SIZE), false,
+			this::addResultRows, this::showIfEmpty, this::showLoadError);
+
 		JPanel bottomPanel = new JPanel(new FlowLayout());
 		bottomPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
@@ -88,52 +93,39 @@ public class StudentResultsGUI extends JFrame {
 		}
 	}
 
-	private void loadResults() {
-		try {
-			connection.sendMessage(Protocol.GET_MY_RESULTS);
-			String response = connection.receiveMessage();
-
-			if (response == null) return;
-
-			String[] parts = response.split(java.util.regex.Pattern.quote(Protocol.DELIMITER));
-
-			if (parts[0].equals(Protocol.RESULTS_DATA)) {
-				javax.swing.SwingUtilities.invokeLater(() -> {
-					tableModel.setRowCount(0);
-
-					for (int i = 1; i < parts.length; i++) {
-						String[] resultData = parts[i].split(java.util.regex.Pattern.quote(Protocol.SUB_DELIMITER));
-						if (resultData.length >= 6) {
-							String quizName = resultData[0];
-							int score = Integer.parseInt(resultData[1]);
-							int total = Integer.parseInt(resultData[2]);
-							String percentage = resultData[3];
-							long timeTaken = Long.parseLong(resultData[4]);
-							String date = resultData[5];
-
-							tableModel.addRow(new Object[]{
-								quizName,
-								score + "/" + total,
-								percentage + "%",
-								formatTime(timeTaken),
-								date
-							});
-						}
-					}
-
-					if (tableModel.getRowCount() == 0) {
-						tableModel.addRow(new Object[]{"No results yet", "", "", "", ""});
-					}
+	private void addResultRows(Message rows) {
+		for (int i = 0; i < rows.size(); i++) {
+			Message.Row resultData = rows.getRow(i);
+			if (resultData.size() >= 6) {
+				String quizName = resultData.getString(0);
+				int score = resultData.getInt(1);
+				int total = resultData.getInt(2);
+				String percentage = resultData.getString(3);
+				long timeTaken = resultData.getInt(4);
+				String date = resultData.getString(5);
+
+				tableModel.addRow(new Object[]{
+					quizName,
+					score + "/" + total,
+					percentage + "%",
+					formatTime(timeTaken),
+					date
 				});
 			}
-		} catch (IOException e) {
-			javax.swing.SwingUtilities.invokeLater(() -> {
-				JOptionPane.showMessageDialog(this, "Error loading results: " + e.getMessage(),
-					"Error", JOptionPane.ERROR_MESSAGE);
-			});
 		}
 	}
 
+	private void showIfEmpty() {
+		if (tableModel.getRowCount() == 0) {
+			tableModel.addRow(new Object[]{"No results yet", "", "", "", ""});
+		}
+	}
+
+	private void showLoadError(String error) {
+		JOptionPane.showMessageDialog(this, "Error loading results: " + error,
+			"Error", JOptionPane.ERROR_MESSAGE);
+	}
+
 	private String formatTime(long seconds) {
 		long minutes = seconds / 60;
 		long secs = seconds % 60;
@@ -1,5 +1,6 @@
 package client;
 
+import common.Message;
 import common.Protocol;
 import model.User;
 
@@ -21,6 +22,7 @@ import java.awt.Font;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class TeacherDashboard extends JFrame {
 	private final ServerConnection connection;
@@ -30,8 +32,12 @@ public class TeacherDashboard extends JFrame {
 	private JButton createQuizButton;
 	private JButton deleteQuizButton;
 	private JButton viewLeaderboardButton;
+	private JButton itemAnalysisButton;
 	private JButton refreshButton;
 	private final List<Integer> quizIds;
+	private final Consumer<Message> pushListener = this::onPush;
+	// Subscriptions are lost with the old socket; reloading subscribes again
+	private final Runnable reconnectListener = this::loadQuizzes;
 
 	public TeacherDashboard(ServerConnection connection, User user) {
 		this.connection = connection;
@@ -44,6 +50,8 @@ public class TeacherDashboard extends JFrame {
 		setLocationRelativeTo(null);
 
 		initComponents();
+		connection.addPushListener(pushListener);
+		connection.addReconnectListener(reconnectListener);
 		// Load quizzes in background
 		new Thread(this::loadQuizzes).start();
 	}
@@ -104,10 +112,12 @@ public class TeacherDashboard extends JFrame {
 		createQuizButton = new JButton("Create New Quiz");
 		deleteQuizButton = new JButton("Delete Quiz");
 		viewLeaderboardButton = new JButton("View Leaderboard");
+		itemAnalysisButton = new JButton("Item Analysis");
 
 		createQuizButton.addActionListener(e -> handleCreateQuiz());
 		deleteQuizButton.addActionListener(e -> handleDeleteQuiz());
 		viewLeaderboardButton.addActionListener(e -> handleViewLeaderboard());
+		itemAnalysisButton.addActionListener(e -> handleItemAnalysis());
 
 		createQuizButton.setBackground(new Color(34, 139, 34));
 		createQuizButton.setForeground(Color.WHITE);
@@ -117,39 +127,26 @@ public class TeacherDashboard extends JFrame {
 		bottomPanel.add(createQuizButton);
 		bottomPanel.add(deleteQuizButton);
 		bottomPanel.add(viewLeaderboardButton);
+		bottomPanel.add(itemAnalysisButton);
 
 		add(bottomPanel, BorderLayout.SOUTH);
 	}
 
 	public void loadQuizzes() {
 		try {
-			connection.sendMessage(Protocol.GET_ACTIVE_QUIZZES);
-			String response = connection.receiveMessage();
+			// Replies with the current list (from the connection's cache if unchanged), then the
+			// server pushes QUIZ_LIST_DELTA as quizzes come and go
+			Message response = connection.cachedCall(new Message(Protocol.SUBSCRIBE).add(Protocol.TOPIC_QUIZZES).add(0));
 
 			if (response == null) return;
 
-			String[] parts = response.split(java.util.regex.Pattern.quote(Protocol.DELIMITER));
-
-			if (parts[0].equals(Protocol.QUIZ_LIST)) {
+			if (response.getCommand().equals(Protocol.QUIZ_LIST)) {
 				javax.swing.SwingUtilities.invokeLater(() -> {
 					tableModel.setRowCount(0);
 					quizIds.clear();
 
-					for (int i = 1; i < parts.length; i++) {
-						String[] quizData = parts[i].split(java.util.regex.Pattern.quote(Protocol.SUB_DELIMITER));
-						if (quizData.length >= 5) {
-							int quizId = Integer.parseInt(quizData[0]);
-							String quizName = quizData[1];
-							String teacherName = quizData[2];
-							int totalQuestions = Integer.parseInt(quizData[3]);
-							int timeLimit = Integer.parseInt(quizData[4]);
-
-							quizIds.add(quizId);
-							tableModel.addRow(new Object[]{
-								quizId, quizName, teacherName, totalQuestions,
-								timeLimit + "s", "Active"
-							});
-						}
+					for (int i = 0; i < response.size(); i++) {
+						addQuizRow(response.getRow(i), 0);
 					}
 
 					if (tableModel.getRowCount() == 0) {
@@ -167,6 +164,54 @@ public class TeacherDashboard extends JFrame {
 		}
 	}
 
+	/**
+	 * Adds (id, name, teacher, questions, timeLimit) starting at the given offset in the row
+	 */
+	private void addQuizRow(Message.Row quizData, int offset) {
+		if (quizData.size() < offset + 5) return;
+
+		int quizId = quizData.getInt(offset);
+		if (quizIds.contains(quizId)) return;
+
+		String quizName = quizData.getString(offset + 1);
+		String teacherName = quizData.getString(offset + 2);
+		int totalQuestions = quizData.getInt(offset + 3);
+		int timeLimit = quizData.getInt(offset + 4);
+
+		quizIds.add(quizId);
+		tableModel.addRow(new Object[]{
+			quizId, quizName, teacherName, totalQuestions,
+			timeLimit + "s", "Active"
+		});
+	}
+
+	private void onPush(Message message) {
+		if (!Protocol.QUIZ_LIST_DELTA.equals(message.getCommand())) return;
+
+		javax.swing.SwingUtilities.invokeLater(() -> {
+			for (int i = 0; i < message.size(); i++) {
+				Message.Row change = message.getRow(i);
+				if ("+".equals(change.getString(0))) {
+					addQuizRow(change, 1);
+				} else {
+					int index = quizIds.indexOf(change.getInt(1));
+					if (index >= 0) {
+						quizIds.remove(index);
+						tableModel.removeRow(index);
+					}
+				}
+			}
+		});
+	}
+
+	@Override
+	public void dispose() {
+		connection.removePushListener(pushListener);
+		connection.removeReconnectListener(reconnectListener);
+		connection.request(new Message(Protocol.UNSUBSCRIBE).add(Protocol.TOPIC_QUIZZES));
+		super.dispose();
+	}
+
 	private void handleCreateQuiz() {
 		new CreateQuizGUI(connection, currentUser, this).setVisible(true);
 	}
@@ -191,12 +236,9 @@ public class TeacherDashboard extends JFrame {
 
 		if (confirm == JOptionPane.YES_OPTION) {
 			try {
-				connection.sendMessage(Protocol.DELETE_QUIZ + Protocol.DELIMITER + quizId);
-				String response = connection.receiveMessage();
+				Message response = connection.call(new Message(Protocol.DELETE_QUIZ).add(quizId));
 
-				String[] parts = response.split(java.util.regex.Pattern.quote(Protocol.DELIMITER));
-
-				if (parts[0].equals(Protocol.QUIZ_DELETED)) {
+				if (response != null && response.getCommand().equals(Protocol.QUIZ_DELETED)) {
 					JOptionPane.showMessageDialog(this, "Quiz deleted successfully!",
 						"Success", JOptionPane.INFORMATION_MESSAGE);
 					loadQuizzes();
@@ -225,6 +267,20 @@ public class TeacherDashboard extends JFrame {
 		new TeacherLeaderboardGUI(connection, quizId, quizName).setVisible(true);
 	}
 
+	private void handleItemAnalysis() {
+		int selectedRow = quizTable.getSelectedRow();
+		if (selectedRow == -1) {
+			JOptionPane.showMessageDialog(this, "Please select a quiz to analyse",
+				"No Selection", JOptionPane.WARNING_MESSAGE);
+			return;
+		}
+
+		int quizId = quizIds.get(selectedRow);
+		String quizName = (String) tableModel.getValueAt(selectedRow, 1);
+
+		new ItemAnalysisGUI(connection, quizId, quizName).setVisible(true);
+	}
+
 	private void handleLogout() {
 		int confirm = JOptionPane.showConfirmDialog(this,
 			"Are you sure you want to logout?",
@@ -1,5 +1,6 @@
 package client;
 
+import common.Message;
 import common.Protocol;
 
 import javax.swing.BorderFactory;
@@ -18,6 +19,7 @@ import java.awt.Component;
 import java.awt.FlowLayout;
 import java.awt.Font;
 import java.io.IOException;
+import java.util.function.Consumer;
 
 public class TeacherLeaderboardGUI extends JFrame {
 	private final ServerConnection connection;
@@ -25,6 +27,9 @@ public class TeacherLeaderboardGUI extends JFrame {
 	private final String quizName;
 	private JTable leaderboardTable;
 	private DefaultTableModel tableModel;
+	private final Consumer<Message> pushListener = this::onPush;
+	// Subscriptions are lost with the old socket; reloading subscribes again
+	private final Runnable reconnectListener = this::loadLeaderboard;
 
 	public TeacherLeaderboardGUI(ServerConnection connection, int quizId, String quizName) {
 		this.connection = connection;
@@ -37,6 +42,8 @@ public class TeacherLeaderboardGUI extends JFrame {
 		setLocationRelativeTo(null);
 
 		initComponents();
+		connection.addPushListener(pushListener);
+		connection.addReconnectListener(reconnectListener);
 		// Load leaderboard in background
 		new Thread(this::loadLeaderboard).start();
 	}
@@ -106,41 +113,25 @@ public class TeacherLeaderboardGUI extends JFrame {
 
 	private void loadLeaderboard() {
 		try {
-			connection.sendMessage(Protocol.GET_LEADERBOARD + Protocol.DELIMITER + quizId);
-			String response = connection.receiveMessage();
+			// Replies with the current board, then the server pushes LEADERBOARD_DELTA as attempts come in
+			Message response = connection.call(new Message(Protocol.SUBSCRIBE)
+				.add(Protocol.TOPIC_LEADERBOARD).add(quizId));
 
 			if (response == null) return;
 
-			String[] parts = response.split(java.util.regex.Pattern.quote(Protocol.DELIMITER));
-
-			if (parts[0].equals(Protocol.LEADERBOARD_DATA)) {
+			if (response.getCommand().equals(Protocol.LEADERBOARD_DATA)) {
 				javax.swing.SwingUtilities.invokeLater(() -> {
 					tableModel.setRowCount(0);
 
-					if (parts.length == 1) {
+					if (response.size() == 0) {
 						JLabel noDataLabel = new JLabel("No students have taken this quiz yet.");
 						noDataLabel.setFont(new Font("Arial", Font.ITALIC, 14));
 						noDataLabel.setHorizontalAlignment(SwingConstants.CENTER);
 						return;
 					}
 
-					for (int i = 1; i < parts.length; i++) {
-						String[] entryData = parts[i].split(java.util.regex.Pattern.quote(Protocol.SUB_DELIMITER));
-						if (entryData.length >= 5) {
-							String studentName = entryData[0];
-							int score = Integer.parseInt(entryData[1]);
-							int total = Integer.parseInt(entryData[2]);
-							String percentage = entryData[3];
-							long timeTaken = Long.parseLong(entryData[4]);
-
-							tableModel.addRow(new Object[]{
-								i,
-								studentName,
-								score + "/" + total,
-								percentage + "%",
-								formatTime(timeTaken)
-							});
-						}
+					for (int i = 0; i < response.size(); i++) {
+						setEntry(i + 1, response.getRow(i), 0);
 					}
 
 					if (tableModel.getRowCount() > 0) {
@@ -156,6 +147,56 @@ public class TeacherLeaderboardGUI extends JFrame {
 		}
 	}
 
+	/**
+	 * Shows (name, score, total, percentage, time), starting at the given offset in the row, at a rank
+	 */
+	private void setEntry(int rank, Message.Row entryData, int offset) {
+		if (entryData.size() < offset + 5 || rank < 1) return;
+
+		String studentName = entryData.getString(offset);
+		int score = entryData.getInt(offset + 1);
+		int total = entryData.getInt(offset + 2);
+		String percentage = entryData.getString(offset + 3);
+		long timeTaken = entryData.getInt(offset + 4);
+
+		Object[] row = {rank, studentName, score + "/" + total, percentage + "%", formatTime(timeTaken)};
+		if (rank > tableModel.getRowCount()) {
+			tableModel.setRowCount(rank - 1);
+			tableModel.addRow(row);
+		} else {
+			for (int column = 0; column < row.length; column++) {
+				tableModel.setValueAt(row[column], rank - 1, column);
+			}
+		}
+	}
+
+	/**
+	 * LEADERBOARD_DELTA|||quizId|||size|||(rank, entry)... - only the ranks that changed
+	 */
+	private void onPush(Message message) {
+		if (!Protocol.LEADERBOARD_DELTA.equals(message.getCommand()) || message.getInt(0) != quizId) return;
+
+		javax.swing.SwingUtilities.invokeLater(() -> {
+			int size = message.getInt(1);
+			for (int i = 2; i < message.size(); i++) {
+				Message.Row change = message.getRow(i);
+				setEntry(change.getInt(0), change, 1);
+			}
+			tableModel.setRowCount(size);
+			if (size > 0) {
+				leaderboardTable.setDefaultRenderer(Object.class, new RankCellRenderer());
+			}
+		});
+	}
+
+	@Override
+	public void dispose() {
+		connection.removePushListener(pushListener);
+		connection.removeReconnectListener(reconnectListener);
+		connection.request(new Message(Protocol.UNSUBSCRIBE).add(Protocol.TOPIC_LEADERBOARD).add(quizId));
+		super.dispose();
+	}
+
 	private String formatTime(long seconds) {
 		long minutes = seconds / 60;
 		long secs = seconds % 60;
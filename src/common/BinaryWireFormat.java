@@ -0,0 +1,297 @@
+package common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Length-prefixed binary framing, negotiated with HELLO at connect time.
+ *
+ * Frame:   int32 payload length (big-endian), payload
+ * Payload: varint request id (0 = untagged), body
+ * Body:    command (varint length + UTF-8), varint field count, fields
+ * Field:   tag byte followed by
+ *          STRING  varint byte length + UTF-8
+ *          INT     zig-zag varint
+ *          DOUBLE  8 bytes IEEE 754
+ *          OPTION  1 byte option letter
+ *          ROW     varint value count + that many tagged values
+ *
+ * Strings are length-prefixed, so text containing "|||" or ":::" is carried intact.
+ */
+public class BinaryWireFormat extends WireFormat {
+    public static final BinaryWireFormat INSTANCE = new BinaryWireFormat();
+
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_INT = 2;
+    private static final byte TAG_DOUBLE = 3;
+    private static final byte TAG_OPTION = 4;
+    private static final byte TAG_ROW = 5;
+
+    @Override
+    public String getName() {
+        return Protocol.FEATURE_BINARY;
+    }
+
+    @Override
+    protected byte[] encodeBody(Message message) {
+        Buffer out = new Buffer(64);
+        writeString(out, message.getCommand());
+        writeVarint(out, message.size());
+        for (Object field : message.fields()) {
+            writeValue(out, field);
+        }
+        return out.pos == out.bytes.length ? out.bytes : Arrays.copyOf(out.bytes, out.pos);
+    }
+
+    @Override
+    protected byte[] frame(byte[] body, int requestId) {
+        Buffer out = new Buffer(4 + 5 + body.length);
+        out.pos = 4; // room for the length prefix
+        writeVarint(out, requestId);
+        out.put(body);
+        int length = out.pos - 4;
+        out.bytes[0] = (byte) (length >>> 24);
+        out.bytes[1] = (byte) (length >>> 16);
+        out.bytes[2] = (byte) (length >>> 8);
+        out.bytes[3] = (byte) length;
+        return out.pos == out.bytes.length ? out.bytes : Arrays.copyOf(out.bytes, out.pos);
+    }
+
+    @Override
+    public Message read(InputStream in) throws IOException {
+        int b0 = in.read();
+        if (b0 == -1) {
+            return null;
+        }
+        int length = (b0 << 24) | (readByte(in) << 16) | (readByte(in) << 8) | readByte(in);
+        checkLength(length);
+        byte[] payload = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(payload, read, length - read);
+            if (n < 0) {
+                throw new EOFException("Connection closed mid-frame");
+            }
+            read += n;
+        }
+        return decodePayload(payload, 0, length);
+    }
+
+    @Override
+    public int frameEnd(byte[] buf, int start, int end) throws IOException {
+        if (end - start < 4) {
+            return -1;
+        }
+        int length = ((buf[start] & 0xFF) << 24) | ((buf[start + 1] & 0xFF) << 16)
+                | ((buf[start + 2] & 0xFF) << 8) | (buf[start + 3] & 0xFF);
+        checkLength(length);
+        int frameEnd = start + 4 + length;
+        return frameEnd <= end ? frameEnd : -1;
+    }
+
+    @Override
+    public Message decodeFrame(byte[] buf, int start, int frameEnd) throws IOException {
+        return decodePayload(buf, start + 4, frameEnd);
+    }
+
+    /**
+     * The request id of a complete frame, without decoding its body
+     */
+    public int requestId(byte[] buf, int start, int frameEnd) throws IOException {
+        return readVarint(new Cursor(buf, start + 4, frameEnd));
+    }
+
+    private Message decodePayload(byte[] buf, int start, int end) throws IOException {
+        Cursor in = new Cursor(buf, start, end);
+        int requestId = readVarint(in);
+        Message message = decodeBody(buf, in.pos, end);
+        message.setRequestId(requestId);
+        return message;
+    }
+
+    /**
+     * Decodes a body as written by encodeBody
+     */
+    protected Message decodeBody(byte[] buf, int start, int end) throws IOException {
+        Cursor in = new Cursor(buf, start, end);
+        String command = readString(in);
+        int count = readVarint(in);
+        // Every field takes at least one byte
+        if (count < 0 || count > end - in.pos) {
+            throw new IOException("Invalid field count: " + count);
+        }
+        List<Object> fields = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            fields.add(readValue(in, true));
+        }
+        return new Message(command, fields);
+    }
+
+    private static void checkLength(int length) throws IOException {
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Connection closed mid-frame");
+        }
+        return b;
+    }
+
+    // ---- encoding ----
+
+    private static void writeValue(Buffer out, Object value) {
+        if (value instanceof Integer) {
+            out.put(TAG_INT);
+            int v = (Integer) value;
+            writeVarint(out, (v << 1) ^ (v >> 31));
+        } else if (value instanceof Double) {
+            out.put(TAG_DOUBLE);
+            long bits = Double.doubleToLongBits((Double) value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out.put((byte) (bits >>> shift));
+            }
+        } else if (value instanceof Character) {
+            out.put(TAG_OPTION);
+            out.put((byte) (char) (Character) value);
+        } else if (value instanceof Message.Row) {
+            Message.Row row = (Message.Row) value;
+            out.put(TAG_ROW);
+            writeVarint(out, row.size());
+            for (int i = 0; i < row.size(); i++) {
+                writeValue(out, row.get(i));
+            }
+        } else {
+            out.put(TAG_STRING);
+            writeString(out, Message.asString(value));
+        }
+    }
+
+    private static void writeString(Buffer out, String s) {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, utf8.length);
+        out.put(utf8);
+    }
+
+    private static void writeVarint(Buffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    // ---- decoding ----
+
+    private static Object readValue(Cursor in, boolean allowRow) throws IOException {
+        byte tag = in.next();
+        switch (tag) {
+            case TAG_STRING:
+                return readString(in);
+            case TAG_INT: {
+                int raw = readVarint(in);
+                return (raw >>> 1) ^ -(raw & 1);
+            }
+            case TAG_DOUBLE: {
+                long bits = 0;
+                for (int i = 0; i < 8; i++) {
+                    bits = (bits << 8) | (in.next() & 0xFF);
+                }
+                return Double.longBitsToDouble(bits);
+            }
+            case TAG_OPTION:
+                return (char) (in.next() & 0xFF);
+            case TAG_ROW: {
+                if (!allowRow) {
+                    throw new IOException("Nested rows are not supported");
+                }
+                int count = readVarint(in);
+                if (count < 0 || count > in.end - in.pos) {
+                    throw new IOException("Invalid row size: " + count);
+                }
+                Object[] values = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    values[i] = readValue(in, false);
+                }
+                return new Message.Row(values);
+            }
+            default:
+                throw new IOException("Unknown field tag: " + tag);
+        }
+    }
+
+    private static String readString(Cursor in) throws IOException {
+        int length = readVarint(in);
+        if (length < 0 || length > in.end - in.pos) {
+            throw new IOException("Invalid string length: " + length);
+        }
+        String s = new String(in.buf, in.pos, length, StandardCharsets.UTF_8);
+        in.pos += length;
+        return s;
+    }
+
+    private static int readVarint(Cursor in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.next();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static final class Cursor {
+        private final byte[] buf;
+        private int pos;
+        private final int end;
+
+        Cursor(byte[] buf, int pos, int end) {
+            this.buf = buf;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        byte next() throws IOException {
+            if (pos >= end) {
+                throw new EOFException("Truncated frame");
+            }
+            return buf[pos++];
+        }
+    }
+
+    private static final class Buffer {
+        private byte[] bytes;
+        private int pos;
+
+        Buffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        void put(byte b) {
+            ensure(1);
+            bytes[pos++] = b;
+        }
+
+        void put(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, bytes, pos, b.length);
+            pos += b.length;
+        }
+
+        private void ensure(int n) {
+            if (pos + n > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, pos + n));
+            }
+        }
+    }
+}
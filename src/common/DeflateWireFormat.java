@@ -0,0 +1,167 @@
+package common;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The binary format with large bodies compressed, negotiated by offering DEFLATE along
+ * with BINARY in HELLO.
+ *
+ * Frame:   as BinaryWireFormat (int32 payload length, varint request id, body)
+ * Body:    STORED byte + binary body, or
+ *          DEFLATED byte + int32 binary body length (big-endian) + zlib data of the binary body
+ *
+ * Bodies under minBytes are stored as they are: control messages gain nothing from
+ * compression and would only pay for a compressor call. So are bodies that do not
+ * shrink. Compression happens in encodeBody, so a shared message (a cached QUIZ_DATA)
+ * is compressed once per format instance rather than on every send.
+ *
+ * Deflaters and Inflaters hold native zlib state that is costly to set up, so they are
+ * pooled and reset after each use rather than created per message; any thread may
+ * encode or decode.
+ */
+public class DeflateWireFormat extends BinaryWireFormat {
+    public static final int DEFAULT_MIN_BYTES = 512;
+    public static final int DEFAULT_LEVEL = Deflater.BEST_SPEED;
+
+    private static final byte STORED = 0;
+    private static final byte DEFLATED = 1;
+    // Idle compressors kept for reuse; more are made under contention and ended on return
+    private static final int POOL_SIZE = 16;
+    // Below this no body compresses to less than it is, whatever minBytes says
+    private static final int MIN_DEFLATE_BYTES = 16;
+
+    private final int minBytes;
+    private final int level;
+    private final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+    // Binary body bytes encoded, and what went on the wire for them
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder encodedBytes = new LongAdder();
+
+    public DeflateWireFormat(int minBytes, int level) {
+        this.minBytes = minBytes;
+        this.level = level;
+    }
+
+    @Override
+    public String getName() {
+        return Protocol.FEATURE_DEFLATE;
+    }
+
+    @Override
+    protected byte[] encodeBody(Message message) {
+        byte[] body = super.encodeBody(message);
+        byte[] encoded = body.length < Math.max(minBytes, MIN_DEFLATE_BYTES) ? null : deflate(body);
+        if (encoded == null) {
+            encoded = new byte[1 + body.length];
+            encoded[0] = STORED;
+            System.arraycopy(body, 0, encoded, 1, body.length);
+        }
+        rawBytes.add(body.length);
+        encodedBytes.add(encoded.length);
+        return encoded;
+    }
+
+    /**
+     * The DEFLATED body, or null if it would not be smaller than storing the body
+     */
+    private byte[] deflate(byte[] body) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level);
+        }
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+            // Room for no more than storing takes, so an incompressible body gives up early
+            byte[] out = new byte[body.length];
+            out[0] = DEFLATED;
+            out[1] = (byte) (body.length >>> 24);
+            out[2] = (byte) (body.length >>> 16);
+            out[3] = (byte) (body.length >>> 8);
+            out[4] = (byte) body.length;
+            int pos = 5;
+            while (!deflater.finished() && pos < out.length) {
+                pos += deflater.deflate(out, pos, out.length - pos);
+            }
+            return deflater.finished() ? Arrays.copyOf(out, pos) : null;
+        } finally {
+            deflater.reset();
+            if (!deflaters.offer(deflater)) {
+                deflater.end();
+            }
+        }
+    }
+
+    @Override
+    protected Message decodeBody(byte[] buf, int start, int end) throws IOException {
+        if (start >= end) {
+            throw new IOException("Truncated frame");
+        }
+        if (buf[start] == STORED) {
+            return super.decodeBody(buf, start + 1, end);
+        }
+        if (buf[start] != DEFLATED || end - start < 5) {
+            throw new IOException("Invalid compressed body");
+        }
+        int length = ((buf[start + 1] & 0xFF) << 24) | ((buf[start + 2] & 0xFF) << 16)
+                | ((buf[start + 3] & 0xFF) << 8) | (buf[start + 4] & 0xFF);
+        // The frame limit applies to what the body inflates to as well
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid compressed body length: " + length);
+        }
+        // One spare byte, so zlib has room to go on and read its trailer once the body is out
+        byte[] body = new byte[length + 1];
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        try {
+            inflater.setInput(buf, start + 5, end - start - 5);
+            int n = 0;
+            while (!inflater.finished() && n < body.length) {
+                int inflated = inflater.inflate(body, n, body.length - n);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+            if (n != length || !inflater.finished()) {
+                throw new IOException("Corrupt compressed body");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed body", e);
+        } finally {
+            inflater.reset();
+            if (!inflaters.offer(inflater)) {
+                inflater.end();
+            }
+        }
+        return super.decodeBody(body, 0, length);
+    }
+
+    /**
+     * Whether decoding a complete frame means inflating its body. That is the costly part
+     * of decoding, so a caller on a shared thread (an NIO selector) can leave compressed
+     * frames to another thread and decode only stored ones itself.
+     */
+    public boolean isCompressed(byte[] buf, int start, int frameEnd) {
+        int pos = start + 4;
+        // Skip the varint request id
+        while (pos < frameEnd && (buf[pos] & 0x80) != 0) {
+            pos++;
+        }
+        pos++;
+        return pos < frameEnd && buf[pos] == DEFLATED;
+    }
+
+    public long getRawBytes() { return rawBytes.sum(); }
+    public long getEncodedBytes() { return encodedBytes.sum(); }
+}
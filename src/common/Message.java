@@ -0,0 +1,171 @@
+package common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One protocol message: a command followed by typed fields.
+ *
+ * Fields are Integer, Double, Character (option letters), String, or Row for
+ * repeated records such as quiz list entries. Messages decoded from the text
+ * protocol only carry strings; the typed getters convert on demand, so handler
+ * code reads the same regardless of the wire format.
+ */
+public class Message {
+    private final String command;
+    private final List<Object> fields;
+    // Set by share(): encoded bodies per wire format, reused across connections
+    private volatile Map<WireFormat, byte[]> frames;
+    // Id of the request this message was received with (0 = untagged)
+    private int requestId;
+
+    public Message(String command) {
+        this.command = command;
+        this.fields = new ArrayList<>();
+    }
+
+    Message(String command, List<Object> fields) {
+        this.command = command;
+        this.fields = fields;
+    }
+
+    public static Message of(String command, Object... fields) {
+        Message message = new Message(command);
+        for (Object field : fields) {
+            message.fields.add(field);
+        }
+        return message;
+    }
+
+    public Message add(int value) {
+        checkMutable();
+        fields.add(value);
+        return this;
+    }
+
+    public Message add(double value) {
+        checkMutable();
+        fields.add(value);
+        return this;
+    }
+
+    public Message add(String value) {
+        checkMutable();
+        fields.add(value == null ? "" : value);
+        return this;
+    }
+
+    public Message addOption(char option) {
+        checkMutable();
+        fields.add(option);
+        return this;
+    }
+
+    public Message add(Row row) {
+        checkMutable();
+        fields.add(row);
+        return this;
+    }
+
+    public Message addRow(Object... values) {
+        checkMutable();
+        fields.add(new Row(values));
+        return this;
+    }
+
+    /**
+     * Marks a fully built message as immutable so it can be sent to many clients
+     * (e.g. a cached QUIZ_DATA) without being re-encoded each time
+     */
+    public Message share() {
+        if (frames == null) {
+            frames = new ConcurrentHashMap<>(4);
+        }
+        return this;
+    }
+
+    public boolean isShared() { return frames != null; }
+
+    byte[] cachedBody(WireFormat format) {
+        return frames.computeIfAbsent(format, f -> f.encodeBody(this));
+    }
+
+    public String getCommand() { return command; }
+
+    public int getRequestId() { return requestId; }
+    void setRequestId(int requestId) { this.requestId = requestId; }
+
+    /**
+     * Number of fields after the command
+     */
+    public int size() { return fields.size(); }
+
+    public Object get(int index) { return fields.get(index); }
+
+    public String getString(int index) {
+        return asString(fields.get(index));
+    }
+
+    public int getInt(int index) {
+        return asInt(fields.get(index));
+    }
+
+    public double getDouble(int index) {
+        return asDouble(fields.get(index));
+    }
+
+    public Row getRow(int index) {
+        Object field = fields.get(index);
+        if (field instanceof Row) {
+            return (Row) field;
+        }
+        return new Row((Object[]) TextWireFormat.split(asString(field), Protocol.SUB_DELIMITER));
+    }
+
+    List<Object> fields() { return fields; }
+
+    private void checkMutable() {
+        if (frames != null) {
+            throw new IllegalStateException("Shared messages cannot be modified");
+        }
+    }
+
+    static String asString(Object value) {
+        if (value instanceof String) return (String) value;
+        return String.valueOf(value);
+    }
+
+    static int asInt(Object value) {
+        if (value instanceof Integer) return (Integer) value;
+        return Integer.parseInt(asString(value).trim());
+    }
+
+    static double asDouble(Object value) {
+        if (value instanceof Number) return ((Number) value).doubleValue();
+        return Double.parseDouble(asString(value).trim());
+    }
+
+    @Override
+    public String toString() {
+        return TextWireFormat.toLine(this);
+    }
+
+    /**
+     * A record nested inside one field (the ":::" separated parts in the text protocol)
+     */
+    public static final class Row {
+        private final Object[] values;
+
+        public Row(Object... values) {
+            this.values = values;
+        }
+
+        public int size() { return values.length; }
+        public Object get(int index) { return values[index]; }
+        public String getString(int index) { return asString(values[index]); }
+        public int getInt(int index) { return asInt(values[index]); }
+        public double getDouble(int index) { return asDouble(values[index]); }
+    }
+}
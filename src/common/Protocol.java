@@ -8,6 +8,12 @@ public class Protocol {
     public static final String LOGIN = "LOGIN";
     public static final String LOGIN_SUCCESS = "LOGIN_SUCCESS";
     public static final String LOGIN_FAILED = "LOGIN_FAILED";
+    // LOGIN_SUCCESS|||userId|||fullName|||role|||sessionToken; after a dropped connection
+    // RESUME|||sessionToken on a new one answers RESUMED|||userId|||fullName|||role|||quizId
+    // (0 when no quiz is in progress) or RESUME_FAILED|||reason
+    public static final String RESUME = "RESUME";
+    public static final String RESUMED = "RESUMED";
+    public static final String RESUME_FAILED = "RESUME_FAILED";
     public static final String REGISTER = "REGISTER";
     public static final String REGISTER_SUCCESS = "REGISTER_SUCCESS";
     public static final String REGISTER_FAILED = "REGISTER_FAILED";
@@ -33,9 +39,51 @@ public class Protocol {
     public static final String GET_MY_RESULTS = "GET_MY_RESULTS";
     public static final String RESULTS_DATA = "RESULTS_DATA";
     
+    // Paged variants: GET_ACTIVE_QUIZZES|||afterId|||limit and GET_MY_RESULTS|||afterId|||limit
+    // (afterId 0 = first page) answer with ROWS frames as rows are read from the database,
+    // then PAGE_END|||nextAfterId (0 when there are no more pages), all with the request's id
+    public static final String ROWS = "ROWS";
+    public static final String PAGE_END = "PAGE_END";
+    
+    // Versioned reads, once HELLO has agreed VERSIONS: GET_ACTIVE_QUIZZES, SUBSCRIBE|||QUIZZES
+    // and START_QUIZ take one more field, the version of the client's cached reply ("0" for
+    // none). The reply (QUIZ_LIST, PAGE_END or QUIZ_DATA) then ends with the current version,
+    // or is NOT_MODIFIED|||version, without rows, if the client's copy is current. Quiz list
+    // versions change with every quiz created or deleted; a quiz's QUIZ_DATA never does.
+    public static final String NOT_MODIFIED = "NOT_MODIFIED";
+    public static final String FEATURE_VERSIONS = "VERSIONS";
+    public static final String NO_VERSION = "0";
+    
+    // Teachers only: GET_ITEM_ANALYSIS|||quizId answers ITEM_ANALYSIS|||quizId|||attempts, then one row
+    // per question: (questionId, text, correctLetter, percentCorrect, countA, countB, countC, countD,
+    // blank, discrimination); percentCorrect and discrimination are "" while undefined
+    public static final String GET_ITEM_ANALYSIS = "GET_ITEM_ANALYSIS";
+    public static final String ITEM_ANALYSIS = "ITEM_ANALYSIS";
+    
     public static final String DELETE_QUIZ = "DELETE_QUIZ";
     public static final String QUIZ_DELETED = "QUIZ_DELETED";
     
+    // Subscriptions: SUBSCRIBE|||QUIZZES or SUBSCRIBE|||LEADERBOARD|||quizId answers with the
+    // current QUIZ_LIST / LEADERBOARD_DATA; changes then arrive as untagged *_DELTA pushes.
+    // SUBSCRIBE|||QUIZZES|||limit answers with the first page instead (ROWS..., PAGE_END);
+    // a limit of 0 asks for the whole list, as with no limit
+    public static final String SUBSCRIBE = "SUBSCRIBE";
+    public static final String UNSUBSCRIBE = "UNSUBSCRIBE";
+    public static final String UNSUBSCRIBED = "UNSUBSCRIBED";
+    public static final String TOPIC_QUIZZES = "QUIZZES";
+    public static final String TOPIC_LEADERBOARD = "LEADERBOARD";
+    public static final String QUIZ_LIST_DELTA = "QUIZ_LIST_DELTA";
+    public static final String LEADERBOARD_DELTA = "LEADERBOARD_DELTA";
+    
+    // Sent first by the client with the features it supports; the reply lists the accepted ones
+    public static final String HELLO = "HELLO";
+    public static final String FEATURE_BINARY = "BINARY";
+    // Offered with BINARY: large bodies are compressed (see DeflateWireFormat)
+    public static final String FEATURE_DEFLATE = "DEFLATE";
+    
+    public static final String PING = "PING";
+    public static final String PONG = "PONG";
+    
     public static final String ERROR = "ERROR";
     public static final String DISCONNECT = "DISCONNECT";
     
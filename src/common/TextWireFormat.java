@@ -0,0 +1,166 @@
+package common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The original line protocol: fields separated by "|||", row values by ":::",
+ * one message per line. Splitting uses indexOf instead of regex.
+ *
+ * A request id is sent as an "@id|||" prefix, so untagged lines are unchanged.
+ */
+public class TextWireFormat extends WireFormat {
+    public static final TextWireFormat INSTANCE = new TextWireFormat();
+
+    @Override
+    public String getName() {
+        return "TEXT";
+    }
+
+    @Override
+    protected byte[] encodeBody(Message message) {
+        return toLine(message).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected byte[] frame(byte[] body, int requestId) {
+        byte[] prefix = requestId == 0 ? new byte[0]
+                : ("@" + requestId + Protocol.DELIMITER).getBytes(StandardCharsets.US_ASCII);
+        byte[] frame = new byte[prefix.length + body.length + 1];
+        System.arraycopy(prefix, 0, frame, 0, prefix.length);
+        System.arraycopy(body, 0, frame, prefix.length, body.length);
+        frame[frame.length - 1] = '\n';
+        return frame;
+    }
+
+    /**
+     * Reads byte by byte, so pass a buffered stream. Unlike a Reader this never consumes
+     * bytes past the newline, which lets a connection switch formats after HELLO.
+     */
+    @Override
+    public Message read(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                byte[] bytes = line.toByteArray();
+                return decodeFrame(bytes, 0, bytes.length);
+            }
+            if (line.size() >= MAX_FRAME_BYTES) {
+                throw new IOException("Message line too long");
+            }
+            line.write(b);
+        }
+        return null;
+    }
+
+    @Override
+    public int frameEnd(byte[] buf, int start, int end) throws IOException {
+        for (int i = start; i < end; i++) {
+            if (buf[i] == '\n') {
+                return i + 1;
+            }
+        }
+        if (end - start >= MAX_FRAME_BYTES) {
+            throw new IOException("Message line too long");
+        }
+        return -1;
+    }
+
+    @Override
+    public Message decodeFrame(byte[] buf, int start, int frameEnd) throws IOException {
+        int end = frameEnd;
+        if (end > start && buf[end - 1] == '\n') end--;
+        if (end > start && buf[end - 1] == '\r') end--;
+        return parse(new String(buf, start, end - start, StandardCharsets.UTF_8));
+    }
+
+    public static Message parse(String line) throws IOException {
+        String[] split = split(line, Protocol.DELIMITER);
+        int first = 0;
+        int requestId = 0;
+        if (split.length > 1 && split[0].startsWith("@")) {
+            requestId = parseRequestId(split[0]);
+            first = 1;
+        }
+        List<Object> parts = new ArrayList<>(split.length);
+        for (int i = first + 1; i < split.length; i++) {
+            parts.add(split[i]);
+        }
+        Message message = new Message(split[first], parts);
+        message.setRequestId(requestId);
+        return message;
+    }
+
+    /**
+     * "@id" with id a non-negative int; anything else is the peer's fault, not ours
+     */
+    private static int parseRequestId(String tag) throws IOException {
+        int length = tag.length();
+        // "@" plus at most 10 digits
+        if (length < 2 || length > 11) {
+            throw new IOException("Malformed request id");
+        }
+        long id = 0;
+        for (int i = 1; i < length; i++) {
+            char c = tag.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IOException("Malformed request id");
+            }
+            id = id * 10 + (c - '0');
+        }
+        if (id > Integer.MAX_VALUE) {
+            throw new IOException("Malformed request id");
+        }
+        return (int) id;
+    }
+
+    public static String toLine(Message message) {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(message.getCommand());
+        for (Object field : message.fields()) {
+            sb.append(Protocol.DELIMITER);
+            appendValue(sb, field);
+        }
+        return sb.toString();
+    }
+
+    private static void appendValue(StringBuilder sb, Object value) {
+        if (value instanceof Message.Row) {
+            Message.Row row = (Message.Row) value;
+            for (int i = 0; i < row.size(); i++) {
+                if (i > 0) sb.append(Protocol.SUB_DELIMITER);
+                sb.append(row.get(i));
+            }
+        } else {
+            sb.append(value);
+        }
+    }
+
+    /**
+     * Literal (non-regex) split that keeps empty parts, including trailing ones
+     */
+    static String[] split(String s, String delimiter) {
+        int count = 1;
+        int from = 0;
+        int idx;
+        while ((idx = s.indexOf(delimiter, from)) >= 0) {
+            count++;
+            from = idx + delimiter.length();
+        }
+
+        String[] parts = new String[count];
+        from = 0;
+        for (int i = 0; i < count - 1; i++) {
+            idx = s.indexOf(delimiter, from);
+            parts[i] = s.substring(from, idx);
+            from = idx + delimiter.length();
+        }
+        parts[count - 1] = s.substring(from);
+        return parts;
+    }
+}
@@ -0,0 +1,56 @@
+package common;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * How messages are framed and encoded on the socket.
+ *
+ * Blocking code uses read(InputStream); non-blocking code accumulates bytes and
+ * calls frameEnd() until a complete frame is available, then decodeFrame().
+ *
+ * Every frame can carry a request id so a client may pipeline requests; responses
+ * echo the id of their request and 0 means untagged.
+ */
+public abstract class WireFormat {
+    // Guards both sides against a corrupt or hostile length prefix / endless line
+    public static final int MAX_FRAME_BYTES = 8 * 1024 * 1024;
+
+    public abstract String getName();
+
+    /**
+     * Encodes an untagged message as a complete frame, ready to be written to the socket
+     */
+    public final byte[] encode(Message message) {
+        return encode(message, 0);
+    }
+
+    /**
+     * Encodes a message as a complete frame; the body of a shared message is only
+     * encoded once per format
+     */
+    public final byte[] encode(Message message, int requestId) {
+        byte[] body = message.isShared() ? message.cachedBody(this) : encodeBody(message);
+        return frame(body, requestId);
+    }
+
+    /**
+     * The command and fields, without framing or request id
+     */
+    protected abstract byte[] encodeBody(Message message);
+
+    protected abstract byte[] frame(byte[] body, int requestId);
+
+    /**
+     * Reads one message, or returns null at end of stream
+     */
+    public abstract Message read(InputStream in) throws IOException;
+
+    /**
+     * Returns the index just past the first complete frame in buf[start, end),
+     * or -1 if more bytes are needed
+     */
+    public abstract int frameEnd(byte[] buf, int start, int end) throws IOException;
+
+    public abstract Message decodeFrame(byte[] buf, int start, int frameEnd) throws IOException;
+}
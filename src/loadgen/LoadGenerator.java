@@ -0,0 +1,136 @@
+package loadgen;
+
+import client.ServerConnection;
+import server.QuizServer;
+import server.ServerContext;
+import server.ServerTransport;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless load generator: many simulated students (see VirtualStudent), each on its
+ * own client.ServerConnection, taking quizzes against a server, with per-command
+ * throughput and latency percentiles at the end.
+ *
+ * Usage: java loadgen.LoadGenerator [--embedded=nio|thread|virtual] [--host=localhost] [--port=9999]
+ *        [--users=1000] [--rampSeconds=30] [--seconds=120] [--thinkMs=2000]
+ *        [--quizzes=20] [--questions=20] [--out=results.json] [--baseline=previous.json]
+ *        [--maxRegression=25]
+ *
+ * --embedded starts the server in this process on a StubQuizDAO (no database), with
+ * --quizzes generated quizzes of --questions questions. Against a real server the users
+ * student0..student{users-1} must exist with password "student" (StubQuizDAO.PASSWORD).
+ *
+ * Students are started evenly over --rampSeconds and stop at the end of --seconds.
+ * --out writes the results as JSON; --baseline compares p99 per command with an earlier
+ * results file and exits with status 1 if any command got more than --maxRegression
+ * percent slower. Large runs need a high file descriptor limit (two sockets per user
+ * with --embedded) and one reader thread per user.
+ */
+public class LoadGenerator {
+	public static void main(String[] args) throws Exception {
+		String embedded = option(args, "embedded", null);
+		String host = option(args, "host", "localhost");
+		int port = Integer.parseInt(option(args, "port", "9999"));
+		int users = Integer.parseInt(option(args, "users", "1000"));
+		int rampSeconds = Integer.parseInt(option(args, "rampSeconds", "30"));
+		int seconds = Integer.parseInt(option(args, "seconds", "120"));
+		long thinkMillis = Long.parseLong(option(args, "thinkMs", "2000"));
+		int quizzes = Integer.parseInt(option(args, "quizzes", "20"));
+		int questions = Integer.parseInt(option(args, "questions", "20"));
+		String out = option(args, "out", null);
+		String baseline = option(args, "baseline", null);
+		double maxRegression = Double.parseDouble(option(args, "maxRegression", "25"));
+
+		ServerTransport transport = null;
+		ServerContext context = null;
+		if (embedded != null) {
+			context = new ServerContext(new StubQuizDAO(quizzes, questions));
+			transport = QuizServer.createTransport(embedded, port, context);
+			transport.start();
+		}
+
+		LoadReport report = new LoadReport();
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+			Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+				Thread t = new Thread(r, "loadgen-scheduler");
+				t.setDaemon(true);
+				return t;
+			});
+		CountDownLatch done = new CountDownLatch(users);
+		long start = System.nanoTime();
+		long deadline = start + seconds * 1_000_000_000L;
+		for (int i = 0; i < users; i++) {
+			VirtualStudent student = new VirtualStudent(i, new ServerConnection(host, port), scheduler, report,
+				thinkMillis, deadline, done);
+			long delay = users > 1 ? rampSeconds * 1000L * i / users : 0;
+			scheduler.schedule(student::start, delay, TimeUnit.MILLISECONDS);
+		}
+
+		// Progress once every 10 seconds, on stderr so stdout stays the report
+		long lastRequests = 0;
+		while (!done.await(10, TimeUnit.SECONDS)) {
+			long requests = report.totalRequests();
+			System.err.printf("%4ds  active=%d  %.0f req/s  errors=%d%n",
+				(System.nanoTime() - start) / 1_000_000_000L, done.getCount(), (requests - lastRequests) / 10.0,
+				report.totalErrors());
+			lastRequests = requests;
+			if (System.nanoTime() > deadline + 30_000_000_000L) {
+				System.err.println("Giving up on " + done.getCount() + " students that did not stop");
+				break;
+			}
+		}
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		scheduler.shutdownNow();
+
+		System.out.print(report.toTable(elapsed));
+
+		Map<String, Object> config = new LinkedHashMap<>();
+		config.put("target", embedded != null ? "embedded-" + embedded : host + ":" + port);
+		config.put("users", users);
+		config.put("rampSeconds", rampSeconds);
+		config.put("seconds", seconds);
+		config.put("thinkMs", thinkMillis);
+		config.put("quizzes", quizzes);
+		config.put("questions", questions);
+		if (out != null) {
+			Files.write(Paths.get(out), report.toJson(config, elapsed).getBytes(StandardCharsets.UTF_8));
+			System.out.println("Results written to " + out);
+		}
+
+		int status = 0;
+		if (baseline != null) {
+			StringBuilder comparison = new StringBuilder();
+			Path file = Paths.get(baseline);
+			double worst = report.compare(file, comparison);
+			System.out.print(comparison);
+			if (worst > maxRegression) {
+				System.out.printf("p99 regression of %.1f%% exceeds %.1f%%%n", worst, maxRegression);
+				status = 1;
+			}
+		}
+
+		if (transport != null) {
+			transport.stop();
+			context.shutdown();
+		}
+		System.exit(status);
+	}
+
+	static String option(String[] args, String name, String defaultValue) {
+		String prefix = "--" + name + "=";
+		for (String arg : args) {
+			if (arg.startsWith(prefix)) return arg.substring(prefix.length());
+		}
+		return defaultValue;
+	}
+}
@@ -0,0 +1,162 @@
+package loadgen;
+
+import server.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Client-side latency per command, as seen by the virtual users (request sent to
+ * response received), and the results file written at the end of a run.
+ *
+ * The JSON is written one command per line so runs can be diffed, and so compare()
+ * can read a previous results file back without a JSON library.
+ */
+final class LoadReport {
+	// Matches the command lines of a results file: "NAME": {"count": ..., "p99Ms": ...
+	private static final Pattern COMMAND_LINE = Pattern.compile("\"(\\w+)\": \\{\"count\": (\\d+).*\"p99Ms\": ([0-9.]+)");
+
+	private static final class Stats {
+		final LatencyHistogram latency = new LatencyHistogram();
+		final LongAdder errors = new LongAdder();
+	}
+
+	// Insertion order is the order of a student's session, which reads best in the table
+	private final Map<String, Stats> commands = new ConcurrentHashMap<>();
+	private final Map<String, Boolean> order = new LinkedHashMap<>();
+
+	void record(String command, long nanos, boolean failed) {
+		Stats stats = commands.get(command);
+		if (stats == null) {
+			synchronized (order) {
+				stats = commands.computeIfAbsent(command, c -> new Stats());
+				order.putIfAbsent(command, Boolean.TRUE);
+			}
+		}
+		stats.latency.record(nanos);
+		if (failed) {
+			stats.errors.increment();
+		}
+	}
+
+	long totalRequests() {
+		long total = 0;
+		for (Stats stats : commands.values()) {
+			total += stats.latency.getCount();
+		}
+		return total;
+	}
+
+	long totalErrors() {
+		long total = 0;
+		for (Stats stats : commands.values()) {
+			total += stats.errors.sum();
+		}
+		return total;
+	}
+
+	String toTable(double seconds) {
+		StringBuilder out = new StringBuilder();
+		out.append(String.format(Locale.ROOT, "%-20s %9s %7s %9s %9s %9s %9s %9s%n",
+			"command", "count", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+		for (String command : commandOrder()) {
+			Stats stats = commands.get(command);
+			LatencyHistogram h = stats.latency;
+			out.append(String.format(Locale.ROOT, "%-20s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+				command, h.getCount(), stats.errors.sum(), h.getCount() / seconds,
+				millis(h.percentileNanos(0.50)), millis(h.percentileNanos(0.99)),
+				millis(h.percentileNanos(0.999)), millis(h.getMaxNanos())));
+		}
+		out.append(String.format(Locale.ROOT, "%-20s %9d %7d %9.1f%n", "total", totalRequests(), totalErrors(),
+			totalRequests() / seconds));
+		return out.toString();
+	}
+
+	String toJson(Map<String, Object> config, double seconds) {
+		StringBuilder out = new StringBuilder();
+		out.append("{\n");
+		out.append("  \"timestamp\": \"").append(Instant.now()).append("\",\n");
+		out.append("  \"config\": {");
+		String separator = "";
+		for (Map.Entry<String, Object> entry : config.entrySet()) {
+			out.append(separator).append('"').append(entry.getKey()).append("\": ");
+			Object value = entry.getValue();
+			if (value instanceof Number) {
+				out.append(value);
+			} else {
+				out.append('"').append(value).append('"');
+			}
+			separator = ", ";
+		}
+		out.append("},\n");
+		out.append(String.format(Locale.ROOT, "  \"elapsedSeconds\": %.3f,%n", seconds));
+		out.append("  \"requests\": ").append(totalRequests()).append(",\n");
+		out.append("  \"errors\": ").append(totalErrors()).append(",\n");
+		out.append(String.format(Locale.ROOT, "  \"throughput\": %.1f,%n", totalRequests() / seconds));
+		out.append("  \"commands\": {\n");
+		separator = "";
+		for (String command : commandOrder()) {
+			Stats stats = commands.get(command);
+			LatencyHistogram h = stats.latency;
+			out.append(separator);
+			out.append(String.format(Locale.ROOT,
+				"    \"%s\": {\"count\": %d, \"errors\": %d, \"throughput\": %.1f, \"meanMs\": %.3f, " +
+					"\"p50Ms\": %.3f, \"p99Ms\": %.3f, \"p999Ms\": %.3f, \"maxMs\": %.3f}",
+				command, h.getCount(), stats.errors.sum(), h.getCount() / seconds, h.getMeanNanos() / 1e6,
+				millis(h.percentileNanos(0.50)), millis(h.percentileNanos(0.99)),
+				millis(h.percentileNanos(0.999)), millis(h.getMaxNanos())));
+			separator = ",\n";
+		}
+		out.append("\n  }\n}\n");
+		return out.toString();
+	}
+
+	/**
+	 * Prints p99 against a previous results file; returns the largest p99 increase in percent
+	 */
+	double compare(Path baselineFile, StringBuilder out) throws IOException {
+		Map<String, Double> baseline = new LinkedHashMap<>();
+		for (String line : Files.readAllLines(baselineFile, StandardCharsets.UTF_8)) {
+			Matcher m = COMMAND_LINE.matcher(line);
+			if (m.find()) {
+				baseline.put(m.group(1), Double.parseDouble(m.group(3)));
+			}
+		}
+		double worst = 0;
+		out.append(String.format(Locale.ROOT, "%-20s %12s %12s %9s%n", "command", "baseline p99", "p99 ms", "change"));
+		for (String command : commandOrder()) {
+			Double before = baseline.get(command);
+			double now = millis(commands.get(command).latency.percentileNanos(0.99));
+			if (before == null || before == 0) {
+				out.append(String.format(Locale.ROOT, "%-20s %12s %12.2f %9s%n", command, "-", now, "new"));
+				continue;
+			}
+			double change = (now - before) / before * 100;
+			worst = Math.max(worst, change);
+			out.append(String.format(Locale.ROOT, "%-20s %12.2f %12.2f %+8.1f%%%n", command, before, now, change));
+		}
+		return worst;
+	}
+
+	private List<String> commandOrder() {
+		synchronized (order) {
+			return new ArrayList<>(order.keySet());
+		}
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+}
@@ -0,0 +1,125 @@
+package loadgen;
+
+import model.Question;
+import model.Quiz;
+import model.QuizAttempt;
+import model.User;
+import server.PasswordHasher;
+import server.InMemoryQuizRepository;
+import server.ServerConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Stands in for the database when the server runs embedded in a load test or bench:
+ * users student0, student1, ... (all with password PASSWORD), a fixed set of generated
+ * quizzes, and attempts that get ids but are not kept, so memory stays flat however long
+ * the run. Everything else behaves as InMemoryQuizRepository. Every node of an embedded
+ * cluster can share one instance, as they would share the database.
+ */
+public class StubQuizDAO extends InMemoryQuizRepository {
+	public static final String PASSWORD = "student";
+	public static final String USERNAME_PREFIX = "student";
+
+	private final int quizzes;
+	private final int questions;
+	// One hash for everyone: logins still pay for a full PBKDF2 verification
+	private final String passwordHash = new PasswordHasher(ServerConfig.PBKDF2_ITERATIONS).hash(PASSWORD);
+	private final AtomicInteger nextAttemptId = new AtomicInteger();
+
+	public StubQuizDAO(int quizzes, int questions) {
+		this.quizzes = quizzes;
+		this.questions = questions;
+	}
+
+	public int getQuizCount() { return quizzes; }
+	public int getQuestionCount() { return questions; }
+
+	@Override
+	public User findUserByUsername(String username) {
+		if (!username.startsWith(USERNAME_PREFIX)) {
+			return null;
+		}
+		int id;
+		try {
+			id = Integer.parseInt(username.substring(USERNAME_PREFIX.length()));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		User user = new User(1000 + id, username, "Student " + id, "STUDENT");
+		user.setPassword(passwordHash);
+		return user;
+	}
+
+	@Override
+	public void updatePasswordHash(int userId, String hash) {
+		// The shared hash is already current
+	}
+
+	@Override
+	public Quiz getQuizWithQuestions(int quizId) {
+		if (quizId < 1 || quizId > quizzes) {
+			return null;
+		}
+		Quiz quiz = listing(quizId);
+		for (int i = 0; i < questions; i++) {
+			Question q = new Question("Question " + (i + 1) + " of quiz " + quizId,
+				"Option A", "Option B", "Option C", "Option D", String.valueOf("ABCD".charAt((quizId + i) & 3)));
+			q.setQuestionId(quizId * 1000 + i);
+			quiz.addQuestion(q);
+		}
+		return quiz;
+	}
+
+	@Override
+	public List<Quiz> getActiveQuizzes() {
+		List<Quiz> list = new ArrayList<>(quizzes);
+		streamActiveQuizzes(0, quizzes, list::add);
+		return list;
+	}
+
+	@Override
+	public void streamActiveQuizzes(int afterQuizId, int limit, Consumer<Quiz> handler) {
+		int first = afterQuizId > 0 ? Math.min(afterQuizId - 1, quizzes) : quizzes;
+		for (int id = first; id >= 1 && id > first - limit; id--) {
+			handler.accept(listing(id));
+		}
+	}
+
+	@Override
+	public int[] saveQuizAttempts(List<QuizAttempt> attempts) {
+		int[] ids = new int[attempts.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = nextAttemptId.incrementAndGet();
+		}
+		return ids;
+	}
+
+	@Override
+	public List<QuizAttempt> getLeaderboard(int quizId) {
+		// Boards start empty and fill from attempts made during the run
+		return Collections.emptyList();
+	}
+
+	@Override
+	public List<QuizAttempt> getStudentResults(int studentId) {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public void streamStudentResults(int studentId, int afterAttemptId, int limit, Consumer<QuizAttempt> handler) {
+		// Attempts are not kept
+	}
+
+	private Quiz listing(int quizId) {
+		Quiz quiz = new Quiz("Load test quiz " + quizId, 1, 30);
+		quiz.setQuizId(quizId);
+		quiz.setTeacherName("Teacher");
+		quiz.setTotalQuestions(questions);
+		return quiz;
+	}
+}
@@ -0,0 +1,155 @@
+package loadgen;
+
+import client.ServerConnection;
+import common.Message;
+import common.Protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * One simulated student on its own ServerConnection, following the session a real
+ * student's client produces: LOGIN, first page of GET_ACTIVE_QUIZZES, START_QUIZ, a
+ * SUBMIT_ANSWER per question with think time in between, FINISH_QUIZ, GET_LEADERBOARD,
+ * then a pause and another quiz until the run ends.
+ *
+ * Nothing blocks: each step sends its request and the response callback schedules the
+ * next one, so thousands of students need only their connections' reader threads and a
+ * small scheduler. A failed step (ERROR, *_FAILED or a lost connection) is counted and
+ * the student starts over from the quiz list after a pause.
+ */
+final class VirtualStudent {
+	private static final int LIST_PAGE = 20;
+
+	private final int id;
+	private final ServerConnection connection;
+	private final ScheduledExecutorService scheduler;
+	private final LoadReport report;
+	private final long thinkMillis;
+	private final long deadlineNanos;
+	private final CountDownLatch done;
+
+	private boolean loggedIn = false;
+	private final List<Integer> quizIds = new ArrayList<>();
+	private int quizId;
+	private int questions;
+	private int question;
+
+	VirtualStudent(int id, ServerConnection connection, ScheduledExecutorService scheduler, LoadReport report,
+				   long thinkMillis, long deadlineNanos, CountDownLatch done) {
+		this.id = id;
+		this.connection = connection;
+		this.scheduler = scheduler;
+		this.report = report;
+		this.thinkMillis = thinkMillis;
+		this.deadlineNanos = deadlineNanos;
+		this.done = done;
+	}
+
+	void start() {
+		long start = System.nanoTime();
+		if (!connection.connect()) {
+			report.record("CONNECT", System.nanoTime() - start, true);
+			done.countDown();
+			return;
+		}
+		report.record("CONNECT", System.nanoTime() - start, false);
+		login();
+	}
+
+	private void login() {
+		send(Protocol.LOGIN, Message.of(Protocol.LOGIN, StubQuizDAO.USERNAME_PREFIX + id, StubQuizDAO.PASSWORD),
+			response -> {
+				loggedIn = true;
+				after(thinkMillis, this::listQuizzes);
+			});
+	}
+
+	private void listQuizzes() {
+		quizIds.clear();
+		long start = System.nanoTime();
+		connection.stream(new Message(Protocol.GET_ACTIVE_QUIZZES).add(0).add(LIST_PAGE), rows -> {
+			for (int i = 0; i < rows.size(); i++) {
+				quizIds.add(rows.getRow(i).getInt(0));
+			}
+		}).whenComplete((response, error) -> {
+			boolean failed = error != null || failed(response) || quizIds.isEmpty();
+			report.record(Protocol.GET_ACTIVE_QUIZZES, System.nanoTime() - start, failed);
+			if (failed) {
+				retry();
+			} else {
+				after(thinkMillis, this::startQuiz);
+			}
+		});
+	}
+
+	private void startQuiz() {
+		quizId = quizIds.get(ThreadLocalRandom.current().nextInt(quizIds.size()));
+		send(Protocol.START_QUIZ, new Message(Protocol.START_QUIZ).add(quizId), response -> {
+			questions = response.size() - 4;
+			question = 0;
+			after(thinkMillis, this::answer);
+		});
+	}
+
+	private void answer() {
+		String choice = String.valueOf("ABCD".charAt(ThreadLocalRandom.current().nextInt(4)));
+		int seconds = (int) Math.max(1, thinkMillis / 1000);
+		send(Protocol.SUBMIT_ANSWER, new Message(Protocol.SUBMIT_ANSWER).add(quizId).add(question).add(choice).add(seconds),
+			response -> {
+				question++;
+				after(thinkMillis, question < questions ? this::answer : this::finish);
+			});
+	}
+
+	private void finish() {
+		int timeTaken = (int) (questions * Math.max(1, thinkMillis / 1000));
+		send(Protocol.FINISH_QUIZ, new Message(Protocol.FINISH_QUIZ).add(quizId).add(timeTaken),
+			response -> after(thinkMillis, this::leaderboard));
+	}
+
+	private void leaderboard() {
+		send(Protocol.GET_LEADERBOARD, new Message(Protocol.GET_LEADERBOARD).add(quizId),
+			response -> after(thinkMillis * 3, this::listQuizzes));
+	}
+
+	private void send(String command, Message message, Consumer<Message> next) {
+		long start = System.nanoTime();
+		connection.request(message).whenComplete((response, error) -> {
+			boolean failed = error != null || failed(response);
+			report.record(command, System.nanoTime() - start, failed);
+			if (failed) {
+				retry();
+			} else {
+				next.accept(response);
+			}
+		});
+	}
+
+	private void retry() {
+		after(thinkMillis * 3, loggedIn ? this::listQuizzes : this::login);
+	}
+
+	/**
+	 * Runs the step after a think time of 50-150% of the given mean, unless the run is over
+	 */
+	private void after(long meanMillis, Runnable step) {
+		long think = meanMillis <= 0 ? 0 : meanMillis / 2 + ThreadLocalRandom.current().nextLong(meanMillis + 1);
+		if (System.nanoTime() + think * 1_000_000 >= deadlineNanos) {
+			connection.disconnect();
+			done.countDown();
+			return;
+		}
+		scheduler.schedule(step, think, TimeUnit.MILLISECONDS);
+	}
+
+	private static boolean failed(Message response) {
+		String command = response.getCommand();
+		return Protocol.ERROR.equals(command) || command.endsWith("_FAILED");
+	}
+}
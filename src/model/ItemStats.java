@@ -0,0 +1,72 @@
+package model;
+
+import java.io.Serializable;
+
+/**
+ * Running totals for one question, from which item analysis is computed: how often each
+ * option was chosen, how often the answer was right, and sums of the attempt scores for
+ * the point-biserial discrimination. Totals only ever grow, so two of them can be added
+ * (see server.ItemAnalysis).
+ */
+public class ItemStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int questionId;
+    private int quizId;
+    private long responses;
+    private long correct;
+    private long[] optionCounts = new long[4]; // A, B, C, D
+    private long blank;
+    private long sumScore;
+    private long sumScoreSquares;
+    private long sumScoreCorrect; // scores of the attempts that got this question right
+
+    public ItemStats() {}
+
+    public ItemStats(int questionId, int quizId) {
+        this.questionId = questionId;
+        this.quizId = quizId;
+    }
+
+    public int getQuestionId() { return questionId; }
+    public void setQuestionId(int questionId) { this.questionId = questionId; }
+
+    public int getQuizId() { return quizId; }
+    public void setQuizId(int quizId) { this.quizId = quizId; }
+
+    public long getResponses() { return responses; }
+    public void setResponses(long responses) { this.responses = responses; }
+
+    public long getCorrect() { return correct; }
+    public void setCorrect(long correct) { this.correct = correct; }
+
+    public long getOptionCount(int option) { return optionCounts[option]; }
+    public void setOptionCount(int option, long count) { optionCounts[option] = count; }
+
+    public long getBlank() { return blank; }
+    public void setBlank(long blank) { this.blank = blank; }
+
+    public long getSumScore() { return sumScore; }
+    public void setSumScore(long sumScore) { this.sumScore = sumScore; }
+
+    public long getSumScoreSquares() { return sumScoreSquares; }
+    public void setSumScoreSquares(long sumScoreSquares) { this.sumScoreSquares = sumScoreSquares; }
+
+    public long getSumScoreCorrect() { return sumScoreCorrect; }
+    public void setSumScoreCorrect(long sumScoreCorrect) { this.sumScoreCorrect = sumScoreCorrect; }
+
+    /**
+     * Adds another set of totals for the same question to this one
+     */
+    public void add(ItemStats other) {
+        responses += other.responses;
+        correct += other.correct;
+        for (int i = 0; i < optionCounts.length; i++) {
+            optionCounts[i] += other.optionCounts[i];
+        }
+        blank += other.blank;
+        sumScore += other.sumScore;
+        sumScoreSquares += other.sumScoreSquares;
+        sumScoreCorrect += other.sumScoreCorrect;
+    }
+}
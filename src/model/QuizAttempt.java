@@ -2,6 +2,8 @@ package model;
 
 import java.io.Serializable;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
 
 public class QuizAttempt implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -16,6 +18,7 @@ public class QuizAttempt implements Serializable {
     private double percentage;
     private int timeTaken; // in seconds
     private Timestamp attemptDate;
+    private List<StudentAnswer> answers = new ArrayList<>();
     
     public QuizAttempt() {}
     
@@ -58,4 +61,7 @@ public class QuizAttempt implements Serializable {
     
     public Timestamp getAttemptDate() { return attemptDate; }
     public void setAttemptDate(Timestamp attemptDate) { this.attemptDate = attemptDate; }
+    
+    public List<StudentAnswer> getAnswers() { return answers; }
+    public void setAnswers(List<StudentAnswer> answers) { this.answers = answers; }
 }
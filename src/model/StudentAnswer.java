@@ -0,0 +1,34 @@
+package model;
+
+import java.io.Serializable;
+
+public class StudentAnswer implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private int questionId;
+    private String selectedAnswer; // A, B, C, D or null when unanswered
+    private boolean correct;
+    private Integer timeTaken; // seconds spent on the question, null if the client didn't report it
+    
+    public StudentAnswer() {}
+    
+    public StudentAnswer(int questionId, String selectedAnswer, boolean correct, Integer timeTaken) {
+        this.questionId = questionId;
+        this.selectedAnswer = selectedAnswer;
+        this.correct = correct;
+        this.timeTaken = timeTaken;
+    }
+    
+    // Getters and Setters
+    public int getQuestionId() { return questionId; }
+    public void setQuestionId(int questionId) { this.questionId = questionId; }
+    
+    public String getSelectedAnswer() { return selectedAnswer; }
+    public void setSelectedAnswer(String selectedAnswer) { this.selectedAnswer = selectedAnswer; }
+    
+    public boolean isCorrect() { return correct; }
+    public void setCorrect(boolean correct) { this.correct = correct; }
+    
+    public Integer getTimeTaken() { return timeTaken; }
+    public void setTimeTaken(Integer timeTaken) { this.timeTaken = timeTaken; }
+}
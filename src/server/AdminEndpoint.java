@@ -0,0 +1,94 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Plain-text metrics on a loopback-only admin port, for a Prometheus scraper or
+ * `curl localhost:9998/metrics` / `nc localhost 9998`. HTTP requests get an HTTP/1.0
+ * response; anything else (or nothing within a second) just gets the text. Scrapes
+ * are served one at a time on a single daemon thread.
+ */
+public class AdminEndpoint {
+	private static final Log LOG = Log.get(AdminEndpoint.class);
+	private static final int READ_TIMEOUT_MS = 1000;
+
+	private final int port;
+	private final Metrics metrics;
+	private ServerSocket serverSocket;
+	private volatile boolean running = false;
+
+	public AdminEndpoint(int port, Metrics metrics) {
+		this.port = port;
+		this.metrics = metrics;
+	}
+
+	public void start() throws IOException {
+		serverSocket = new ServerSocket(port, 16, InetAddress.getLoopbackAddress());
+		running = true;
+		Thread thread = new Thread(this::acceptLoop, "quiz-admin");
+		thread.setDaemon(true);
+		thread.start();
+		LOG.info("Admin endpoint listening address={} port={}", serverSocket.getInetAddress().getHostAddress(), port);
+	}
+
+	private void acceptLoop() {
+		while (running) {
+			try (Socket socket = serverSocket.accept()) {
+				serve(socket);
+			} catch (IOException e) {
+				if (running) {
+					LOG.warn("Admin request failed: {}", e.getMessage());
+				}
+			}
+		}
+	}
+
+	private void serve(Socket socket) throws IOException {
+		socket.setSoTimeout(READ_TIMEOUT_MS);
+		BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+		String requestLine = null;
+		try {
+			requestLine = in.readLine();
+			if (requestLine != null && requestLine.startsWith("GET ")) {
+				// Skip the headers
+				String header;
+				while ((header = in.readLine()) != null && !header.isEmpty()) {
+					// ignore
+				}
+			}
+		} catch (SocketTimeoutException e) {
+			// A bare TCP client that sends nothing still gets the metrics
+		}
+
+		byte[] body = metrics.toText().getBytes(StandardCharsets.UTF_8);
+		OutputStream out = socket.getOutputStream();
+		if (requestLine != null && requestLine.startsWith("GET ")) {
+			String head = "HTTP/1.0 200 OK\r\n" +
+				"Content-Type: text/plain; version=0.0.4; charset=utf-8\r\n" +
+				"Content-Length: " + body.length + "\r\n" +
+				"Connection: close\r\n\r\n";
+			out.write(head.getBytes(StandardCharsets.US_ASCII));
+		}
+		out.write(body);
+		out.flush();
+	}
+
+	public void stop() {
+		running = false;
+		try {
+			if (serverSocket != null) {
+				serverSocket.close();
+			}
+		} catch (IOException e) {
+			LOG.warn("Error closing admin socket: {}", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package server;
+
+import model.Question;
+import model.Quiz;
+
+import java.util.List;
+
+/**
+ * A quiz's answer key compiled to one byte per question: the option index (A=0 .. D=3),
+ * or UNGRADABLE where the stored answer is not one of A-D.
+ *
+ * Built once per cached quiz and shared read-only by every session on it. Answers are
+ * decoded into the same form, so grading is a byte comparison per question with no
+ * String handling or allocation.
+ */
+public final class AnswerKey {
+	public static final byte NO_ANSWER = -1;
+
+	// Key value that no decoded answer equals, so grading needs no NO_ANSWER check
+	private static final byte UNGRADABLE = -2;
+
+	private static final String[] LETTERS = {"A", "B", "C", "D"};
+
+	private final int quizId;
+	private final String quizName;
+	private final int[] questionIds;
+	private final byte[] options;
+
+	private AnswerKey(int quizId, String quizName, int[] questionIds, byte[] options) {
+		this.quizId = quizId;
+		this.quizName = quizName;
+		this.questionIds = questionIds;
+		this.options = options;
+	}
+
+	public static AnswerKey compile(Quiz quiz) {
+		List<Question> questions = quiz.getQuestions();
+		int count = questions.size();
+		int[] questionIds = new int[count];
+		byte[] options = new byte[count];
+		for (int i = 0; i < count; i++) {
+			questionIds[i] = questions.get(i).getQuestionId();
+			byte option = option(questions.get(i).getCorrectAnswer());
+			options[i] = option == NO_ANSWER ? UNGRADABLE : option;
+		}
+		return new AnswerKey(quiz.getQuizId(), quiz.getQuizName(), questionIds, options);
+	}
+
+	/**
+	 * Decodes "A".."D" (either case) to an option index; anything else is NO_ANSWER
+	 */
+	public static byte option(String answer) {
+		if (answer == null || answer.length() != 1) {
+			return NO_ANSWER;
+		}
+		return option(answer.charAt(0));
+	}
+
+	public static byte option(char c) {
+		int index = (c | 0x20) - 'a';
+		return index >= 0 && index < 4 ? (byte) index : NO_ANSWER;
+	}
+
+	/**
+	 * The letter stored in student_answers.selected_answer, or null for no answer
+	 */
+	public static String letter(byte option) {
+		return option >= 0 && option < 4 ? LETTERS[option] : null;
+	}
+
+	public int getQuizId() { return quizId; }
+	public String getQuizName() { return quizName; }
+	public int getQuestionCount() { return options.length; }
+	public int getQuestionId(int index) { return questionIds[index]; }
+
+	/**
+	 * "A".."D", or null if the stored answer is not a valid option
+	 */
+	public String getCorrectLetter(int index) { return letter(options[index]); }
+
+	public boolean isCorrect(int index, byte answer) {
+		return options[index] == answer;
+	}
+
+	/**
+	 * Number of correct answers; answers beyond the key are ignored, missing ones are wrong
+	 */
+	public int score(byte[] answers) {
+		int n = Math.min(answers.length, options.length);
+		int score = 0;
+		for (int i = 0; i < n; i++) {
+			// Branch-free: 1 when the bytes are equal, else 0 (answers are random, so a branch mispredicts)
+			score += (((answers[i] ^ options[i]) & 0xFF) - 1) >>> 31;
+		}
+		return score;
+	}
+}
@@ -0,0 +1,84 @@
+package server;
+
+import model.QuizAttempt;
+import model.StudentAnswer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A quiz in progress on one connection, created by START_QUIZ.
+ *
+ * Grades each SUBMIT_ANSWER against the quiz's compiled AnswerKey as it arrives, so
+ * FINISH_QUIZ only has to read the running score. Answers may be resubmitted
+ * (Previous/Next); the latest one counts. A session belongs to one ClientHandler, whose
+ * messages are handled one at a time, so it needs no locking; after a RESUME it is handed
+ * to the new connection's handler (see SessionTable).
+ */
+public class AttemptSession {
+	// Seconds spent on a question that the client did not report
+	public static final int NO_TIME = -1;
+
+	private final AnswerKey key;
+	private final byte[] answers;
+	private final int[] seconds;
+	private int score = 0;
+
+	public AttemptSession(AnswerKey key) {
+		this.key = key;
+		this.answers = new byte[key.getQuestionCount()];
+		this.seconds = new int[key.getQuestionCount()];
+		Arrays.fill(answers, AnswerKey.NO_ANSWER);
+		Arrays.fill(seconds, NO_TIME);
+	}
+
+	/**
+	 * Rebuilds a session from recorded answers (see ClusterSync), regrading them
+	 */
+	AttemptSession(AnswerKey key, byte[] answers, int[] seconds) {
+		this(key);
+		for (int i = 0; i < Math.min(answers.length, this.answers.length); i++) {
+			submit(i, answers[i], seconds[i]);
+		}
+	}
+
+	public int getQuizId() { return key.getQuizId(); }
+	public int getQuestionCount() { return key.getQuestionCount(); }
+	public int getScore() { return score; }
+	AnswerKey getKey() { return key; }
+	byte getAnswer(int index) { return answers[index]; }
+	int getSeconds(int index) { return seconds[index]; }
+
+	/**
+	 * Records (or replaces) the answer, an AnswerKey option, to the question at the given position
+	 */
+	public void submit(int index, byte answer, int secondsSpent) {
+		if (index < 0 || index >= answers.length) {
+			throw new IllegalArgumentException("Invalid question index: " + index);
+		}
+		if (key.isCorrect(index, answers[index])) {
+			score--;
+		}
+		if (key.isCorrect(index, answer)) {
+			score++;
+		}
+		answers[index] = answer;
+		seconds[index] = secondsSpent;
+	}
+
+	/**
+	 * Builds the attempt to persist; unanswered questions are stored as such
+	 */
+	public QuizAttempt finish(int studentId, int timeTaken) {
+		QuizAttempt attempt = new QuizAttempt(key.getQuizId(), studentId, score, answers.length, timeTaken);
+		List<StudentAnswer> rows = new ArrayList<>(answers.length);
+		for (int i = 0; i < answers.length; i++) {
+			rows.add(new StudentAnswer(key.getQuestionId(i), AnswerKey.letter(answers[i]),
+				key.isCorrect(i, answers[i]), seconds[i] == NO_TIME ? null : Integer.valueOf(seconds[i])));
+		}
+		attempt.setAnswers(rows);
+		attempt.setQuizName(key.getQuizName());
+		return attempt;
+	}
+}
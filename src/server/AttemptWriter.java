@@ -0,0 +1,223 @@
+package server;
+
+import model.QuizAttempt;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind pipeline for graded quiz attempts. Submissions wait in a bounded
+ * queue and a single flusher thread writes whatever has accumulated as one JDBC
+ * batch, so an end-of-quiz burst costs a few multi-row inserts instead of one
+ * auto-commit INSERT per student. Callers still get the generated attempt id.
+ */
+public class AttemptWriter {
+	private static final Log LOG = Log.get(AttemptWriter.class);
+
+	private static final PendingAttempt POISON = new PendingAttempt(null);
+
+	private final QuizRepository dao;
+	private final int batchSize;
+	private final long offerTimeoutMillis;
+	private final BlockingQueue<PendingAttempt> queue;
+	private final Thread flusher;
+	private final List<Consumer<QuizAttempt>> saveListeners = new CopyOnWriteArrayList<>();
+	private volatile boolean accepting = true;
+	// save() holds it shared from the accepting check through the offer, so close() cannot
+	// queue POISON in between and leave an attempt behind it that nothing will write
+	private final ReentrantReadWriteLock shutdownLock = new ReentrantReadWriteLock();
+
+	public AttemptWriter(QuizRepository dao, int queueCapacity, int batchSize, long offerTimeoutMillis) {
+		this.dao = dao;
+		this.batchSize = batchSize;
+		this.offerTimeoutMillis = offerTimeoutMillis;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.flusher = new Thread(this::flushLoop, "quiz-attempt-writer");
+		// close() is what guarantees the final flush; the thread must not keep a failed startup alive
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+	}
+
+	/**
+	 * Queues an attempt and waits until its batch is committed.
+	 * Blocks for at most offerTimeoutMillis when the queue is full (back-pressure).
+	 * An attempt that times out before the writer picks it up is withdrawn, so it is
+	 * safe to retry; one already being written is waited for instead.
+	 *
+	 * @return the generated attempt id
+	 */
+	public int save(QuizAttempt attempt) throws SQLException {
+		PendingAttempt pending = new PendingAttempt(attempt);
+		try {
+			shutdownLock.readLock().lock();
+			try {
+				if (!accepting) {
+					throw new SQLException("Server is shutting down, submission not accepted");
+				}
+				if (!queue.offer(pending, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+					throw new SQLException("Too many submissions in progress, please retry");
+				}
+			} finally {
+				shutdownLock.readLock().unlock();
+			}
+			try {
+				return pending.result.get(30, TimeUnit.SECONDS);
+			} catch (TimeoutException e) {
+				if (withdraw(pending)) {
+					throw new SQLException("Timed out while saving quiz attempt", e);
+				}
+				// Its batch is in flight: the outcome of that is the answer
+				return pending.result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			withdraw(pending);
+			throw new SQLException("Interrupted while saving quiz attempt", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SQLException) {
+				throw (SQLException) cause;
+			}
+			throw new SQLException("Failed to save quiz attempt: " + cause.getMessage(), cause);
+		}
+	}
+
+	/**
+	 * Takes a queued attempt back before it is written; false if the writer already has it
+	 */
+	private boolean withdraw(PendingAttempt pending) {
+		if (!pending.claimed.compareAndSet(false, true)) {
+			return false;
+		}
+		queue.remove(pending);
+		return true;
+	}
+
+	/**
+	 * Registers a callback run on the writer thread after each attempt is committed,
+	 * with its attempt id set. Listeners must be quick and must not block.
+	 */
+	public void addSaveListener(Consumer<QuizAttempt> listener) {
+		saveListeners.add(listener);
+	}
+
+	public int getQueuedCount() {
+		return queue.size();
+	}
+
+	private void flushLoop() {
+		List<PendingAttempt> batch = new ArrayList<>(batchSize);
+		boolean stopping = false;
+		while (!stopping) {
+			try {
+				// Take whatever has piled up: batches grow with load, with no added latency when idle
+				batch.add(queue.take());
+				queue.drainTo(batch, batchSize - 1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				stopping = true;
+			}
+
+			int poison = batch.indexOf(POISON);
+			if (poison >= 0) {
+				stopping = true;
+				batch.remove(poison);
+				queue.drainTo(batch);
+			}
+
+			while (!batch.isEmpty()) {
+				List<PendingAttempt> chunk = batch.subList(0, Math.min(batchSize, batch.size()));
+				write(chunk);
+				chunk.clear();
+			}
+		}
+	}
+
+	private void write(List<PendingAttempt> batch) {
+		// Skip attempts their caller has withdrawn; the rest can no longer be withdrawn
+		List<PendingAttempt> chunk = new ArrayList<>(batch.size());
+		List<QuizAttempt> attempts = new ArrayList<>(batch.size());
+		for (PendingAttempt pending : batch) {
+			if (pending.claimed.compareAndSet(false, true)) {
+				chunk.add(pending);
+				attempts.add(pending.attempt);
+			}
+		}
+		if (chunk.isEmpty()) {
+			return;
+		}
+
+		try {
+			int[] ids = dao.saveQuizAttempts(attempts);
+			for (int i = 0; i < chunk.size(); i++) {
+				saved(chunk.get(i), ids[i]);
+			}
+		} catch (SQLException e) {
+			LOG.warn("Batched attempt insert failed, retrying one by one attempts={}: {}", chunk.size(), e.getMessage());
+			for (PendingAttempt pending : chunk) {
+				try {
+					saved(pending, dao.saveQuizAttempts(Collections.singletonList(pending.attempt))[0]);
+				} catch (SQLException | RuntimeException single) {
+					pending.result.completeExceptionally(single);
+				}
+			}
+		} catch (RuntimeException e) {
+			for (PendingAttempt pending : chunk) {
+				pending.result.completeExceptionally(e);
+			}
+		}
+	}
+
+	private void saved(PendingAttempt pending, int attemptId) {
+		pending.attempt.setAttemptId(attemptId);
+		for (Consumer<QuizAttempt> listener : saveListeners) {
+			try {
+				listener.accept(pending.attempt);
+			} catch (RuntimeException e) {
+				LOG.error("Attempt listener failed attemptId={}", pending.attempt.getAttemptId(), e);
+			}
+		}
+		pending.result.complete(attemptId);
+	}
+
+	/**
+	 * Stops accepting submissions and blocks until everything queued is written
+	 */
+	public void close() {
+		shutdownLock.writeLock().lock();
+		try {
+			accepting = false;
+		} finally {
+			shutdownLock.writeLock().unlock();
+		}
+		try {
+			queue.put(POISON);
+			flusher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static final class PendingAttempt {
+		private final QuizAttempt attempt;
+		private final CompletableFuture<Integer> result = new CompletableFuture<>();
+		// Set by whichever comes first: the writer taking it into a batch, or save() withdrawing it
+		private final AtomicBoolean claimed = new AtomicBoolean();
+
+		PendingAttempt(QuizAttempt attempt) {
+			this.attempt = attempt;
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package server;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Classic transport: one thread blocks on each client socket. With platform threads
+ * this is the original model; with virtual threads ("virtual" mode) the same blocking
+ * code scales to many thousands of mostly idle connections.
+ */
+public class BlockingServerTransport implements ServerTransport {
+	private static final Log LOG = Log.get(BlockingServerTransport.class);
+
+	private final int port;
+	private final ServerContext context;
+	private final ThreadFactory handlerThreads;
+	private ServerSocket serverSocket;
+	private Thread acceptThread;
+	private volatile boolean running = false;
+
+	public BlockingServerTransport(int port, ServerContext context) {
+		this(port, context, Thread::new);
+	}
+
+	public BlockingServerTransport(int port, ServerContext context, ThreadFactory handlerThreads) {
+		this.port = port;
+		this.context = context;
+		this.handlerThreads = handlerThreads;
+	}
+
+	@Override
+	public void start() throws IOException {
+		serverSocket = new ServerSocket(port, 1024);
+		running = true;
+		acceptThread = new Thread(this::acceptLoop, "quiz-accept");
+		acceptThread.start();
+	}
+
+	private void acceptLoop() {
+		while (running) {
+			try {
+				Socket clientSocket = serverSocket.accept();
+				ClientHandler handler = new ClientHandler(clientSocket, context, handlerThreads);
+				Thread clientThread = handlerThreads.newThread(handler);
+				clientThread.start();
+			} catch (IOException e) {
+				if (running) {
+					LOG.warn("Error accepting connection: {}", e.getMessage());
+				}
+			}
+		}
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+		try {
+			if (serverSocket != null && !serverSocket.isClosed()) {
+				serverSocket.close();
+			}
+		} catch (IOException e) {
+			LOG.warn("Error closing server socket: {}", e.getMessage());
+		}
+	}
+}
@@ -1,372 +1,822 @@
 package server;
 
+import common.BinaryWireFormat;
+import common.DeflateWireFormat;
+import common.Message;
 import common.Protocol;
+import common.TextWireFormat;
+import common.WireFormat;
 import model.Question;
 import model.Quiz;
 import model.QuizAttempt;
 import model.User;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class ClientHandler implements Runnable {
+	private static final Log LOG = Log.get(ClientHandler.class);
+	// One instance for every compressing connection, so a shared message is compressed once
+	static final DeflateWireFormat DEFLATE = new DeflateWireFormat(ServerConfig.DEFLATE_MIN_BYTES,
+		ServerConfig.DEFLATE_LEVEL);
+
 	private final Socket clientSocket;
-	private BufferedReader in;
-	private PrintWriter out;
+	private InputStream in;
+	private OutputStream out;
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private volatile WireFormat format = TextWireFormat.INSTANCE;
+	// Socket connections only: pushes wait here for a push thread of their own, so a client
+	// that stops reading blocks that thread rather than the SubscriptionHub publisher
+	private final ThreadFactory pushThreads;
+	private final BlockingQueue<Message> pushes;
+	private volatile Thread pushThread;
+	// Set once the connection is gone. On NIO, connectionClosed() runs on the selector thread
+	// while a worker may still be handling a request, so a request that registers this
+	// connection somewhere (a session, a subscription) re-checks it afterwards.
+	private volatile boolean closing = false;
+	private volatile boolean moreBuffered = false;
+	private MessageSink sink;
 	private User currentUser;
-	private final QuizDAO dao;
-
-	public ClientHandler(Socket socket) {
+	// Set by LOGIN or RESUME; read by the transport when the connection closes
+	private volatile SessionTable.Session login;
+	// Quiz in progress on this connection, from START_QUIZ until FINISH_QUIZ; also kept in
+	// the login session so a RESUME on a new connection carries on with it
+	private AttemptSession session;
+	// Id of the request being handled; responses echo it so pipelining clients can match them
+	private int requestId;
+	private final QuizRepository dao;
+	private final QuizCache quizCache;
+	private final AttemptWriter attemptWriter;
+	private final LeaderboardEngine leaderboards;
+	private final SubscriptionHub subscriptions;
+	private final Metrics metrics;
+	private final ServerContext context;
+	private final CredentialService credentials;
+	private final SessionTable sessions;
+	private final ItemAnalysis itemAnalysis;
+	// Set when the request being handled is answered with ERROR
+	private boolean requestFailed;
+
+	public ClientHandler(Socket socket, ServerContext context, ThreadFactory pushThreads) {
 		this.clientSocket = socket;
-		this.dao = new QuizDAO();
+		this.pushThreads = pushThreads;
+		this.pushes = new LinkedBlockingQueue<>(ServerConfig.PUSH_QUEUE);
+		this.dao = context.getRepository();
+		this.quizCache = context.getQuizCache();
+		this.attemptWriter = context.getAttemptWriter();
+		this.leaderboards = context.getLeaderboards();
+		this.subscriptions = context.getSubscriptions();
+		this.metrics = context.getMetrics();
+		this.credentials = context.getCredentials();
+		this.sessions = context.getSessions();
+		this.itemAnalysis = context.getItemAnalysis();
+		this.context = context;
+	}
+
+	// Used by transports that own the socket I/O themselves (see NioServerTransport)
+	ClientHandler(MessageSink sink, ServerContext context) {
+		this.clientSocket = null;
+		this.pushThreads = null;
+		this.pushes = null;
+		this.sink = sink;
+		this.dao = context.getRepository();
+		this.quizCache = context.getQuizCache();
+		this.attemptWriter = context.getAttemptWriter();
+		this.leaderboards = context.getLeaderboards();
+		this.subscriptions = context.getSubscriptions();
+		this.metrics = context.getMetrics();
+		this.credentials = context.getCredentials();
+		this.sessions = context.getSessions();
+		this.itemAnalysis = context.getItemAnalysis();
+		this.context = context;
 	}
 
 	@Override
 	public void run() {
 		try {
-			in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-			out = new PrintWriter(clientSocket.getOutputStream(), true);
+			in = new BufferedInputStream(clientSocket.getInputStream());
+			out = new BufferedOutputStream(clientSocket.getOutputStream());
+			sink = new MessageSink() {
+				@Override
+				public void send(Message message, int requestId) {
+					writeLock.lock();
+					try {
+						long encodeStart = System.nanoTime();
+						byte[] frame = format.encode(message, requestId);
+						Metrics.addSerializationTime(System.nanoTime() - encodeStart);
+						out.write(frame);
+						if (!moreBuffered) {
+							out.flush();
+						}
+					} catch (IOException e) {
+						closeStreams();
+					} finally {
+						writeLock.unlock();
+					}
+				}
 
-			System.out.println("Client connected: " + clientSocket.getInetAddress());
+				@Override
+				public void push(Message message) {
+					if (closing) {
+						return;
+					}
+					if (!pushes.offer(message)) {
+						LOG.warn("Closing connection: subscriber is not reading pushes");
+						closeStreams();
+						return;
+					}
+					if (pushThread == null) {
+						startPushThread();
+					}
+				}
+
+				@Override
+				public void setFormat(WireFormat newFormat) {
+					format = newFormat;
+				}
 
-			String message;
-			while ((message = in.readLine()) != null) {
+				@Override
+				public void close() {
+					closeStreams();
+				}
+			};
+
+			LOG.info("Client connected address={}", clientSocket.getInetAddress());
+
+			Message message;
+			while ((message = format.read(in)) != null) {
+				// Pipelined requests that are already buffered are answered back to back,
+				// with a single flush after the last one
+				moreBuffered = in.available() > 0;
 				handleMessage(message);
 			}
 		} catch (IOException e) {
-			System.out.println("Client disconnected: " + e.getMessage());
+			LOG.info("Client disconnected: {}", e.getMessage());
 		} finally {
 			closeConnection();
+			connectionClosed();
 		}
 	}
 
-	private void handleMessage(String message) {
-		String[] parts = message.split(java.util.regex.Pattern.quote(Protocol.DELIMITER));
-		String command = parts[0];
+	void handleMessage(Message message) {
+		String command = message.getCommand();
+		requestId = message.getRequestId();
+		requestFailed = false;
+		CommandMetrics commandMetrics = metrics.command(command);
+		long start = commandMetrics.begin();
+		Metrics.startRequest();
 
 		try {
 			switch (command) {
+				case Protocol.HELLO:
+					handleHello(message);
+					break;
 				case Protocol.LOGIN:
-					handleLogin(parts);
+					handleLogin(message);
+					break;
+				case Protocol.RESUME:
+					handleResume(message);
 					break;
 				case Protocol.REGISTER:
-					handleRegister(parts);
+					handleRegister(message);
 					break;
 				case Protocol.GET_ACTIVE_QUIZZES:
-					handleGetActiveQuizzes();
+					handleGetActiveQuizzes(message);
 					break;
 				case Protocol.CREATE_QUIZ:
-					handleCreateQuiz(parts);
+					handleCreateQuiz(message);
 					break;
 				case Protocol.START_QUIZ:
-					handleStartQuiz(parts);
+					handleStartQuiz(message);
+					break;
+				case Protocol.SUBMIT_ANSWER:
+					handleSubmitAnswer(message);
 					break;
 				case Protocol.FINISH_QUIZ:
-					handleFinishQuiz(parts);
+					handleFinishQuiz(message);
 					break;
 				case Protocol.GET_LEADERBOARD:
-					handleGetLeaderboard(parts);
+					handleGetLeaderboard(message);
 					break;
 				case Protocol.GET_MY_RESULTS:
-					handleGetMyResults();
+					handleGetMyResults(message);
+					break;
+				case Protocol.GET_ITEM_ANALYSIS:
+					handleGetItemAnalysis(message);
 					break;
 				case Protocol.DELETE_QUIZ:
-					handleDeleteQuiz(parts);
+					handleDeleteQuiz(message);
+					break;
+				case Protocol.SUBSCRIBE:
+					handleSubscribe(message);
+					break;
+				case Protocol.UNSUBSCRIBE:
+					handleUnsubscribe(message);
+					break;
+				case Protocol.PING:
+					sendMessage(new Message(Protocol.PONG));
 					break;
 				case Protocol.DISCONNECT:
+					// An explicit goodbye ends the session; a dropped socket keeps it resumable
+					if (login != null) {
+						sessions.remove(login);
+						login = null;
+					}
 					closeConnection();
 					break;
 				default:
-					sendMessage(Protocol.ERROR + Protocol.DELIMITER + "Unknown command");
+					sendError("Unknown command");
 			}
 		} catch (Exception e) {
 			String errorMessage = e.getMessage();
 			if (errorMessage == null || errorMessage.trim().isEmpty()) {
 				errorMessage = "Server error while processing request";
 			}
-			System.err.println("Request failed: " + errorMessage);
-			e.printStackTrace();
-			sendMessage(Protocol.ERROR + Protocol.DELIMITER + errorMessage);
+			LOG.error("Request failed command={}", message.getCommand(), e);
+			sendError(errorMessage);
+		} finally {
+			commandMetrics.end(start, requestFailed, Metrics.dbTime(), Metrics.serializationTime());
 		}
 	}
 
-	private void handleLogin(String[] parts) throws SQLException {
-		if (parts.length < 3) {
-			sendMessage(Protocol.LOGIN_FAILED + Protocol.DELIMITER + "Invalid login format");
-			return;
+	/**
+	 * Must be the first message on a connection. The reply still goes out in text;
+	 * both sides switch to the agreed format right after it.
+	 */
+	private void handleHello(Message message) {
+		WireFormat agreed = negotiate(message);
+		Message reply = new Message(Protocol.HELLO);
+		if (agreed != TextWireFormat.INSTANCE) {
+			reply.add(Protocol.FEATURE_BINARY);
 		}
+		if (agreed == DEFLATE) {
+			reply.add(Protocol.FEATURE_DEFLATE);
+		}
+		// Versioned reads need nothing per connection; the request's shape says which it is
+		for (int i = 0; i < message.size(); i++) {
+			if (Protocol.FEATURE_VERSIONS.equals(message.getString(i))) {
+				reply.add(Protocol.FEATURE_VERSIONS);
+			}
+		}
+		sendMessage(reply);
+		sink.setFormat(agreed);
+	}
 
-		String username = parts[1];
-		String password = parts[2];
+	/**
+	 * The format both sides use after a HELLO offering the given features
+	 */
+	static WireFormat negotiate(Message hello) {
+		boolean binary = false;
+		boolean deflate = false;
+		for (int i = 0; i < hello.size(); i++) {
+			binary |= Protocol.FEATURE_BINARY.equals(hello.getString(i)) && ServerConfig.BINARY_PROTOCOL;
+			deflate |= Protocol.FEATURE_DEFLATE.equals(hello.getString(i)) && ServerConfig.DEFLATE_PROTOCOL;
+		}
+		if (!binary) {
+			return TextWireFormat.INSTANCE;
+		}
+		return deflate ? DEFLATE : BinaryWireFormat.INSTANCE;
+	}
+
+	private void handleLogin(Message message) throws SQLException {
+		if (message.size() < 2) {
+			sendMessage(Message.of(Protocol.LOGIN_FAILED, "Invalid login format"));
+			return;
+		}
 
-		System.out.println("Login attempt: username=" + username);
+		String username = message.getString(0);
+		String password = message.getString(1);
 
-		User user = dao.authenticateUser(username, password);
+		User user;
+		try {
+			user = credentials.authenticate(username, password);
+		} catch (CredentialService.BusyException e) {
+			LOG.warn("Login deferred username={}: {}", username, e.getMessage());
+			sendMessage(Message.of(Protocol.LOGIN_FAILED, e.getMessage()));
+			return;
+		}
 		if (user != null) {
+			if (login != null) {
+				sessions.remove(login);
+			}
 			currentUser = user;
-			System.out.println("Login successful: userId=" + user.getUserId() + ", role=" + user.getRole());
-			String response = Protocol.LOGIN_SUCCESS + Protocol.DELIMITER +
-				user.getUserId() + Protocol.DELIMITER +
-				user.getFullName() + Protocol.DELIMITER +
-				user.getRole();
-			sendMessage(response);
+			setAttempt(null);
+			login = sessions.create(user, sink);
+			if (closing) {
+				// connectionClosed() may have missed it; leave it resumable like any dropped session
+				sessions.detach(login, sink);
+			}
+			LOG.info("Login succeeded userId={} role={}", user.getUserId(), user.getRole());
+			sendMessage(new Message(Protocol.LOGIN_SUCCESS)
+				.add(user.getUserId())
+				.add(user.getFullName())
+				.add(user.getRole())
+				.add(login.getToken()));
 		} else {
-			System.out.println("Login failed for username: " + username);
-			sendMessage(Protocol.LOGIN_FAILED + Protocol.DELIMITER + "Invalid credentials");
+			LOG.info("Login failed username={}", username);
+			sendMessage(Message.of(Protocol.LOGIN_FAILED, "Invalid credentials"));
 		}
 	}
 
-	private void handleRegister(String[] parts) throws SQLException {
-		if (parts.length < 5) {
-			sendMessage(Protocol.REGISTER_FAILED + Protocol.DELIMITER + "Invalid registration format");
+	/**
+	 * Picks up a session after a dropped connection, from memory only: the user and the
+	 * quiz in progress come back as they were, without a database read or a new START_QUIZ
+	 */
+	private void handleResume(Message message) {
+		SessionTable.Session resumed = sessions.resume(message.size() > 0 ? message.getString(0) : null, sink);
+		if (resumed == null) {
+			sendMessage(Message.of(Protocol.RESUME_FAILED, "Session expired, please log in again"));
 			return;
 		}
+		if (login != null && login != resumed) {
+			sessions.detach(login, sink);
+		}
+		login = resumed;
+		if (closing) {
+			sessions.detach(resumed, sink);
+		}
+		currentUser = resumed.getUser();
+		session = resumed.getAttempt();
+		LOG.info("Session resumed userId={} quizId={}", currentUser.getUserId(), session != null ? session.getQuizId() : 0);
+		sendMessage(new Message(Protocol.RESUMED)
+			.add(currentUser.getUserId())
+			.add(currentUser.getFullName())
+			.add(currentUser.getRole())
+			.add(session != null ? session.getQuizId() : 0));
+	}
 
-		String username = parts[1];
-		String password = parts[2];
-		String fullName = parts[3];
-		String role = parts[4];
+	private void handleRegister(Message message) throws SQLException {
+		if (message.size() < 4) {
+			sendMessage(Message.of(Protocol.REGISTER_FAILED, "Invalid registration format"));
+			return;
+		}
+
+		String username = message.getString(0);
+		String password = message.getString(1);
+		String fullName = message.getString(2);
+		String role = message.getString(3);
 
 		User user = new User(username, password, fullName, role);
-		boolean success = dao.registerUser(user);
+		boolean success;
+		try {
+			success = credentials.register(user);
+		} catch (CredentialService.BusyException e) {
+			sendMessage(Message.of(Protocol.REGISTER_FAILED, e.getMessage()));
+			return;
+		}
 
 		if (success) {
-			sendMessage(Protocol.REGISTER_SUCCESS + Protocol.DELIMITER + "Registration successful");
+			sendMessage(Message.of(Protocol.REGISTER_SUCCESS, "Registration successful"));
+		} else {
+			sendMessage(Message.of(Protocol.REGISTER_FAILED, "Username already exists"));
+		}
+	}
+
+	/**
+	 * GET_ACTIVE_QUIZZES, GET_ACTIVE_QUIZZES|||afterId|||limit, or either with a cached version
+	 */
+	private void handleGetActiveQuizzes(Message message) throws SQLException {
+		if (message.size() >= 2) {
+			streamActiveQuizzes(message.getInt(0), message.getInt(1), message.size() > 2 ? message.getString(2) : null);
 		} else {
-			sendMessage(Protocol.REGISTER_FAILED + Protocol.DELIMITER + "Username already exists");
+			sendActiveQuizzes(message.size() > 0 ? message.getString(0) : null);
 		}
 	}
 
-	private void handleGetActiveQuizzes() throws SQLException {
+	/**
+	 * The whole list as QUIZ_LIST; clientVersion is null for an unversioned read
+	 */
+	private void sendActiveQuizzes(String clientVersion) throws SQLException {
+		// Read before the list, so a change made meanwhile makes the next read a miss
+		String version = context.getQuizListVersion();
+		if (notModified(clientVersion, version)) {
+			return;
+		}
+
 		List<Quiz> quizzes = dao.getActiveQuizzes();
-		StringBuilder response = new StringBuilder(Protocol.QUIZ_LIST);
+		Message response = new Message(Protocol.QUIZ_LIST);
 
 		for (Quiz quiz : quizzes) {
-			response.append(Protocol.DELIMITER);
-			response.append(quiz.getQuizId()).append(Protocol.SUB_DELIMITER);
-			response.append(quiz.getQuizName()).append(Protocol.SUB_DELIMITER);
-			response.append(quiz.getTeacherName()).append(Protocol.SUB_DELIMITER);
-			response.append(quiz.getTotalQuestions()).append(Protocol.SUB_DELIMITER);
-			response.append(quiz.getTimeLimit());
+			response.addRow(quiz.getQuizId(), quiz.getQuizName(), quiz.getTeacherName(),
+				quiz.getTotalQuestions(), quiz.getTimeLimit());
 		}
+		if (clientVersion != null) {
+			response.add(version);
+		}
+
+		sendMessage(response);
+	}
 
-		sendMessage(response.toString());
+	private void streamActiveQuizzes(int afterQuizId, int requestedLimit, String clientVersion) throws SQLException {
+		String version = context.getQuizListVersion();
+		if (notModified(clientVersion, version)) {
+			return;
+		}
+
+		int limit = PageWriter.pageSize(requestedLimit);
+		PageWriter page = new PageWriter(this::sendMessage, limit);
+		dao.streamActiveQuizzes(afterQuizId, limit, quiz ->
+			page.add(quiz.getQuizId(), quiz.getQuizId(), quiz.getQuizName(), quiz.getTeacherName(),
+				quiz.getTotalQuestions(), quiz.getTimeLimit()));
+		page.finish(clientVersion != null ? version : null);
+	}
+
+	/**
+	 * Answers NOT_MODIFIED if the client's cached copy is the current version
+	 */
+	private boolean notModified(String clientVersion, String version) {
+		if (!version.equals(clientVersion)) {
+			return false;
+		}
+		sendMessage(new Message(Protocol.NOT_MODIFIED).add(version));
+		return true;
 	}
 
-	private void handleCreateQuiz(String[] parts) throws SQLException {
+	private void handleCreateQuiz(Message message) throws SQLException {
 		if (currentUser == null || !currentUser.isTeacher()) {
-			sendMessage(Protocol.ERROR + Protocol.DELIMITER + "Only teachers can create quizzes");
+			sendError("Only teachers can create quizzes");
 			return;
 		}
 
-		String quizName = parts[1];
-		int timeLimit = Integer.parseInt(parts[2]);
-		int numQuestions = Integer.parseInt(parts[3]);
+		String quizName = message.getString(0);
+		int timeLimit = message.getInt(1);
+		int numQuestions = message.getInt(2);
 
 		Quiz quiz = new Quiz(quizName, currentUser.getUserId(), timeLimit);
 
 		for (int i = 0; i < numQuestions; i++) {
-			String[] questionData = parts[4 + i].split(java.util.regex.Pattern.quote(Protocol.SUB_DELIMITER));
+			Message.Row questionData = message.getRow(3 + i);
 			Question question = new Question(
-				questionData[0],
-				questionData[1],
-				questionData[2],
-				questionData[3],
-				questionData[4],
-				questionData[5]
+				questionData.getString(0),
+				questionData.getString(1),
+				questionData.getString(2),
+				questionData.getString(3),
+				questionData.getString(4),
+				questionData.getString(5)
 			);
 			quiz.addQuestion(question);
 		}
 
 		int quizId = dao.createQuiz(quiz);
 		if (quizId > 0) {
-			sendMessage(Protocol.QUIZ_CREATED + Protocol.DELIMITER + quizId);
+			quiz.setQuizId(quizId);
+			context.quizAdded(quiz, currentUser.getFullName());
+			sendMessage(new Message(Protocol.QUIZ_CREATED).add(quizId));
 		} else {
-			sendMessage(Protocol.ERROR + Protocol.DELIMITER + "Failed to create quiz");
+			sendError("Failed to create quiz");
 		}
 	}
 
-	private void handleStartQuiz(String[] parts) throws SQLException {
-		int quizId = Integer.parseInt(parts[1]);
-		Quiz quiz = dao.getQuizWithQuestions(quizId);
+	/**
+	 * START_QUIZ|||quizId, or START_QUIZ|||quizId|||version from a client caching QUIZ_DATA
+	 */
+	private void handleStartQuiz(Message message) throws SQLException {
+		int quizId = message.getInt(0);
+		QuizCache.Entry entry = quizCache.get(quizId);
 
-		if (quiz == null) {
-			sendMessage(Protocol.ERROR + Protocol.DELIMITER + "Quiz not found");
+		if (entry == null) {
+			sendError("Quiz not found");
 			return;
 		}
 
-		StringBuilder response = new StringBuilder(Protocol.QUIZ_DATA);
-		response.append(Protocol.DELIMITER).append(quiz.getQuizId());
-		response.append(Protocol.DELIMITER).append(quiz.getQuizName());
-		response.append(Protocol.DELIMITER).append(quiz.getTotalQuestions());
-		response.append(Protocol.DELIMITER).append(quiz.getTimeLimit());
+		setAttempt(new AttemptSession(entry.getAnswerKey()));
 
-		for (Question q : quiz.getQuestions()) {
-			response.append(Protocol.DELIMITER);
-			response.append(q.getQuestionId()).append(Protocol.SUB_DELIMITER);
-			response.append(q.getQuestionText()).append(Protocol.SUB_DELIMITER);
-			response.append(q.getOptionA()).append(Protocol.SUB_DELIMITER);
-			response.append(q.getOptionB()).append(Protocol.SUB_DELIMITER);
-			response.append(q.getOptionC()).append(Protocol.SUB_DELIMITER);
-			response.append(q.getOptionD());
+		boolean versioned = message.size() > 1;
+		if (versioned && notModified(message.getString(1), entry.getVersion())) {
+			return;
 		}
 
-		sendMessage(response.toString());
+		// Hot quizzes are served from the cached (and already encoded) response
+		Message response = versioned ? entry.getVersionedQuizDataMessage() : entry.getQuizDataMessage();
+		if (response == null) {
+			response = buildQuizData(entry.getQuiz());
+			if (versioned) {
+				entry.setVersionedQuizDataMessage(response.add(entry.getVersion()).share());
+			} else {
+				entry.setQuizDataMessage(response.share());
+			}
+		}
+		sendMessage(response);
 	}
 
-	private void handleFinishQuiz(String[] parts) throws SQLException {
-		System.out.println("handleFinishQuiz called with " + parts.length + " parts");
-		for (int i = 0; i < parts.length; i++) {
-			System.out.println("  parts[" + i + "] = " + parts[i]);
+	private static Message buildQuizData(Quiz quiz) {
+		Message response = new Message(Protocol.QUIZ_DATA)
+			.add(quiz.getQuizId())
+			.add(quiz.getQuizName())
+			.add(quiz.getTotalQuestions())
+			.add(quiz.getTimeLimit());
+
+		for (Question q : quiz.getQuestions()) {
+			response.addRow(q.getQuestionId(), q.getQuestionText(),
+				q.getOptionA(), q.getOptionB(), q.getOptionC(), q.getOptionD());
 		}
-		
-		if (currentUser == null) {
-			System.out.println("ERROR: currentUser is null!");
-			sendMessage(Protocol.ERROR + Protocol.DELIMITER + "Not logged in");
+
+		return response;
+	}
+
+	private void handleSubmitAnswer(Message message) {
+		if (message.size() < 3) {
+			sendError("Invalid message format");
 			return;
 		}
 
-		System.out.println("Current user: " + currentUser.getUsername());
-		
-		if (parts.length < 3) {
-			sendMessage(Protocol.ERROR + Protocol.DELIMITER + "Invalid message format");
+		int quizId = message.getInt(0);
+		if (session == null || session.getQuizId() != quizId) {
+			sendError("No quiz in progress");
 			return;
 		}
 
-		try {
-			int quizId = Integer.parseInt(parts[1]);
-			int timeTaken = Integer.parseInt(parts[2]);
-
-			// Student answers start from parts[3]
-			List<String> studentAnswers = new ArrayList<>();
-			for (int i = 3; i < parts.length; i++) {
-				studentAnswers.add(parts[i]);
-			}
+		int index = message.getInt(1);
+		int seconds = message.size() > 3 ? message.getInt(3) : AttemptSession.NO_TIME;
+		session.submit(index, AnswerKey.option(message.getString(2)), seconds);
+		if (login != null) {
+			sessions.changed(login);
+		}
+		sendMessage(new Message(Protocol.ANSWER_RECEIVED).add(index));
+	}
 
-			System.out.println("Quiz submission: quizId=" + quizId + ", timeTaken=" + timeTaken + 
-				", studentAnswers.size=" + studentAnswers.size());
+	private void handleFinishQuiz(Message message) throws SQLException {
+		if (currentUser == null) {
+			sendError("Not logged in");
+			return;
+		}
 
-			// Get quiz with correct answers from database
-			Quiz quiz = dao.getQuizWithQuestions(quizId);
-			if (quiz == null) {
-				sendMessage(Protocol.ERROR + Protocol.DELIMITER + "Quiz not found");
-				return;
-			}
+		if (message.size() < 2) {
+			sendError("Invalid message format");
+			return;
+		}
 
-			// Calculate score by comparing student answers with correct answers
-			int score = 0;
-			List<Question> questions = quiz.getQuestions();
-			for (int i = 0; i < questions.size() && i < studentAnswers.size(); i++) {
-				Question q = questions.get(i);
-				String studentAnswer = studentAnswers.get(i);
-				String correctAnswer = q.getCorrectAnswer();
-				
-				System.out.println("Question " + i + ": student=" + studentAnswer + ", correct=" + correctAnswer);
-				
-				if (correctAnswer != null && correctAnswer.equalsIgnoreCase(studentAnswer)) {
-					score++;
+		try {
+			int quizId = message.getInt(0);
+			int timeTaken = message.getInt(1);
+
+			AttemptSession attemptSession = session;
+			if (attemptSession == null || attemptSession.getQuizId() != quizId) {
+				// No START_QUIZ on this connection (e.g. the client reconnected): grade from the cache
+				QuizCache.Entry entry = quizCache.get(quizId);
+				if (entry == null) {
+					sendError("Quiz not found");
+					return;
 				}
+				attemptSession = new AttemptSession(entry.getAnswerKey());
 			}
 
-			System.out.println("Calculated score: " + score + " out of " + questions.size());
+			// Clients that do not stream SUBMIT_ANSWER send every answer here as (answer[, secondsSpent]);
+			// rows beyond the quiz's questions are ignored
+			int rows = Math.min(message.size(), 2 + attemptSession.getQuestionCount());
+			for (int i = 2; i < rows; i++) {
+				Message.Row answerData = message.getRow(i);
+				attemptSession.submit(i - 2,
+					answerData.size() > 0 ? AnswerKey.option(answerData.getString(0)) : AnswerKey.NO_ANSWER,
+					answerData.size() > 1 ? answerData.getInt(1) : AttemptSession.NO_TIME);
+			}
 
-			// Save quiz attempt
-			QuizAttempt attempt = new QuizAttempt(quizId, currentUser.getUserId(), score, questions.size(), timeTaken);
-			int attemptId = dao.saveQuizAttempt(attempt);
+			// Save quiz attempt; the session is kept until it is stored, so a retried
+			// FINISH_QUIZ after a failed save grades the same answers
+			QuizAttempt attempt = attemptSession.finish(currentUser.getUserId(), timeTaken);
+			attempt.setStudentName(currentUser.getFullName());
+			int attemptId = attemptWriter.save(attempt);
 
-			System.out.println("Database save result: attemptId=" + attemptId);
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Quiz finished quizId={} userId={} score={} total={} timeTaken={} attemptId={}",
+					quizId, currentUser.getUserId(), attempt.getScore(), attempt.getTotalQuestions(), timeTaken, attemptId);
+			}
 
 			if (attemptId > 0) {
-				String response = Protocol.QUIZ_RESULT + Protocol.DELIMITER +
-					score + Protocol.DELIMITER +
-					questions.size() + Protocol.DELIMITER +
-					attempt.getPercentage();
-				System.out.println("Sending response: " + response);
+				setAttempt(null);
+				itemAnalysis.record(attemptSession);
+				Message response = new Message(Protocol.QUIZ_RESULT)
+					.add(attempt.getScore())
+					.add(attempt.getTotalQuestions())
+					.add(attempt.getPercentage())
+					.add(attemptId);
 				sendMessage(response);
 			} else {
-				System.out.println("ERROR: Failed to save quiz attempt");
-				sendMessage(Protocol.ERROR + Protocol.DELIMITER + "Failed to save quiz result");
+				LOG.warn("Failed to save attempt quizId={} userId={}", quizId, currentUser.getUserId());
+				sendError("Failed to save quiz result");
 			}
 		} catch (NumberFormatException e) {
-			System.err.println("ERROR parsing numbers: " + e.getMessage());
-			sendMessage(Protocol.ERROR + Protocol.DELIMITER + "Invalid number format: " + e.getMessage());
+			sendError("Invalid number format: " + e.getMessage());
 		}
 	}
 
-	private void handleGetLeaderboard(String[] parts) throws SQLException {
-		int quizId = Integer.parseInt(parts[1]);
-		List<QuizAttempt> leaderboard = dao.getLeaderboard(quizId);
+	private void handleGetLeaderboard(Message message) throws SQLException {
+		int quizId = message.getInt(0);
+		sendMessage(leaderboardData(leaderboards.get(quizId)));
+	}
 
-		StringBuilder response = new StringBuilder(Protocol.LEADERBOARD_DATA);
+	private static Message leaderboardData(List<QuizAttempt> leaderboard) {
+		Message response = new Message(Protocol.LEADERBOARD_DATA);
 		for (QuizAttempt attempt : leaderboard) {
-			response.append(Protocol.DELIMITER);
-			response.append(attempt.getStudentName()).append(Protocol.SUB_DELIMITER);
-			response.append(attempt.getScore()).append(Protocol.SUB_DELIMITER);
-			response.append(attempt.getTotalQuestions()).append(Protocol.SUB_DELIMITER);
-			response.append(String.format("%.2f", attempt.getPercentage())).append(Protocol.SUB_DELIMITER);
-			response.append(attempt.getTimeTaken());
+			response.addRow(attempt.getStudentName(), attempt.getScore(), attempt.getTotalQuestions(),
+				String.format("%.2f", attempt.getPercentage()), attempt.getTimeTaken());
 		}
+		return response;
+	}
 
-		sendMessage(response.toString());
+	/**
+	 * Replies with the current list or board, then pushes changes (see SubscriptionHub)
+	 */
+	private void handleSubscribe(Message message) throws SQLException {
+		String topic = message.size() > 0 ? message.getString(0) : "";
+		if (Protocol.TOPIC_QUIZZES.equals(topic)) {
+			String clientVersion = message.size() > 2 ? message.getString(2) : null;
+			if (message.size() > 1 && message.getInt(1) > 0) {
+				streamActiveQuizzes(0, message.getInt(1), clientVersion);
+			} else {
+				sendActiveQuizzes(clientVersion);
+			}
+			subscriptions.subscribeQuizzes(sink);
+		} else if (Protocol.TOPIC_LEADERBOARD.equals(topic) && message.size() > 1) {
+			int quizId = message.getInt(1);
+			List<QuizAttempt> leaderboard = leaderboards.get(quizId);
+			sendMessage(leaderboardData(leaderboard));
+			subscriptions.subscribeLeaderboard(quizId, leaderboard, sink);
+		} else {
+			sendError("Unknown subscription topic");
+			return;
+		}
+		if (closing) {
+			// connectionClosed() may have unsubscribed everything before this was added
+			subscriptions.unsubscribeAll(sink);
+		}
 	}
 
-	private void handleGetMyResults() throws SQLException {
+	private void handleUnsubscribe(Message message) {
+		String topic = message.size() > 0 ? message.getString(0) : "";
+		if (Protocol.TOPIC_QUIZZES.equals(topic)) {
+			subscriptions.unsubscribeQuizzes(sink);
+		} else if (Protocol.TOPIC_LEADERBOARD.equals(topic) && message.size() > 1) {
+			subscriptions.unsubscribeLeaderboard(message.getInt(1), sink);
+		} else {
+			sendError("Unknown subscription topic");
+			return;
+		}
+		sendMessage(new Message(Protocol.UNSUBSCRIBED).add(topic));
+	}
+
+	private void handleGetMyResults(Message message) throws SQLException {
 		if (currentUser == null) {
-			sendMessage(Protocol.ERROR + Protocol.DELIMITER + "Not logged in");
+			sendError("Not logged in");
+			return;
+		}
+
+		if (message.size() >= 2) {
+			int limit = PageWriter.pageSize(message.getInt(1));
+			PageWriter page = new PageWriter(this::sendMessage, limit);
+			dao.streamStudentResults(currentUser.getUserId(), message.getInt(0), limit, attempt ->
+				page.add(attempt.getAttemptId(), attempt.getQuizName(), attempt.getScore(),
+					attempt.getTotalQuestions(), String.format("%.2f", attempt.getPercentage()),
+					attempt.getTimeTaken(), String.valueOf(attempt.getAttemptDate())));
+			page.finish();
 			return;
 		}
 
 		List<QuizAttempt> results = dao.getStudentResults(currentUser.getUserId());
-		StringBuilder response = new StringBuilder(Protocol.RESULTS_DATA);
+		Message response = new Message(Protocol.RESULTS_DATA);
 
 		for (QuizAttempt attempt : results) {
-			response.append(Protocol.DELIMITER);
-			response.append(attempt.getQuizName()).append(Protocol.SUB_DELIMITER);
-			response.append(attempt.getScore()).append(Protocol.SUB_DELIMITER);
-			response.append(attempt.getTotalQuestions()).append(Protocol.SUB_DELIMITER);
-			response.append(String.format("%.2f", attempt.getPercentage())).append(Protocol.SUB_DELIMITER);
-			response.append(attempt.getTimeTaken()).append(Protocol.SUB_DELIMITER);
-			response.append(attempt.getAttemptDate());
+			response.addRow(attempt.getQuizName(), attempt.getScore(), attempt.getTotalQuestions(),
+				String.format("%.2f", attempt.getPercentage()), attempt.getTimeTaken(),
+				String.valueOf(attempt.getAttemptDate()));
+		}
+
+		sendMessage(response);
+	}
+
+	private void handleGetItemAnalysis(Message message) throws SQLException {
+		if (currentUser == null || !currentUser.isTeacher()) {
+			sendError("Only teachers can view item analysis");
+			return;
 		}
 
-		sendMessage(response.toString());
+		int quizId = message.getInt(0);
+		QuizCache.Entry entry = quizCache.get(quizId);
+		if (entry == null) {
+			sendError("Quiz not found");
+			return;
+		}
+
+		ItemAnalysis.Report report = itemAnalysis.get(entry.getAnswerKey());
+		List<Question> questions = entry.getQuiz().getQuestions();
+		Message response = new Message(Protocol.ITEM_ANALYSIS).add(quizId).add(count(report.getAttempts()));
+		for (int i = 0; i < report.getQuestionCount(); i++) {
+			String correct = report.getCorrectLetter(i);
+			response.addRow(report.getQuestionId(i), questions.get(i).getQuestionText(), correct != null ? correct : "",
+				format(report.getPercentCorrect(i), "%.1f"),
+				count(report.getOptionCount(i, 0)), count(report.getOptionCount(i, 1)), count(report.getOptionCount(i, 2)),
+				count(report.getOptionCount(i, 3)), count(report.getBlank(i)), format(report.getDiscrimination(i), "%.2f"));
+		}
+		sendMessage(response);
 	}
 
-	private void handleDeleteQuiz(String[] parts) throws SQLException {
+	private static String format(double value, String pattern) {
+		return Double.isNaN(value) ? "" : String.format(Locale.ROOT, pattern, value);
+	}
+
+	// Counts go out as ints (varints in the binary format)
+	private static int count(long value) {
+		return (int) Math.min(value, Integer.MAX_VALUE);
+	}
+
+	private void handleDeleteQuiz(Message message) throws SQLException {
 		if (currentUser == null || !currentUser.isTeacher()) {
-			sendMessage(Protocol.ERROR + Protocol.DELIMITER + "Only teachers can delete quizzes");
+			sendError("Only teachers can delete quizzes");
 			return;
 		}
 
-		int quizId = Integer.parseInt(parts[1]);
+		int quizId = message.getInt(0);
 		boolean success = dao.deleteQuiz(quizId);
 
 		if (success) {
-			sendMessage(Protocol.QUIZ_DELETED + Protocol.DELIMITER + quizId);
+			context.quizRemoved(quizId);
+			sendMessage(new Message(Protocol.QUIZ_DELETED).add(quizId));
 		} else {
-			sendMessage(Protocol.ERROR + Protocol.DELIMITER + "Failed to delete quiz");
+			sendError("Failed to delete quiz");
+		}
+	}
+
+	private void sendError(String error) {
+		requestFailed = true;
+		sendMessage(Message.of(Protocol.ERROR, error));
+	}
+
+	private void sendMessage(Message message) {
+		if (sink != null) {
+			sink.send(message, requestId);
+		}
+	}
+
+	/**
+	 * Called once by the transport when the connection is gone
+	 */
+	void connectionClosed() {
+		closing = true;
+		if (sink != null) {
+			subscriptions.unsubscribeAll(sink);
+		}
+		SessionTable.Session closing = login;
+		if (closing != null) {
+			sessions.detach(closing, sink);
 		}
 	}
 
-	private void sendMessage(String message) {
-		if (out != null) {
-			out.println(message);
+	private void setAttempt(AttemptSession attempt) {
+		session = attempt;
+		if (login != null) {
+			login.setAttempt(attempt);
+			sessions.changed(login);
+		}
+	}
+
+	// Only the SubscriptionHub publisher pushes, so this runs on one thread
+	private void startPushThread() {
+		Thread thread = pushThreads.newThread(this::writePushes);
+		pushThread = thread;
+		thread.start();
+	}
+
+	private void writePushes() {
+		try {
+			while (!closing) {
+				sink.send(pushes.take(), 0);
+			}
+		} catch (InterruptedException e) {
+			// The connection was closed
 		}
 	}
 
 	private void closeConnection() {
+		if (sink != null) {
+			sink.close();
+		} else {
+			closeStreams();
+		}
+	}
+
+	private void closeStreams() {
+		closing = true;
+		Thread pusher = pushThread;
+		if (pusher != null) {
+			pusher.interrupt();
+		}
 		try {
 			if (in != null) in.close();
 			if (out != null) out.close();
 			if (clientSocket != null) clientSocket.close();
 		} catch (IOException e) {
-			e.printStackTrace();
+			LOG.debug("Error closing connection: {}", e.getMessage());
 		}
 	}
 }
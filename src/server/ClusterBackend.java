@@ -0,0 +1,37 @@
+package server;
+
+import common.Message;
+
+import java.util.function.Consumer;
+
+/**
+ * State shared by the nodes of a cluster running behind a TCP load balancer: a small
+ * keyed store for login sessions and a broadcast channel for change events (see
+ * ClusterSync for what is sent). Values are Messages so a networked backend can ship
+ * them with a WireFormat; LoopbackClusterBackend connects nodes in one process.
+ *
+ * Implementations must be thread-safe. Events from one node must reach the others in
+ * the order it published them, and are not delivered back to the publisher.
+ */
+public interface ClusterBackend {
+	/**
+	 * Sends an event to every other node; does not wait for delivery
+	 */
+	void publish(Message event);
+
+	/**
+	 * Receives the events published by other nodes, one at a time
+	 */
+	void setListener(Consumer<Message> listener);
+
+	void putSession(String token, Message state);
+
+	/**
+	 * The last state stored for the token, or null
+	 */
+	Message getSession(String token);
+
+	void removeSession(String token);
+
+	void close();
+}
@@ -0,0 +1,168 @@
+package server;
+
+import common.Message;
+import model.Quiz;
+import model.QuizAttempt;
+import model.User;
+
+import java.sql.SQLException;
+
+/**
+ * Keeps one node's in-memory state in step with the rest of a cluster through a
+ * ClusterBackend. Sessions (with quiz progress) are stored in the backend so any node
+ * can RESUME them; changes that other nodes cache are broadcast as events:
+ *
+ *   QUIZ_ADDED|||quizId|||name|||teacherName|||questions|||timeLimit
+ *   QUIZ_REMOVED|||quizId
+ *   ATTEMPT_SAVED|||quizId|||attemptId|||studentId|||studentName|||score|||total|||timeTaken
+ *   SESSION_MOVED|||token
+ *
+ * A received event is applied to the local caches and pushed to local subscribers just
+ * as if it had happened on this node, but is not published again.
+ */
+class ClusterSync implements SessionTable.Replica {
+	private static final Log LOG = Log.get(ClusterSync.class);
+
+	static final String QUIZ_ADDED = "QUIZ_ADDED";
+	static final String QUIZ_REMOVED = "QUIZ_REMOVED";
+	static final String ATTEMPT_SAVED = "ATTEMPT_SAVED";
+	static final String SESSION_MOVED = "SESSION_MOVED";
+	private static final String SESSION = "SESSION";
+
+	private final ClusterBackend backend;
+	private final QuizCache quizCache;
+	private final LeaderboardEngine leaderboards;
+	private final ItemAnalysis itemAnalysis;
+	private final SubscriptionHub subscriptions;
+	private final SessionTable sessions;
+
+	ClusterSync(ClusterBackend backend, QuizCache quizCache, LeaderboardEngine leaderboards, ItemAnalysis itemAnalysis,
+				SubscriptionHub subscriptions, SessionTable sessions) {
+		this.backend = backend;
+		this.quizCache = quizCache;
+		this.leaderboards = leaderboards;
+		this.itemAnalysis = itemAnalysis;
+		this.subscriptions = subscriptions;
+		this.sessions = sessions;
+		backend.setListener(this::apply);
+		sessions.setReplica(this);
+	}
+
+	void quizAdded(Quiz quiz, String teacherName) {
+		backend.publish(new Message(QUIZ_ADDED).add(quiz.getQuizId()).add(quiz.getQuizName()).add(teacherName)
+			.add(quiz.getTotalQuestions()).add(quiz.getTimeLimit()));
+	}
+
+	void quizRemoved(int quizId) {
+		backend.publish(new Message(QUIZ_REMOVED).add(quizId));
+	}
+
+	/**
+	 * Save listener for attempts persisted on this node
+	 */
+	void attemptSaved(QuizAttempt attempt) {
+		backend.publish(new Message(ATTEMPT_SAVED).add(attempt.getQuizId()).add(attempt.getAttemptId())
+			.add(attempt.getStudentId()).add(attempt.getStudentName()).add(attempt.getScore())
+			.add(attempt.getTotalQuestions()).add(attempt.getTimeTaken()));
+	}
+
+	private void apply(Message event) {
+		switch (event.getCommand()) {
+			case QUIZ_ADDED: {
+				Quiz quiz = new Quiz(event.getString(1), 0, event.getInt(4));
+				quiz.setQuizId(event.getInt(0));
+				quiz.setTotalQuestions(event.getInt(3));
+				quizCache.invalidate(quiz.getQuizId());
+				subscriptions.quizAdded(quiz, event.getString(2));
+				break;
+			}
+			case QUIZ_REMOVED: {
+				int quizId = event.getInt(0);
+				quizCache.invalidate(quizId);
+				leaderboards.invalidate(quizId);
+				itemAnalysis.invalidate(quizId);
+				subscriptions.quizRemoved(quizId);
+				break;
+			}
+			case ATTEMPT_SAVED: {
+				QuizAttempt attempt = new QuizAttempt(event.getInt(0), event.getInt(2), event.getInt(4),
+					event.getInt(5), event.getInt(6));
+				attempt.setAttemptId(event.getInt(1));
+				attempt.setStudentName(event.getString(3));
+				leaderboards.record(attempt);
+				subscriptions.attemptSaved(attempt);
+				break;
+			}
+			case SESSION_MOVED:
+				sessions.evict(event.getString(0));
+				break;
+			default:
+				LOG.warn("Unknown cluster event {}", event.getCommand());
+		}
+	}
+
+	// Session state: SESSION|||userId|||username|||fullName|||role|||quizId, then one
+	// (answer, seconds) row per question when a quiz is in progress
+
+	@Override
+	public void save(SessionTable.Session session) {
+		User user = session.getUser();
+		AttemptSession attempt = session.getAttempt();
+		Message state = new Message(SESSION).add(user.getUserId()).add(user.getUsername())
+			.add(user.getFullName()).add(user.getRole()).add(attempt != null ? attempt.getQuizId() : 0);
+		if (attempt != null) {
+			for (int i = 0; i < attempt.getQuestionCount(); i++) {
+				state.addRow((int) attempt.getAnswer(i), attempt.getSeconds(i));
+			}
+		}
+		backend.putSession(session.getToken(), state);
+	}
+
+	@Override
+	public SessionTable.Session load(String token) {
+		Message state = backend.getSession(token);
+		if (state == null) {
+			return null;
+		}
+		User user = new User(state.getInt(0), state.getString(1), state.getString(2), state.getString(3));
+		SessionTable.Session session = new SessionTable.Session(token, user, null);
+		int quizId = state.getInt(4);
+		if (quizId != 0) {
+			session.setAttempt(restoreAttempt(quizId, state));
+		}
+		backend.publish(new Message(SESSION_MOVED).add(token));
+		LOG.info("Session taken over from another node userId={} quizId={}", user.getUserId(), quizId);
+		return session;
+	}
+
+	private AttemptSession restoreAttempt(int quizId, Message state) {
+		try {
+			QuizCache.Entry entry = quizCache.get(quizId);
+			if (entry == null) {
+				return null;
+			}
+			int questions = state.size() - 5;
+			byte[] answers = new byte[questions];
+			int[] seconds = new int[questions];
+			for (int i = 0; i < questions; i++) {
+				Message.Row row = state.getRow(5 + i);
+				answers[i] = (byte) row.getInt(0);
+				seconds[i] = row.getInt(1);
+			}
+			return new AttemptSession(entry.getAnswerKey(), answers, seconds);
+		} catch (SQLException e) {
+			// The user is still logged in; FINISH_QUIZ grades whatever it is sent
+			LOG.warn("Could not restore quiz progress quizId={}: {}", quizId, e.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	public void remove(SessionTable.Session session) {
+		backend.removeSession(session.getToken());
+	}
+
+	void shutdown() {
+		backend.close();
+	}
+}
@@ -0,0 +1,62 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for one protocol command. Total time runs from the
+ * start of handling to the last response being written or queued; the database and
+ * serialization histograms hold the part of it spent holding a pooled connection and
+ * encoding responses (see Metrics.addDbTime / addSerializationTime).
+ */
+public class CommandMetrics implements CommandMetricsMBean {
+	private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+	private final String command;
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final LatencyHistogram total = new LatencyHistogram();
+	private final LatencyHistogram db = new LatencyHistogram();
+	private final LatencyHistogram serialization = new LatencyHistogram();
+
+	CommandMetrics(String command) {
+		this.command = command;
+	}
+
+	/**
+	 * Marks a request as started; pass the returned start time to end()
+	 */
+	long begin() {
+		inFlight.incrementAndGet();
+		return System.nanoTime();
+	}
+
+	void end(long startNanos, boolean failed, long dbNanos, long serializationNanos) {
+		total.record(System.nanoTime() - startNanos);
+		db.record(dbNanos);
+		serialization.record(serializationNanos);
+		requests.increment();
+		if (failed) {
+			errors.increment();
+		}
+		inFlight.decrementAndGet();
+	}
+
+	public String getCommand() { return command; }
+	public LatencyHistogram getTotal() { return total; }
+	public LatencyHistogram getDb() { return db; }
+	public LatencyHistogram getSerialization() { return serialization; }
+
+	@Override public long getRequests() { return requests.sum(); }
+	@Override public long getErrors() { return errors.sum(); }
+	@Override public int getInFlight() { return inFlight.get(); }
+
+	@Override public double getMeanMillis() { return total.getMeanNanos() / NANOS_PER_MILLI; }
+	@Override public double getP50Millis() { return total.percentileNanos(0.50) / NANOS_PER_MILLI; }
+	@Override public double getP99Millis() { return total.percentileNanos(0.99) / NANOS_PER_MILLI; }
+	@Override public double getMaxMillis() { return total.getMaxNanos() / NANOS_PER_MILLI; }
+
+	@Override public double getDbP99Millis() { return db.percentileNanos(0.99) / NANOS_PER_MILLI; }
+	@Override public double getSerializationP99Millis() { return serialization.percentileNanos(0.99) / NANOS_PER_MILLI; }
+}
@@ -0,0 +1,18 @@
+package server;
+
+/**
+ * JMX view of one command's metrics (quiz.server:type=Command,name=&lt;command&gt;)
+ */
+public interface CommandMetricsMBean {
+	long getRequests();
+	long getErrors();
+	int getInFlight();
+
+	double getMeanMillis();
+	double getP50Millis();
+	double getP99Millis();
+	double getMaxMillis();
+
+	double getDbP99Millis();
+	double getSerializationP99Millis();
+}
@@ -0,0 +1,399 @@
+package server;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded JDBC connection pool. Borrowed connections are proxies whose close()
+ * hands the physical connection back, so DAO code keeps using try-with-resources.
+ */
+public class ConnectionPool {
+	private static final Log LOG = Log.get(ConnectionPool.class);
+
+	// Connections idle for less than this are trusted without an isValid() round-trip
+	private static final long VALIDATION_GRACE_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+	private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+	private final String url;
+	private final String user;
+	private final String password;
+	private final int minIdle;
+	private final int maxSize;
+	private final long borrowTimeoutMillis;
+	private final long idleTimeoutMillis;
+	private final long leakThresholdMillis;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+	private final Deque<PooledConnection> idle = new ArrayDeque<>();
+	private final Map<PooledConnection, Long> borrowed = new ConcurrentHashMap<>();
+	private int totalConnections = 0;
+	private int waitingThreads = 0;
+	private boolean shutdown = false;
+
+	private final AtomicLong borrowCount = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	private final AtomicLong timeoutCount = new AtomicLong();
+	private final AtomicLong leakCount = new AtomicLong();
+
+	private final ScheduledExecutorService housekeeper;
+
+	public ConnectionPool(String url, String user, String password, int minIdle, int maxSize,
+						  long borrowTimeoutMillis, long idleTimeoutMillis, long leakThresholdMillis) {
+		this.url = url;
+		this.user = user;
+		this.password = password;
+		this.minIdle = minIdle;
+		this.maxSize = maxSize;
+		this.borrowTimeoutMillis = borrowTimeoutMillis;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.leakThresholdMillis = leakThresholdMillis;
+
+		this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "quiz-db-pool-housekeeper");
+			t.setDaemon(true);
+			return t;
+		});
+		housekeeper.scheduleWithFixedDelay(this::housekeep, 30, 30, TimeUnit.SECONDS);
+	}
+
+	public Connection borrow() throws SQLException {
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+
+		while (true) {
+			PooledConnection candidate = null;
+			boolean create = false;
+
+			lock.lock();
+			try {
+				while (!shutdown && idle.isEmpty() && totalConnections >= maxSize) {
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) {
+						timeoutCount.incrementAndGet();
+						throw new SQLException("Timed out after " + borrowTimeoutMillis +
+							"ms waiting for a database connection (" + stats() + ")");
+					}
+					waitingThreads++;
+					try {
+						available.awaitNanos(remaining);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new SQLException("Interrupted while waiting for a database connection", e);
+					} finally {
+						waitingThreads--;
+					}
+				}
+				if (shutdown) {
+					throw new SQLException("Connection pool is shut down");
+				}
+				if (!idle.isEmpty()) {
+					candidate = idle.pollFirst();
+				} else {
+					totalConnections++;
+					create = true;
+				}
+			} finally {
+				lock.unlock();
+			}
+
+			if (create) {
+				try {
+					candidate = new PooledConnection(DriverManager.getConnection(url, user, password));
+				} catch (SQLException e) {
+					discarded();
+					throw e;
+				}
+			} else if (!validate(candidate)) {
+				destroy(candidate);
+				continue;
+			}
+
+			recordWait(System.nanoTime() - start);
+			return candidate.lease(start);
+		}
+	}
+
+	private boolean validate(PooledConnection pooled) {
+		if (System.nanoTime() - pooled.lastReturnedNanos < VALIDATION_GRACE_NANOS) {
+			return true;
+		}
+		try {
+			return pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private void recordWait(long waitNanos) {
+		borrowCount.incrementAndGet();
+		totalWaitNanos.addAndGet(waitNanos);
+		long max;
+		while (waitNanos > (max = maxWaitNanos.get()) && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+			// retry until the larger value sticks
+		}
+	}
+
+	private void giveBack(PooledConnection pooled) {
+		borrowed.remove(pooled);
+		try {
+			if (!pooled.physical.getAutoCommit()) {
+				pooled.physical.rollback();
+				pooled.physical.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			destroy(pooled);
+			return;
+		}
+
+		pooled.lastReturnedNanos = System.nanoTime();
+		lock.lock();
+		try {
+			if (shutdown) {
+				totalConnections--;
+				closeQuietly(pooled);
+				return;
+			}
+			idle.addFirst(pooled);
+			available.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void destroy(PooledConnection pooled) {
+		closeQuietly(pooled);
+		discarded();
+	}
+
+	private void discarded() {
+		lock.lock();
+		try {
+			totalConnections--;
+			available.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void housekeep() {
+		long now = System.nanoTime();
+		Deque<PooledConnection> evicted = new ArrayDeque<>();
+
+		lock.lock();
+		try {
+			// Oldest idle connections sit at the tail
+			Iterator<PooledConnection> it = idle.descendingIterator();
+			while (it.hasNext() && idle.size() > minIdle) {
+				PooledConnection pooled = it.next();
+				if (now - pooled.lastReturnedNanos > TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis)) {
+					it.remove();
+					totalConnections--;
+					evicted.add(pooled);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		for (PooledConnection pooled : evicted) {
+			closeQuietly(pooled);
+		}
+
+		fillToMinimum();
+
+		if (leakThresholdMillis > 0) {
+			for (Map.Entry<PooledConnection, Long> entry : borrowed.entrySet()) {
+				PooledConnection pooled = entry.getKey();
+				long heldMillis = TimeUnit.NANOSECONDS.toMillis(now - entry.getValue());
+				if (heldMillis > leakThresholdMillis && !pooled.leakReported) {
+					pooled.leakReported = true;
+					leakCount.incrementAndGet();
+					LOG.warn("Possible connection leak heldMs={}, borrowed at:", heldMillis, pooled.borrowSite);
+				}
+			}
+		}
+	}
+
+	// Keeps minIdle connections open so the first requests after a quiet period don't pay for a handshake
+	void fillToMinimum() {
+		while (true) {
+			lock.lock();
+			try {
+				if (shutdown || totalConnections >= minIdle) {
+					return;
+				}
+				totalConnections++;
+			} finally {
+				lock.unlock();
+			}
+			try {
+				giveBack(new PooledConnection(DriverManager.getConnection(url, user, password)));
+			} catch (SQLException e) {
+				discarded();
+				return;
+			}
+		}
+	}
+
+	public void shutdown() {
+		housekeeper.shutdownNow();
+		lock.lock();
+		try {
+			shutdown = true;
+			for (PooledConnection pooled : idle) {
+				totalConnections--;
+				closeQuietly(pooled);
+			}
+			idle.clear();
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public Stats stats() {
+		lock.lock();
+		try {
+			return new Stats(totalConnections - idle.size(), idle.size(), waitingThreads,
+				borrowCount.get(), totalWaitNanos.get(), maxWaitNanos.get(), timeoutCount.get(), leakCount.get());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static void closeQuietly(PooledConnection pooled) {
+		try {
+			pooled.physical.close();
+		} catch (SQLException e) {
+			// connection already broken
+		}
+	}
+
+	/**
+	 * Point-in-time pool metrics
+	 */
+	public static class Stats {
+		private final int active;
+		private final int idle;
+		private final int waiting;
+		private final long borrows;
+		private final long totalWaitNanos;
+		private final long maxWaitNanos;
+		private final long timeouts;
+		private final long leaks;
+
+		Stats(int active, int idle, int waiting, long borrows, long totalWaitNanos,
+			  long maxWaitNanos, long timeouts, long leaks) {
+			this.active = active;
+			this.idle = idle;
+			this.waiting = waiting;
+			this.borrows = borrows;
+			this.totalWaitNanos = totalWaitNanos;
+			this.maxWaitNanos = maxWaitNanos;
+			this.timeouts = timeouts;
+			this.leaks = leaks;
+		}
+
+		public int getActive() { return active; }
+		public int getIdle() { return idle; }
+		public int getWaiting() { return waiting; }
+		public long getBorrows() { return borrows; }
+		public long getTimeouts() { return timeouts; }
+		public long getLeaks() { return leaks; }
+
+		public double getAverageWaitMillis() {
+			return borrows == 0 ? 0 : totalWaitNanos / (double) borrows / 1_000_000.0;
+		}
+
+		public double getMaxWaitMillis() {
+			return maxWaitNanos / 1_000_000.0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("active=%d, idle=%d, waiting=%d, borrows=%d, avgWait=%.2fms, maxWait=%.2fms, timeouts=%d, leaks=%d",
+				active, idle, waiting, borrows, getAverageWaitMillis(), getMaxWaitMillis(), timeouts, leaks);
+		}
+	}
+
+	private final class PooledConnection {
+		private final Connection physical;
+		private volatile long lastReturnedNanos = System.nanoTime();
+		private volatile Throwable borrowSite;
+		private volatile boolean leakReported;
+
+		PooledConnection(Connection physical) {
+			this.physical = physical;
+		}
+
+		Connection lease(long requestedNanos) {
+			leakReported = false;
+			borrowSite = leakThresholdMillis > 0 ? new Throwable("connection borrowed here") : null;
+			borrowed.put(this, System.nanoTime());
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[]{Connection.class}, new LeaseHandler(this, requestedNanos));
+		}
+	}
+
+	/**
+	 * One borrow of a pooled connection; close() returns it instead of closing the socket
+	 */
+	private final class LeaseHandler implements InvocationHandler {
+		private final PooledConnection pooled;
+		private final long requestedNanos;
+		private boolean returned = false;
+
+		LeaseHandler(PooledConnection pooled, long requestedNanos) {
+			this.pooled = pooled;
+			this.requestedNanos = requestedNanos;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "close":
+					if (!returned) {
+						returned = true;
+						giveBack(pooled);
+						// Waiting for the connection plus using it counts as the request's database time
+						Metrics.addDbTime(System.nanoTime() - requestedNanos);
+					}
+					return null;
+				case "isClosed":
+					return returned || pooled.physical.isClosed();
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "Pooled" + pooled.physical;
+				default:
+					if (returned) {
+						throw new SQLException("Connection has already been returned to the pool");
+					}
+					try {
+						return method.invoke(pooled.physical, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+			}
+		}
+	}
+}
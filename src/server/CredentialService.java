@@ -0,0 +1,196 @@
+package server;
+
+import model.User;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Login and registration against salted password hashes.
+ *
+ * Hashing runs on a small fixed pool with a bounded queue, so a login storm at exam start
+ * uses at most AUTH_THREADS cores and queues (then rejects with "busy") instead of
+ * starving every request thread. Callers wait for their own verification, which keeps
+ * LOGIN ordered with the requests pipelined behind it.
+ *
+ * Successful logins are remembered per username for a short TTL as a keyed SHA-256 of
+ * the password, so a client that reconnects, or logs in again after a quiz, does not pay
+ * for another PBKDF2 run. Legacy plain-text rows are rehashed on their first successful
+ * login; PasswordMigration converts the rest in bulk.
+ */
+public class CredentialService {
+	private static final Log LOG = Log.get(CredentialService.class);
+
+	/**
+	 * Thrown when the hashing pool is saturated; the client should retry shortly
+	 */
+	public static class BusyException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		BusyException(String message) {
+			super(message);
+		}
+	}
+
+	private final QuizRepository dao;
+	private final PasswordHasher hasher;
+	private final ThreadPoolExecutor executor;
+	private final long timeoutMillis;
+	private final long cacheTtlMillis;
+	private final int cacheSize;
+	private final Map<String, CachedLogin> recentLogins = new ConcurrentHashMap<>();
+	// Keys the cache digests so a heap dump does not expose unsalted password hashes
+	private final byte[] cacheKey = new byte[32];
+	// Verified against when the username does not exist, so both cases take as long
+	private final String dummyHash;
+
+	public CredentialService(QuizRepository dao, PasswordHasher hasher, int threads, int queueSize,
+							 long timeoutMillis, long cacheTtlMillis, int cacheSize) {
+		this.dao = dao;
+		this.hasher = hasher;
+		this.timeoutMillis = timeoutMillis;
+		this.cacheTtlMillis = cacheTtlMillis;
+		this.cacheSize = cacheSize;
+		AtomicInteger count = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(queueSize), r -> {
+				Thread t = new Thread(r, "quiz-auth-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}, new ThreadPoolExecutor.AbortPolicy());
+		new SecureRandom().nextBytes(cacheKey);
+		this.dummyHash = hasher.hash("not a real password");
+	}
+
+	/**
+	 * Returns the user if the password matches, or null
+	 */
+	public User authenticate(String username, String password) throws SQLException, BusyException {
+		CachedLogin cached = recentLogins.get(username);
+		if (cached != null) {
+			if (cached.expiresAt <= System.currentTimeMillis()) {
+				recentLogins.remove(username, cached);
+			} else if (MessageDigest.isEqual(cached.digest, digest(password))) {
+				return cached.user;
+			}
+		}
+
+		User user = dao.findUserByUsername(username);
+		String stored = user != null ? user.getPassword() : dummyHash;
+		boolean valid = run(() -> hasher.verify(password, stored)) && user != null;
+		if (!valid) {
+			return null;
+		}
+
+		if (hasher.needsRehash(stored)) {
+			rehash(user, password);
+		}
+		user.setPassword(null);
+		remember(username, password, user);
+		return user;
+	}
+
+	/**
+	 * Hashes the password and stores the user; false if the username is taken
+	 */
+	public boolean register(User user) throws SQLException, BusyException {
+		String password = user.getPassword();
+		user.setPassword(run(() -> hasher.hash(password)));
+		recentLogins.remove(user.getUsername());
+		return dao.registerUser(user);
+	}
+
+	public int queuedVerifications() {
+		return executor.getQueue().size();
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private void rehash(User user, String password) {
+		try {
+			String hash = run(() -> hasher.hash(password));
+			dao.updatePasswordHash(user.getUserId(), hash);
+			LOG.info("Password rehashed userId={}", user.getUserId());
+		} catch (SQLException | BusyException e) {
+			// The login itself succeeded; the next one tries again
+			LOG.warn("Could not rehash password userId={}: {}", user.getUserId(), e.getMessage());
+		}
+	}
+
+	private <T> T run(Callable<T> task) throws BusyException {
+		Future<T> future;
+		try {
+			future = executor.submit(task);
+		} catch (RejectedExecutionException e) {
+			throw new BusyException("Server busy, please try logging in again");
+		}
+		try {
+			return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			throw new BusyException("Server busy, please try logging in again");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.cancel(true);
+			throw new BusyException("Interrupted while checking credentials");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	private void remember(String username, String password, User user) {
+		if (cacheTtlMillis <= 0) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if (recentLogins.size() >= cacheSize) {
+			recentLogins.values().removeIf(entry -> entry.expiresAt <= now);
+			if (recentLogins.size() >= cacheSize) {
+				return;
+			}
+		}
+		recentLogins.put(username, new CachedLogin(user, digest(password), now + cacheTtlMillis));
+	}
+
+	private byte[] digest(String password) {
+		try {
+			MessageDigest sha = MessageDigest.getInstance("SHA-256");
+			sha.update(cacheKey);
+			return sha.digest(password.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static final class CachedLogin {
+		final User user;
+		final byte[] digest;
+		final long expiresAt;
+
+		CachedLogin(User user, byte[] digest, long expiresAt) {
+			this.user = user;
+			this.digest = digest;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming RFC 4180 reader: comma separated, fields optionally in double quotes,
+ * "" for a quote inside a quoted field, and quoted fields may span lines. Reads one
+ * record at a time, so files of any size can be imported with constant memory.
+ */
+class CsvReader implements Closeable {
+	private final Reader in;
+	private int line = 1;
+	private int recordLine = 1;
+	private int pushedBack = -2;
+
+	CsvReader(Reader in) {
+		this.in = in;
+	}
+
+	/**
+	 * The next record's fields, or null at the end of the input
+	 */
+	List<String> next() throws IOException {
+		int c = read();
+		// Skip blank lines
+		while (c == '\r' || c == '\n') {
+			c = read();
+		}
+		if (c == -1) {
+			return null;
+		}
+		recordLine = line;
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		boolean wasQuoted = false;
+		while (true) {
+			if (quoted) {
+				if (c == -1) {
+					throw new IOException("Unterminated quoted field starting on line " + recordLine);
+				}
+				if (c == '"') {
+					int following = read();
+					if (following == '"') {
+						field.append('"');
+					} else {
+						quoted = false;
+						c = following;
+						continue;
+					}
+				} else {
+					field.append((char) c);
+				}
+			} else if (c == '"' && field.length() == 0 && !wasQuoted) {
+				quoted = true;
+				wasQuoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+				wasQuoted = false;
+			} else if (c == '\r' || c == '\n' || c == -1) {
+				if (c == '\r') {
+					int following = read();
+					if (following != '\n') {
+						pushedBack = following;
+					}
+				}
+				fields.add(field.toString());
+				return fields;
+			} else {
+				field.append((char) c);
+			}
+			c = read();
+		}
+	}
+
+	/**
+	 * Line on which the record last returned by next() starts
+	 */
+	int getLine() {
+		return recordLine;
+	}
+
+	private int read() throws IOException {
+		int c;
+		if (pushedBack != -2) {
+			c = pushedBack;
+			pushedBack = -2;
+		} else {
+			c = in.read();
+		}
+		if (c == '\n') {
+			line++;
+		}
+		return c;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -1,48 +1,87 @@
 package server;
 
 import java.sql.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Database connection utility class
+ * Database connection utility class.
+ * Connections come from a shared pool; closing one returns it to the pool.
  */
 public class DatabaseConnection {
-    private static final String URL = "jdbc:mysql://localhost:3306/quiz_system";
+    private static final Log LOG = Log.get(DatabaseConnection.class);
+
+    // rewriteBatchedStatements turns JDBC batches into multi-row INSERTs
+    private static final String URL = "jdbc:mysql://localhost:3306/quiz_system?rewriteBatchedStatements=true";
     private static final String USER = "root";
-    private static final String PASSWORD = "password"; 
-    
-    private static Connection connection = null;
-    
-    public static Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            try {
-                Class.forName("com.mysql.cj.jdbc.Driver");
-                connection = DriverManager.getConnection(URL, USER, PASSWORD);
-                System.out.println("Database connected successfully!");
-            } catch (ClassNotFoundException e) {
-                throw new SQLException("MySQL JDBC Driver not found", e);
+    private static final String PASSWORD = "password";
+
+    // Pool sizing, overridable with -Dquiz.db.pool.* system properties
+    private static final int POOL_MIN_IDLE = Integer.getInteger("quiz.db.pool.minIdle", 2);
+    private static final int POOL_MAX_SIZE = Integer.getInteger("quiz.db.pool.maxSize", 20);
+    private static final long POOL_BORROW_TIMEOUT_MS = Long.getLong("quiz.db.pool.borrowTimeoutMs", 5000);
+    private static final long POOL_IDLE_TIMEOUT_MS = Long.getLong("quiz.db.pool.idleTimeoutMs", 300000);
+    private static final long POOL_LEAK_THRESHOLD_MS = Long.getLong("quiz.db.pool.leakThresholdMs", 60000);
+
+    private static volatile ConnectionPool pool = null;
+    // A lock rather than synchronized: closing the pool does network I/O, which would
+    // pin the carrier thread of a virtual thread holding a monitor
+    private static final ReentrantLock poolLock = new ReentrantLock();
+
+    private static ConnectionPool pool() throws SQLException {
+        ConnectionPool current = pool;
+        if (current != null) {
+            return current;
+        }
+        poolLock.lock();
+        try {
+            if (pool == null) {
+                try {
+                    Class.forName("com.mysql.cj.jdbc.Driver");
+                } catch (ClassNotFoundException e) {
+                    throw new SQLException("MySQL JDBC Driver not found", e);
+                }
+                pool = new ConnectionPool(URL, USER, PASSWORD, POOL_MIN_IDLE, POOL_MAX_SIZE,
+                        POOL_BORROW_TIMEOUT_MS, POOL_IDLE_TIMEOUT_MS, POOL_LEAK_THRESHOLD_MS);
             }
+            return pool;
+        } finally {
+            poolLock.unlock();
         }
-        return connection;
     }
-    
+
+    public static Connection getConnection() throws SQLException {
+        return pool().borrow();
+    }
+
+    public static ConnectionPool.Stats getPoolStats() {
+        ConnectionPool current = pool;
+        return current == null ? null : current.stats();
+    }
+
     public static void closeConnection() {
-        if (connection != null) {
-            try {
-                connection.close();
-                System.out.println("Database connection closed.");
-            } catch (SQLException e) {
-                e.printStackTrace();
+        poolLock.lock();
+        try {
+            if (pool != null) {
+                LOG.info("Database connection pool closed ({})", pool.stats());
+                pool.shutdown();
+                pool = null;
             }
+        } finally {
+            poolLock.unlock();
         }
     }
-    
+
     // Test connection
     public static boolean testConnection() {
-        try {
-            Connection conn = getConnection();
-            return conn != null && !conn.isClosed();
+        try (Connection conn = getConnection()) {
+            boolean ok = conn != null && !conn.isClosed();
+            if (ok) {
+                LOG.info("Database connected");
+                pool().fillToMinimum();
+            }
+            return ok;
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOG.error("Database connection test failed", e);
             return false;
         }
     }
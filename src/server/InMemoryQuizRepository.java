@@ -0,0 +1,365 @@
+package server;
+
+import model.ItemStats;
+import model.Question;
+import model.Quiz;
+import model.QuizAttempt;
+import model.StudentAnswer;
+import model.User;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * QuizRepository held in concurrent maps, for benches, load tests and running the server
+ * without MySQL (-Dquiz.repository=memory). Nothing survives a restart.
+ *
+ * Reads never lock: quizzes and per-student attempts sit in ConcurrentSkipListMaps keyed
+ * by id, so the newest-first keyset pages are descending range scans as on MySQL, and
+ * each quiz keeps every student's best attempt in a ConcurrentHashMap that is updated
+ * per student (merge() locks only that student's bin). Stored objects are never handed
+ * out; every read returns copies.
+ *
+ * Follows the schema's constraints: usernames are unique, and a quiz that has attempts
+ * cannot be deleted.
+ */
+public class InMemoryQuizRepository implements QuizRepository {
+	private static final int LEADERBOARD_SIZE = 10;
+	// Same order as the leaderboard query: highest score, then fastest, then first to get there
+	private static final Comparator<QuizAttempt> BEST_FIRST = Comparator
+		.comparingInt(QuizAttempt::getScore).reversed()
+		.thenComparingInt(QuizAttempt::getTimeTaken)
+		.thenComparingInt(QuizAttempt::getAttemptId);
+
+	private final ConcurrentMap<String, User> usersByName = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Integer, User> usersById = new ConcurrentHashMap<>();
+	private final ConcurrentSkipListMap<Integer, Quiz> quizzes = new ConcurrentSkipListMap<>();
+	// quiz id -> student id -> that student's best attempt
+	private final ConcurrentMap<Integer, ConcurrentMap<Integer, QuizAttempt>> bestAttempts = new ConcurrentHashMap<>();
+	// student id -> attempt id -> attempt, with its answers
+	private final ConcurrentMap<Integer, ConcurrentSkipListMap<Integer, QuizAttempt>> attemptsByStudent =
+		new ConcurrentHashMap<>();
+	private final ConcurrentMap<Integer, AtomicInteger> attemptCounts = new ConcurrentHashMap<>();
+	// quiz id -> question id -> item analysis totals
+	private final ConcurrentMap<Integer, ConcurrentMap<Integer, ItemStats>> itemStats = new ConcurrentHashMap<>();
+	private final AtomicInteger nextUserId = new AtomicInteger();
+	private final AtomicInteger nextQuizId = new AtomicInteger();
+	// Quiz list version: creation time, so another instance never repeats one, and a change count
+	private final long createdAt = System.currentTimeMillis();
+	private final AtomicLong quizListChanges = new AtomicLong();
+	private final AtomicInteger nextQuestionId = new AtomicInteger();
+	private final AtomicInteger nextAttemptId = new AtomicInteger();
+
+	/**
+	 * A repository with the accounts that database/quiz_schema.sql creates
+	 */
+	public static InMemoryQuizRepository withDefaultAccounts() {
+		InMemoryQuizRepository repository = new InMemoryQuizRepository();
+		repository.registerUser(new User("teacher", "teacher123", "Default Teacher", "TEACHER"));
+		repository.registerUser(new User("student1", "pass123", "Alice Johnson", "STUDENT"));
+		repository.registerUser(new User("student2", "pass123", "Bob Smith", "STUDENT"));
+		repository.registerUser(new User("student3", "pass123", "Carol Williams", "STUDENT"));
+		return repository;
+	}
+
+	@Override
+	public User findUserByUsername(String username) {
+		User user = usersByName.get(username);
+		if (user == null) {
+			return null;
+		}
+		synchronized (user) {
+			User copy = new User(user.getUserId(), user.getUsername(), user.getFullName(), user.getRole());
+			copy.setPassword(user.getPassword());
+			return copy;
+		}
+	}
+
+	@Override
+	public void updatePasswordHash(int userId, String hash) {
+		User user = usersById.get(userId);
+		if (user != null) {
+			synchronized (user) {
+				user.setPassword(hash);
+			}
+		}
+	}
+
+	@Override
+	public boolean registerUser(User user) {
+		// Like AUTO_INCREMENT, a rejected insert still uses up an id
+		User stored = new User(nextUserId.incrementAndGet(), user.getUsername(), user.getFullName(), user.getRole());
+		stored.setPassword(user.getPassword());
+		if (usersByName.putIfAbsent(stored.getUsername(), stored) != null) {
+			return false;
+		}
+		usersById.put(stored.getUserId(), stored);
+		return true;
+	}
+
+	@Override
+	public int[] createQuizzes(List<Quiz> newQuizzes) throws SQLException {
+		int[] ids = new int[newQuizzes.size()];
+		List<Quiz> copies = new ArrayList<>(newQuizzes.size());
+		for (int i = 0; i < ids.length; i++) {
+			Quiz quiz = newQuizzes.get(i);
+			if (!usersById.containsKey(quiz.getTeacherId())) {
+				throw new SQLIntegrityConstraintViolationException("No user with id " + quiz.getTeacherId());
+			}
+			ids[i] = nextQuizId.incrementAndGet();
+			copies.add(copy(quiz, ids[i], true));
+		}
+		// Ids are increasing, so the quizzes appear together at the head of the listing
+		for (int i = 0; i < ids.length; i++) {
+			quizzes.put(ids[i], copies.get(i));
+			newQuizzes.get(i).setQuizId(ids[i]);
+		}
+		// After the change, so a list read under the old version is never taken as current
+		quizListChanges.incrementAndGet();
+		return ids;
+	}
+
+	@Override
+	public List<Quiz> getActiveQuizzes() {
+		List<Quiz> list = new ArrayList<>();
+		streamActiveQuizzes(0, Integer.MAX_VALUE, list::add);
+		return list;
+	}
+
+	@Override
+	public String getActiveQuizzesVersion() {
+		return createdAt + "-" + quizListChanges.get();
+	}
+
+	@Override
+	public void streamActiveQuizzes(int afterQuizId, int limit, Consumer<Quiz> handler) {
+		NavigableMap<Integer, Quiz> page = quizzes.headMap(afterQuizId > 0 ? afterQuizId : Integer.MAX_VALUE, false)
+			.descendingMap();
+		int sent = 0;
+		for (Quiz quiz : page.values()) {
+			if (sent == limit) {
+				break;
+			}
+			if (quiz.isActive()) {
+				handler.accept(listing(quiz));
+				sent++;
+			}
+		}
+	}
+
+	@Override
+	public Quiz getQuizWithQuestions(int quizId) {
+		Quiz quiz = quizzes.get(quizId);
+		return quiz != null ? copy(quiz, quizId, false) : null;
+	}
+
+	@Override
+	public boolean deleteQuiz(int quizId) throws SQLException {
+		AtomicInteger attempts = attemptCounts.get(quizId);
+		if (attempts != null && attempts.get() > 0) {
+			// quiz_attempts.quiz_id has no ON DELETE CASCADE
+			throw new SQLIntegrityConstraintViolationException("Quiz " + quizId + " has attempts");
+		}
+		itemStats.remove(quizId);
+		if (quizzes.remove(quizId) == null) {
+			return false;
+		}
+		quizListChanges.incrementAndGet();
+		return true;
+	}
+
+	@Override
+	public int saveQuizAttempt(QuizAttempt attempt) throws SQLException {
+		return saveQuizAttempts(Collections.singletonList(attempt))[0];
+	}
+
+	@Override
+	public int[] saveQuizAttempts(List<QuizAttempt> attempts) throws SQLException {
+		for (QuizAttempt attempt : attempts) {
+			if (!quizzes.containsKey(attempt.getQuizId())) {
+				throw new SQLIntegrityConstraintViolationException("No quiz with id " + attempt.getQuizId());
+			}
+			if (!usersById.containsKey(attempt.getStudentId())) {
+				throw new SQLIntegrityConstraintViolationException("No user with id " + attempt.getStudentId());
+			}
+		}
+		int[] ids = new int[attempts.size()];
+		Timestamp now = new Timestamp(System.currentTimeMillis());
+		for (int i = 0; i < ids.length; i++) {
+			QuizAttempt stored = copy(attempts.get(i));
+			stored.setAttemptId(nextAttemptId.incrementAndGet());
+			stored.setAttemptDate(now);
+			ids[i] = stored.getAttemptId();
+
+			attemptCounts.computeIfAbsent(stored.getQuizId(), id -> new AtomicInteger()).incrementAndGet();
+			attemptsByStudent.computeIfAbsent(stored.getStudentId(), id -> new ConcurrentSkipListMap<>())
+				.put(stored.getAttemptId(), stored);
+			bestAttempts.computeIfAbsent(stored.getQuizId(), id -> new ConcurrentHashMap<>())
+				.merge(stored.getStudentId(), stored, (best, next) -> BEST_FIRST.compare(next, best) < 0 ? next : best);
+		}
+		return ids;
+	}
+
+	@Override
+	public List<QuizAttempt> getLeaderboard(int quizId) {
+		Quiz quiz = quizzes.get(quizId);
+		Map<Integer, QuizAttempt> best = bestAttempts.get(quizId);
+		if (quiz == null || best == null) {
+			return new ArrayList<>();
+		}
+		List<QuizAttempt> ranked = new ArrayList<>(best.values());
+		ranked.sort(BEST_FIRST);
+		List<QuizAttempt> leaderboard = new ArrayList<>(Math.min(ranked.size(), LEADERBOARD_SIZE));
+		for (QuizAttempt attempt : ranked.subList(0, Math.min(ranked.size(), LEADERBOARD_SIZE))) {
+			QuizAttempt row = summary(attempt, quiz);
+			User student = usersById.get(attempt.getStudentId());
+			row.setStudentName(student != null ? student.getFullName() : null);
+			leaderboard.add(row);
+		}
+		return leaderboard;
+	}
+
+	@Override
+	public List<QuizAttempt> getStudentResults(int studentId) {
+		List<QuizAttempt> results = new ArrayList<>();
+		streamStudentResults(studentId, 0, Integer.MAX_VALUE, results::add);
+		return results;
+	}
+
+	@Override
+	public void streamStudentResults(int studentId, int afterAttemptId, int limit, Consumer<QuizAttempt> handler) {
+		ConcurrentSkipListMap<Integer, QuizAttempt> attempts = attemptsByStudent.get(studentId);
+		if (attempts == null) {
+			return;
+		}
+		int sent = 0;
+		for (QuizAttempt attempt : attempts.headMap(afterAttemptId > 0 ? afterAttemptId : Integer.MAX_VALUE, false)
+				.descendingMap().values()) {
+			if (sent == limit) {
+				break;
+			}
+			Quiz quiz = quizzes.get(attempt.getQuizId());
+			if (quiz != null) {
+				handler.accept(summary(attempt, quiz));
+				sent++;
+			}
+		}
+	}
+
+	@Override
+	public List<ItemStats> getItemStats(int quizId) {
+		Map<Integer, ItemStats> stats = itemStats.get(quizId);
+		List<ItemStats> list = new ArrayList<>();
+		if (stats != null) {
+			for (ItemStats stored : stats.values()) {
+				ItemStats copy = new ItemStats(stored.getQuestionId(), stored.getQuizId());
+				synchronized (stored) {
+					copy.add(stored);
+				}
+				list.add(copy);
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public void addItemStats(List<ItemStats> increments) {
+		for (ItemStats increment : increments) {
+			if (!quizzes.containsKey(increment.getQuizId())) {
+				// Like the foreign key cascade: stats of a deleted quiz are gone
+				continue;
+			}
+			ItemStats stored = itemStats.computeIfAbsent(increment.getQuizId(), id -> new ConcurrentHashMap<>())
+				.computeIfAbsent(increment.getQuestionId(), id -> new ItemStats(id, increment.getQuizId()));
+			synchronized (stored) {
+				stored.add(increment);
+			}
+		}
+	}
+
+	private Quiz listing(Quiz stored) {
+		Quiz quiz = new Quiz();
+		quiz.setQuizId(stored.getQuizId());
+		quiz.setQuizName(stored.getQuizName());
+		quiz.setTeacherId(stored.getTeacherId());
+		User teacher = usersById.get(stored.getTeacherId());
+		quiz.setTeacherName(teacher != null ? teacher.getFullName() : null);
+		quiz.setTotalQuestions(stored.getTotalQuestions());
+		quiz.setTimeLimit(stored.getTimeLimit());
+		quiz.setActive(stored.isActive());
+		return quiz;
+	}
+
+	/**
+	 * Copies a quiz with its questions; when storing, assigns the question ids and order
+	 */
+	private Quiz copy(Quiz source, int quizId, boolean storing) {
+		Quiz quiz = storing ? new Quiz() : listing(source);
+		if (storing) {
+			quiz.setQuizName(source.getQuizName());
+			quiz.setTeacherId(source.getTeacherId());
+			quiz.setTotalQuestions(source.getTotalQuestions());
+			quiz.setTimeLimit(source.getTimeLimit());
+			quiz.setActive(true);
+		}
+		quiz.setQuizId(quizId);
+		List<Question> questions = new ArrayList<>(source.getQuestions().size());
+		for (int i = 0; i < source.getQuestions().size(); i++) {
+			Question q = source.getQuestions().get(i);
+			Question c = new Question(q.getQuestionText(), q.getOptionA(), q.getOptionB(), q.getOptionC(),
+				q.getOptionD(), q.getCorrectAnswer());
+			c.setQuizId(quizId);
+			c.setQuestionId(storing ? nextQuestionId.incrementAndGet() : q.getQuestionId());
+			c.setQuestionOrder(storing ? i + 1 : q.getQuestionOrder());
+			questions.add(c);
+		}
+		quiz.setQuestions(questions);
+		return quiz;
+	}
+
+	private static QuizAttempt copy(QuizAttempt source) {
+		QuizAttempt attempt = new QuizAttempt();
+		attempt.setQuizId(source.getQuizId());
+		attempt.setStudentId(source.getStudentId());
+		attempt.setScore(source.getScore());
+		attempt.setTotalQuestions(source.getTotalQuestions());
+		attempt.setPercentage(source.getPercentage());
+		attempt.setTimeTaken(source.getTimeTaken());
+		List<StudentAnswer> answers = new ArrayList<>(source.getAnswers().size());
+		for (StudentAnswer a : source.getAnswers()) {
+			answers.add(new StudentAnswer(a.getQuestionId(), a.getSelectedAnswer(), a.isCorrect(), a.getTimeTaken()));
+		}
+		attempt.setAnswers(answers);
+		return attempt;
+	}
+
+	/**
+	 * The columns the result queries return: the attempt without its answers, plus the quiz name
+	 */
+	private static QuizAttempt summary(QuizAttempt stored, Quiz quiz) {
+		QuizAttempt attempt = new QuizAttempt();
+		attempt.setAttemptId(stored.getAttemptId());
+		attempt.setQuizId(stored.getQuizId());
+		attempt.setStudentId(stored.getStudentId());
+		attempt.setQuizName(quiz.getQuizName());
+		attempt.setScore(stored.getScore());
+		attempt.setTotalQuestions(stored.getTotalQuestions());
+		attempt.setPercentage(stored.getPercentage());
+		attempt.setTimeTaken(stored.getTimeTaken());
+		attempt.setAttemptDate(stored.getAttemptDate());
+		return attempt;
+	}
+}
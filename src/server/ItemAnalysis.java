@@ -0,0 +1,334 @@
+package server;
+
+import model.ItemStats;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-question item analysis for teachers: difficulty (percent correct), how often each
+ * option was chosen, and discrimination, kept as running totals instead of being computed
+ * from student_answers on demand.
+ *
+ * Each graded attempt adds to a flat long[] of counters per quiz (FIELDS per question), so
+ * recording and reading are O(questions) and allocate nothing per attempt. Totals are
+ * written to item_stats as increments every flush interval; reads add this node's
+ * unflushed counts to totals reloaded from the repository at most once per interval, so in
+ * a cluster each node also sees what the others have flushed.
+ *
+ * Discrimination is the corrected point-biserial correlation between getting the question
+ * right and the score on the rest of the quiz, which the running sums are enough for.
+ */
+public class ItemAnalysis {
+	private static final Log LOG = Log.get(ItemAnalysis.class);
+
+	// Counter layout per question
+	private static final int RESPONSES = 0;
+	private static final int CORRECT = 1;
+	private static final int OPTIONS = 2; // A..D at OPTIONS + option
+	private static final int BLANK = 6;
+	private static final int SUM = 7;
+	private static final int SUM_SQUARES = 8;
+	private static final int SUM_CORRECT = 9;
+	private static final int FIELDS = 10;
+
+	private final QuizRepository dao;
+	private final long flushMillis;
+	private final Map<Integer, Items> quizzes = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService flusher;
+
+	public ItemAnalysis(QuizRepository dao, long flushMillis) {
+		this.dao = dao;
+		this.flushMillis = flushMillis;
+		this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "quiz-item-analysis");
+			t.setDaemon(true);
+			return t;
+		});
+		flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Adds a graded attempt; call once per saved attempt
+	 */
+	void record(AttemptSession attempt) {
+		AnswerKey key = attempt.getKey();
+		Items items = items(key);
+		long score = attempt.getScore();
+		synchronized (items) {
+			long[] counters = items.pending;
+			for (int i = 0, base = 0; i < key.getQuestionCount(); i++, base += FIELDS) {
+				byte answer = attempt.getAnswer(i);
+				counters[base + RESPONSES]++;
+				if (answer >= 0) {
+					counters[base + OPTIONS + answer]++;
+				} else {
+					counters[base + BLANK]++;
+				}
+				counters[base + SUM] += score;
+				counters[base + SUM_SQUARES] += score * score;
+				if (key.isCorrect(i, answer)) {
+					counters[base + CORRECT]++;
+					counters[base + SUM_CORRECT] += score;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Current analysis of every question of the quiz, in quiz order
+	 */
+	public Report get(AnswerKey key) throws SQLException {
+		Items items = items(key);
+		if (items.isStale()) {
+			items.load();
+		}
+		long[] totals;
+		synchronized (items) {
+			totals = items.pending.clone();
+			add(totals, items.flushing);
+			add(totals, items.base);
+		}
+		return new Report(key, totals);
+	}
+
+	/**
+	 * Forgets a deleted quiz; its item_stats rows go with its questions
+	 */
+	public void invalidate(int quizId) {
+		quizzes.remove(quizId);
+	}
+
+	/**
+	 * Writes every quiz's counts since the last flush to the repository
+	 */
+	public void flush() {
+		for (Items items : quizzes.values()) {
+			try {
+				items.flush();
+			} catch (RuntimeException e) {
+				LOG.error("Item analysis flush failed quizId={}", items.quizId, e);
+			}
+		}
+	}
+
+	public void shutdown() {
+		flusher.shutdownNow();
+		flush();
+	}
+
+	private Items items(AnswerKey key) {
+		return quizzes.computeIfAbsent(key.getQuizId(), id -> new Items(key));
+	}
+
+	private static void add(long[] into, long[] from) {
+		if (from != null) {
+			for (int i = 0; i < into.length; i++) {
+				into[i] += from[i];
+			}
+		}
+	}
+
+	private final class Items {
+		final int quizId;
+		final int[] questionIds;
+		// Guarded by this: counts not yet flushed, counts being flushed, and totals last
+		// read from the repository (null until loaded)
+		long[] pending;
+		long[] flushing;
+		long[] base;
+		volatile long loadedAt;
+		// Held across repository calls so a load never overlaps a flush and sees its rows
+		// twice; a lock, not a monitor, because it is held during I/O
+		final ReentrantLock ioLock = new ReentrantLock();
+
+		Items(AnswerKey key) {
+			this.quizId = key.getQuizId();
+			this.questionIds = new int[key.getQuestionCount()];
+			for (int i = 0; i < questionIds.length; i++) {
+				questionIds[i] = key.getQuestionId(i);
+			}
+			this.pending = new long[questionIds.length * FIELDS];
+		}
+
+		boolean isStale() {
+			synchronized (this) {
+				if (base == null) {
+					return true;
+				}
+			}
+			return System.currentTimeMillis() - loadedAt > flushMillis;
+		}
+
+		void load() throws SQLException {
+			ioLock.lock();
+			try {
+				if (!isStale()) {
+					return;
+				}
+				Map<Integer, ItemStats> rows = new HashMap<>();
+				for (ItemStats stats : dao.getItemStats(quizId)) {
+					rows.put(stats.getQuestionId(), stats);
+				}
+				long[] totals = new long[questionIds.length * FIELDS];
+				for (int i = 0; i < questionIds.length; i++) {
+					ItemStats stats = rows.get(questionIds[i]);
+					if (stats != null) {
+						fromStats(stats, totals, i * FIELDS);
+					}
+				}
+				synchronized (this) {
+					base = totals;
+				}
+				loadedAt = System.currentTimeMillis();
+			} finally {
+				ioLock.unlock();
+			}
+		}
+
+		void flush() {
+			ioLock.lock();
+			try {
+				long[] batch;
+				synchronized (this) {
+					if (!hasCounts(pending)) {
+						return;
+					}
+					batch = pending;
+					flushing = batch;
+					pending = new long[batch.length];
+				}
+				try {
+					dao.addItemStats(toStats(batch));
+					synchronized (this) {
+						if (base != null) {
+							add(base, batch);
+						}
+						flushing = null;
+					}
+				} catch (SQLException e) {
+					LOG.warn("Could not save item analysis quizId={}, retrying next flush: {}", quizId, e.getMessage());
+					synchronized (this) {
+						add(pending, batch);
+						flushing = null;
+					}
+				}
+			} finally {
+				ioLock.unlock();
+			}
+		}
+
+		private List<ItemStats> toStats(long[] counters) {
+			List<ItemStats> list = new ArrayList<>(questionIds.length);
+			for (int i = 0; i < questionIds.length; i++) {
+				int offset = i * FIELDS;
+				if (counters[offset + RESPONSES] == 0) {
+					continue;
+				}
+				ItemStats stats = new ItemStats(questionIds[i], quizId);
+				stats.setResponses(counters[offset + RESPONSES]);
+				stats.setCorrect(counters[offset + CORRECT]);
+				for (int option = 0; option < 4; option++) {
+					stats.setOptionCount(option, counters[offset + OPTIONS + option]);
+				}
+				stats.setBlank(counters[offset + BLANK]);
+				stats.setSumScore(counters[offset + SUM]);
+				stats.setSumScoreSquares(counters[offset + SUM_SQUARES]);
+				stats.setSumScoreCorrect(counters[offset + SUM_CORRECT]);
+				list.add(stats);
+			}
+			return list;
+		}
+	}
+
+	private static boolean hasCounts(long[] counters) {
+		for (int i = RESPONSES; i < counters.length; i += FIELDS) {
+			if (counters[i] != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void fromStats(ItemStats stats, long[] counters, int base) {
+		counters[base + RESPONSES] = stats.getResponses();
+		counters[base + CORRECT] = stats.getCorrect();
+		for (int option = 0; option < 4; option++) {
+			counters[base + OPTIONS + option] = stats.getOptionCount(option);
+		}
+		counters[base + BLANK] = stats.getBlank();
+		counters[base + SUM] = stats.getSumScore();
+		counters[base + SUM_SQUARES] = stats.getSumScoreSquares();
+		counters[base + SUM_CORRECT] = stats.getSumScoreCorrect();
+	}
+
+	/**
+	 * A snapshot of the totals for one quiz; questions are indexed in quiz order
+	 */
+	public static final class Report {
+		private final AnswerKey key;
+		private final long[] totals;
+
+		Report(AnswerKey key, long[] totals) {
+			this.key = key;
+			this.totals = totals;
+		}
+
+		public int getQuestionCount() { return key.getQuestionCount(); }
+		public int getQuestionId(int index) { return key.getQuestionId(index); }
+		public String getCorrectLetter(int index) { return key.getCorrectLetter(index); }
+		public long getResponses(int index) { return totals[index * FIELDS + RESPONSES]; }
+		public long getOptionCount(int index, int option) { return totals[index * FIELDS + OPTIONS + option]; }
+		public long getBlank(int index) { return totals[index * FIELDS + BLANK]; }
+
+		/**
+		 * Graded attempts counted; every attempt answers (or skips) every question
+		 */
+		public long getAttempts() {
+			return totals.length == 0 ? 0 : totals[RESPONSES];
+		}
+
+		/**
+		 * Difficulty: percent of responses that were correct, NaN with no responses
+		 */
+		public double getPercentCorrect(int index) {
+			long n = getResponses(index);
+			return n == 0 ? Double.NaN : 100.0 * totals[index * FIELDS + CORRECT] / n;
+		}
+
+		/**
+		 * Point-biserial correlation between this question and the score on the other
+		 * questions, from -1 to 1; NaN while it is undefined (everyone right, everyone wrong,
+		 * or no spread in the scores)
+		 */
+		public double getDiscrimination(int index) {
+			int base = index * FIELDS;
+			double n = totals[base + RESPONSES];
+			double c = totals[base + CORRECT];
+			if (c == 0 || c == n) {
+				return Double.NaN;
+			}
+			// Rest score R = score - item; its sums follow from the score sums since item is 0/1
+			double sumRest = totals[base + SUM] - c;
+			double sumRestSquares = totals[base + SUM_SQUARES] - 2.0 * totals[base + SUM_CORRECT] + c;
+			double sumRestCorrect = totals[base + SUM_CORRECT] - c;
+			double mean = sumRest / n;
+			double variance = sumRestSquares / n - mean * mean;
+			if (variance <= 1e-12) {
+				return Double.NaN;
+			}
+			double meanCorrect = sumRestCorrect / c;
+			double meanWrong = (sumRest - sumRestCorrect) / (n - c);
+			double p = c / n;
+			return (meanCorrect - meanWrong) / Math.sqrt(variance) * Math.sqrt(p * (1 - p));
+		}
+	}
+}
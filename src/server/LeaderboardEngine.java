@@ -0,0 +1,138 @@
+package server;
+
+import model.QuizAttempt;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory per-quiz leaderboards: the best attempt of each of the top N students,
+ * ordered by score (desc) then time taken (asc).
+ *
+ * A board is loaded from the database the first time it is read and is then kept
+ * current by record(), so GET_LEADERBOARD no longer runs the window-function query.
+ * Only the top N has to be kept: a student's best attempt never gets worse, so a
+ * student outside the top N can only enter it with an attempt that beats entry N.
+ * Boards are only created for quizzes that exist (checked through the QuizCache), so
+ * requests for made-up ids cannot grow the map.
+ */
+public class LeaderboardEngine {
+	public static final int SIZE = 10;
+
+	static final Comparator<QuizAttempt> RANKING = Comparator
+		.comparingInt(QuizAttempt::getScore).reversed()
+		.thenComparingInt(QuizAttempt::getTimeTaken)
+		.thenComparingInt(QuizAttempt::getAttemptId);
+
+	private final QuizRepository dao;
+	private final QuizCache quizCache;
+	private final Map<Integer, Board> boards = new ConcurrentHashMap<>();
+
+	public LeaderboardEngine(QuizRepository dao, QuizCache quizCache) {
+		this.dao = dao;
+		this.quizCache = quizCache;
+	}
+
+	/**
+	 * Current top N for a quiz; the returned list is an immutable snapshot
+	 */
+	public List<QuizAttempt> get(int quizId) throws SQLException {
+		Board board = boards.get(quizId);
+		if (board == null) {
+			if (quizCache.get(quizId) == null) {
+				return Collections.emptyList();
+			}
+			board = boards.computeIfAbsent(quizId, id -> new Board());
+		}
+		if (!board.loaded) {
+			board.load(quizId);
+		}
+		return board.snapshot;
+	}
+
+	/**
+	 * Applies a newly saved attempt (attemptId and studentName must be set)
+	 */
+	public void record(QuizAttempt attempt) {
+		Board board = boards.get(attempt.getQuizId());
+		if (board != null) {
+			board.offer(attempt);
+		}
+		// No board yet: the attempt is already committed and will be part of the first load
+	}
+
+	public void invalidate(int quizId) {
+		boards.remove(quizId);
+	}
+
+	private final class Board {
+		private volatile boolean loaded = false;
+		private volatile List<QuizAttempt> snapshot = Collections.emptyList();
+		// Attempts recorded while the initial load was in flight
+		private final List<QuizAttempt> pending = new ArrayList<>();
+		// Held across the database query, so it must not be a monitor (virtual thread pinning);
+		// the synchronized sections below only touch memory
+		private final ReentrantLock loadLock = new ReentrantLock();
+
+		void load(int quizId) throws SQLException {
+			loadLock.lock();
+			try {
+				if (loaded) {
+					return;
+				}
+				List<QuizAttempt> fromDb = dao.getLeaderboard(quizId);
+				synchronized (this) {
+					List<QuizAttempt> top = new ArrayList<>(fromDb);
+					for (QuizAttempt attempt : pending) {
+						merge(top, attempt);
+					}
+					pending.clear();
+					snapshot = Collections.unmodifiableList(top);
+					loaded = true;
+				}
+			} finally {
+				loadLock.unlock();
+			}
+		}
+
+		synchronized void offer(QuizAttempt attempt) {
+			if (!loaded) {
+				pending.add(attempt);
+				return;
+			}
+			List<QuizAttempt> top = new ArrayList<>(snapshot);
+			if (merge(top, attempt)) {
+				snapshot = Collections.unmodifiableList(top);
+			}
+		}
+
+		private boolean merge(List<QuizAttempt> top, QuizAttempt attempt) {
+			for (int i = 0; i < top.size(); i++) {
+				QuizAttempt existing = top.get(i);
+				if (existing.getStudentId() == attempt.getStudentId()) {
+					if (RANKING.compare(attempt, existing) >= 0) {
+						return false;
+					}
+					top.remove(i);
+					break;
+				}
+			}
+
+			if (top.size() >= SIZE && RANKING.compare(attempt, top.get(top.size() - 1)) >= 0) {
+				return false;
+			}
+			int index = Collections.binarySearch(top, attempt, RANKING);
+			top.add(index < 0 ? -index - 1 : index, attempt);
+			if (top.size() > SIZE) {
+				top.remove(top.size() - 1);
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package server;
+
+import common.Message;
+import common.WireFormat;
+
+import java.util.function.Consumer;
+
+/**
+ * A client connection without a socket: each request runs through a ClientHandler on the
+ * calling thread and its responses are passed to the receiver as Message objects, never
+ * encoded. Benches use it to time the handler and the services behind it apart from the
+ * transport and wire format (see bench.HandlerBench).
+ */
+public final class LocalConnection {
+	private final ClientHandler handler;
+	private volatile boolean closed = false;
+
+	public LocalConnection(ServerContext context, Consumer<Message> receiver) {
+		this.handler = new ClientHandler(new MessageSink() {
+			@Override
+			public void send(Message message, int requestId) {
+				if (!closed) {
+					receiver.accept(message);
+				}
+			}
+
+			@Override
+			public void setFormat(WireFormat format) {
+				// Nothing is encoded
+			}
+
+			@Override
+			public void close() {
+				closed = true;
+			}
+		}, context);
+	}
+
+	/**
+	 * Handles the request; responses reach the receiver before this returns, except those
+	 * the server sends later (pushes)
+	 */
+	public void request(Message message) {
+		if (closed) {
+			throw new IllegalStateException("Connection closed");
+		}
+		handler.handleMessage(message);
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Like a dropped socket: the login session stays resumable
+	 */
+	public void close() {
+		closed = true;
+		handler.connectionClosed();
+	}
+}
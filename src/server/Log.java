@@ -0,0 +1,185 @@
+package server;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Leveled server logging with an asynchronous appender.
+ *
+ * Callers pass a pattern with {} placeholders plus the values. A disabled level costs a
+ * comparison; an enabled one queues the pattern and values, and the "quiz-log" thread
+ * does the formatting and console I/O, so request threads never wait on the console.
+ * A trailing Throwable that no placeholder uses is printed with its stack trace.
+ *
+ * The queue is a bounded ring buffer. Once it is three quarters full, DEBUG and INFO
+ * records are dropped to leave room for warnings and errors; when it is full everything
+ * new is dropped. Drops are counted and reported when the buffer drains.
+ *
+ * Lines read: 2026-10-18T09:30:00.123Z INFO  [quiz-worker-3] ClientHandler - Login succeeded userId=4
+ *
+ * -Dquiz.log.level=DEBUG|INFO|WARN|ERROR|OFF (default INFO), -Dquiz.log.buffer=8192 records
+ */
+public final class Log {
+	public enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+
+	private static final Level LEVEL = Level.valueOf(System.getProperty("quiz.log.level", "INFO").toUpperCase());
+	private static final int BUFFER = Integer.getInteger("quiz.log.buffer", 8192);
+	private static final int LOW_PRIORITY_LIMIT = BUFFER * 3 / 4;
+
+	private static final BlockingQueue<Record> queue = new ArrayBlockingQueue<>(BUFFER);
+	private static final AtomicLong dropped = new AtomicLong();
+
+	static {
+		Thread writer = new Thread(Log::writeLoop, "quiz-log");
+		writer.setDaemon(true);
+		writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "quiz-log-flush"));
+	}
+
+	private final String name;
+
+	private Log(String name) {
+		this.name = name;
+	}
+
+	public static Log get(Class<?> type) {
+		return new Log(type.getSimpleName());
+	}
+
+	public boolean isDebugEnabled() { return enabled(Level.DEBUG); }
+
+	public void debug(String pattern) { log(Level.DEBUG, pattern, null); }
+	public void debug(String pattern, Object arg) { if (enabled(Level.DEBUG)) log(Level.DEBUG, pattern, new Object[]{arg}); }
+	public void debug(String pattern, Object arg1, Object arg2) { if (enabled(Level.DEBUG)) log(Level.DEBUG, pattern, new Object[]{arg1, arg2}); }
+	public void debug(String pattern, Object... args) { log(Level.DEBUG, pattern, args); }
+
+	public void info(String pattern) { log(Level.INFO, pattern, null); }
+	public void info(String pattern, Object arg) { if (enabled(Level.INFO)) log(Level.INFO, pattern, new Object[]{arg}); }
+	public void info(String pattern, Object arg1, Object arg2) { if (enabled(Level.INFO)) log(Level.INFO, pattern, new Object[]{arg1, arg2}); }
+	public void info(String pattern, Object... args) { log(Level.INFO, pattern, args); }
+
+	public void warn(String pattern) { log(Level.WARN, pattern, null); }
+	public void warn(String pattern, Object arg) { if (enabled(Level.WARN)) log(Level.WARN, pattern, new Object[]{arg}); }
+	public void warn(String pattern, Object arg1, Object arg2) { if (enabled(Level.WARN)) log(Level.WARN, pattern, new Object[]{arg1, arg2}); }
+	public void warn(String pattern, Object... args) { log(Level.WARN, pattern, args); }
+
+	public void error(String pattern) { log(Level.ERROR, pattern, null); }
+	public void error(String pattern, Object arg) { if (enabled(Level.ERROR)) log(Level.ERROR, pattern, new Object[]{arg}); }
+	public void error(String pattern, Object arg1, Object arg2) { if (enabled(Level.ERROR)) log(Level.ERROR, pattern, new Object[]{arg1, arg2}); }
+	public void error(String pattern, Object... args) { log(Level.ERROR, pattern, args); }
+
+	private static boolean enabled(Level level) {
+		return level.compareTo(LEVEL) >= 0 && LEVEL != Level.OFF;
+	}
+
+	private void log(Level level, String pattern, Object[] args) {
+		if (!enabled(level)) {
+			return;
+		}
+		if (level.compareTo(Level.WARN) < 0 && queue.size() >= LOW_PRIORITY_LIMIT) {
+			dropped.incrementAndGet();
+			return;
+		}
+		Record record = new Record(level, name, Thread.currentThread().getName(), System.currentTimeMillis(), pattern, args);
+		if (!queue.offer(record)) {
+			dropped.incrementAndGet();
+		}
+	}
+
+	private static void writeLoop() {
+		try {
+			while (true) {
+				write(queue.take());
+				Record next;
+				while ((next = queue.poll()) != null) {
+					write(next);
+				}
+				reportDropped();
+				System.out.flush();
+				System.err.flush();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes what is still queued on the calling thread, giving up after a second;
+	 * used at shutdown so the last records are not lost with the daemon writer
+	 */
+	public static void flush() {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+		Record next;
+		while (System.nanoTime() < deadline && (next = queue.poll()) != null) {
+			write(next);
+		}
+		reportDropped();
+		System.out.flush();
+		System.err.flush();
+	}
+
+	private static void reportDropped() {
+		long count = dropped.getAndSet(0);
+		if (count > 0) {
+			write(new Record(Level.WARN, "Log", "quiz-log", System.currentTimeMillis(),
+				"Dropped {} log records under load", new Object[]{count}));
+		}
+	}
+
+	private static void write(Record record) {
+		StringBuilder line = new StringBuilder(128)
+			.append(Instant.ofEpochMilli(record.timeMillis)).append(' ')
+			.append(record.level).append(record.level.name().length() == 4 ? "  [" : " [")
+			.append(record.thread).append("] ")
+			.append(record.logger).append(" - ");
+		Throwable thrown = format(line, record.pattern, record.args);
+
+		PrintStream out = record.level.compareTo(Level.WARN) >= 0 ? System.err : System.out;
+		out.println(line);
+		if (thrown != null) {
+			thrown.printStackTrace(out);
+		}
+	}
+
+	/**
+	 * Appends the pattern with each {} replaced by the next argument; returns an unused
+	 * trailing Throwable, if any
+	 */
+	private static Throwable format(StringBuilder line, String pattern, Object[] args) {
+		int used = 0;
+		int start = 0;
+		int n = args == null ? 0 : args.length;
+		int at;
+		while (used < n && (at = pattern.indexOf("{}", start)) >= 0) {
+			line.append(pattern, start, at).append(args[used++]);
+			start = at + 2;
+		}
+		line.append(pattern, start, pattern.length());
+		if (used < n && args[n - 1] instanceof Throwable) {
+			return (Throwable) args[n - 1];
+		}
+		return null;
+	}
+
+	private static final class Record {
+		final Level level;
+		final String logger;
+		final String thread;
+		final long timeMillis;
+		final String pattern;
+		final Object[] args;
+
+		Record(Level level, String logger, String thread, long timeMillis, String pattern, Object[] args) {
+			this.level = level;
+			this.logger = logger;
+			this.thread = thread;
+			this.timeMillis = timeMillis;
+			this.pattern = pattern;
+			this.args = args;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package server;
+
+import common.BinaryWireFormat;
+import common.Message;
+import common.WireFormat;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * A ClusterBackend for several nodes in one process, for tests and the multi-node
+ * bench. Everything still goes through the binary wire format, so what works here
+ * also survives a networked backend, and each node receives events on its own thread,
+ * asynchronously, as it would from a network.
+ *
+ *   LoopbackClusterBackend.Hub hub = new LoopbackClusterBackend.Hub();
+ *   new ServerContext(dao, hub.join());   // once per node
+ */
+public class LoopbackClusterBackend implements ClusterBackend {
+	private static final Log LOG = Log.get(LoopbackClusterBackend.class);
+	private static final WireFormat FORMAT = BinaryWireFormat.INSTANCE;
+
+	/**
+	 * Stands in for the shared store and message bus
+	 */
+	public static class Hub {
+		private final Map<String, byte[]> sessions = new ConcurrentHashMap<>();
+		private final List<LoopbackClusterBackend> nodes = new CopyOnWriteArrayList<>();
+
+		public LoopbackClusterBackend join() {
+			LoopbackClusterBackend node = new LoopbackClusterBackend(this, nodes.size() + 1);
+			nodes.add(node);
+			return node;
+		}
+	}
+
+	private final Hub hub;
+	private final ExecutorService delivery;
+	private volatile Consumer<Message> listener = event -> {};
+
+	private LoopbackClusterBackend(Hub hub, int nodeNumber) {
+		this.hub = hub;
+		this.delivery = Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "quiz-cluster-" + nodeNumber);
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	@Override
+	public void publish(Message event) {
+		byte[] frame = FORMAT.encode(event);
+		for (LoopbackClusterBackend node : hub.nodes) {
+			if (node != this) {
+				node.deliver(frame);
+			}
+		}
+	}
+
+	private void deliver(byte[] frame) {
+		if (delivery.isShutdown()) {
+			return;
+		}
+		delivery.execute(() -> {
+			try {
+				listener.accept(decode(frame));
+			} catch (Exception e) {
+				LOG.warn("Cluster event failed", e);
+			}
+		});
+	}
+
+	@Override
+	public void setListener(Consumer<Message> listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public void putSession(String token, Message state) {
+		hub.sessions.put(token, FORMAT.encode(state));
+	}
+
+	@Override
+	public Message getSession(String token) {
+		byte[] frame = hub.sessions.get(token);
+		if (frame == null) {
+			return null;
+		}
+		try {
+			return decode(frame);
+		} catch (IOException e) {
+			LOG.warn("Unreadable session state: {}", e.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	public void removeSession(String token) {
+		hub.sessions.remove(token);
+	}
+
+	@Override
+	public void close() {
+		hub.nodes.remove(this);
+		delivery.shutdownNow();
+	}
+
+	private static Message decode(byte[] frame) throws IOException {
+		return FORMAT.decodeFrame(frame, 0, frame.length);
+	}
+}
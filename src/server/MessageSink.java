@@ -0,0 +1,29 @@
+package server;
+
+import common.Message;
+import common.WireFormat;
+
+/**
+ * Outbound side of a single client connection, independent of the transport
+ */
+interface MessageSink {
+	/**
+	 * Sends a message tagged with the id of the request it answers (0 = untagged)
+	 */
+	void send(Message message, int requestId);
+
+	/**
+	 * Sends an untagged push for a subscription. Must not block on a slow client: the
+	 * caller is the SubscriptionHub publisher, shared by every subscriber.
+	 */
+	default void push(Message message) {
+		send(message, 0);
+	}
+
+	/**
+	 * Switches the format used for messages sent after this call
+	 */
+	void setFormat(WireFormat format);
+
+	void close();
+}
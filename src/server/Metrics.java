@@ -0,0 +1,173 @@
+package server;
+
+import common.Protocol;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-command request metrics plus a few server gauges, exported over JMX and as
+ * Prometheus-style text by AdminEndpoint.
+ *
+ * The command table is fixed at construction (unknown commands count as OTHER), so
+ * lookups need no locking, and all recording is done with atomics and LongAdders.
+ * Database and serialization time are accumulated per thread while a request is
+ * handled: ConnectionPool adds the time each borrowed connection is held and the
+ * transports add the time spent encoding responses.
+ */
+public class Metrics {
+	private static final Log LOG = Log.get(Metrics.class);
+	private static final String OTHER = "OTHER";
+	private static final String[] COMMANDS = {
+		Protocol.HELLO, Protocol.LOGIN, Protocol.RESUME, Protocol.REGISTER, Protocol.GET_ACTIVE_QUIZZES, Protocol.CREATE_QUIZ,
+		Protocol.START_QUIZ, Protocol.SUBMIT_ANSWER, Protocol.FINISH_QUIZ, Protocol.GET_LEADERBOARD,
+		Protocol.GET_MY_RESULTS, Protocol.GET_ITEM_ANALYSIS, Protocol.DELETE_QUIZ, Protocol.SUBSCRIBE, Protocol.UNSUBSCRIBE,
+		Protocol.PING, Protocol.DISCONNECT, OTHER
+	};
+	private static final int DB = 0;
+	private static final int SERIALIZATION = 1;
+
+	// Time spent in the current request on this thread, in nanoseconds
+	private static final ThreadLocal<long[]> phaseNanos = ThreadLocal.withInitial(() -> new long[2]);
+
+	private final Map<String, CommandMetrics> commands;
+	private final Map<String, LongSupplier> gauges = Collections.synchronizedMap(new LinkedHashMap<>());
+	private final List<ObjectName> registered = new ArrayList<>();
+
+	public Metrics() {
+		Map<String, CommandMetrics> map = new LinkedHashMap<>();
+		for (String command : COMMANDS) {
+			map.put(command, new CommandMetrics(command));
+		}
+		this.commands = Collections.unmodifiableMap(map);
+	}
+
+	public CommandMetrics command(String command) {
+		CommandMetrics metrics = commands.get(command);
+		return metrics != null ? metrics : commands.get(OTHER);
+	}
+
+	/**
+	 * Adds a value read at scrape time, e.g. cache size; name it in Prometheus style
+	 */
+	public void addGauge(String name, LongSupplier value) {
+		gauges.put(name, value);
+	}
+
+	/**
+	 * Clears this thread's database / serialization time; call when a request starts
+	 */
+	static void startRequest() {
+		long[] phases = phaseNanos.get();
+		phases[DB] = 0;
+		phases[SERIALIZATION] = 0;
+	}
+
+	static void addDbTime(long nanos) {
+		phaseNanos.get()[DB] += nanos;
+	}
+
+	static void addSerializationTime(long nanos) {
+		phaseNanos.get()[SERIALIZATION] += nanos;
+	}
+
+	static long dbTime() {
+		return phaseNanos.get()[DB];
+	}
+
+	static long serializationTime() {
+		return phaseNanos.get()[SERIALIZATION];
+	}
+
+	public void registerMBeans() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (CommandMetrics metrics : commands.values()) {
+			try {
+				ObjectName name = new ObjectName("quiz.server:type=Command,name=" + metrics.getCommand());
+				server.registerMBean(metrics, name);
+				registered.add(name);
+			} catch (JMException e) {
+				LOG.warn("Could not register MBean for {}: {}", metrics.getCommand(), e.getMessage());
+			}
+		}
+	}
+
+	public void unregisterMBeans() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName name : registered) {
+			try {
+				server.unregisterMBean(name);
+			} catch (JMException e) {
+				// already gone
+			}
+		}
+		registered.clear();
+	}
+
+	/**
+	 * Prometheus text exposition format (summaries with quantiles, in seconds)
+	 */
+	public String toText() {
+		StringBuilder out = new StringBuilder(8192);
+		out.append("# TYPE quiz_requests_total counter\n");
+		for (CommandMetrics m : commands.values()) {
+			line(out, "quiz_requests_total", m.getCommand(), null, m.getRequests());
+		}
+		out.append("# TYPE quiz_request_errors_total counter\n");
+		for (CommandMetrics m : commands.values()) {
+			line(out, "quiz_request_errors_total", m.getCommand(), null, m.getErrors());
+		}
+		out.append("# TYPE quiz_requests_in_flight gauge\n");
+		for (CommandMetrics m : commands.values()) {
+			line(out, "quiz_requests_in_flight", m.getCommand(), null, m.getInFlight());
+		}
+		summary(out, "quiz_request_seconds", CommandMetrics::getTotal);
+		summary(out, "quiz_request_db_seconds", CommandMetrics::getDb);
+		summary(out, "quiz_request_serialization_seconds", CommandMetrics::getSerialization);
+
+		synchronized (gauges) {
+			for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+				out.append("# TYPE ").append(gauge.getKey()).append(" gauge\n")
+					.append(gauge.getKey()).append(' ').append(gauge.getValue().getAsLong()).append('\n');
+			}
+		}
+		return out.toString();
+	}
+
+	private void summary(StringBuilder out, String name, Function<CommandMetrics, LatencyHistogram> histogram) {
+		out.append("# TYPE ").append(name).append(" summary\n");
+		for (CommandMetrics m : commands.values()) {
+			LatencyHistogram h = histogram.apply(m);
+			if (h.getCount() == 0) {
+				continue;
+			}
+			for (String quantile : new String[]{"0.5", "0.9", "0.99", "0.999"}) {
+				line(out, name, m.getCommand(), quantile, seconds(h.percentileNanos(Double.parseDouble(quantile))));
+			}
+			line(out, name + "_sum", m.getCommand(), null, seconds(h.getSumNanos()));
+			line(out, name + "_count", m.getCommand(), null, h.getCount());
+		}
+	}
+
+	private static void line(StringBuilder out, String name, String command, String quantile, Object value) {
+		out.append(name).append("{command=\"").append(command).append('"');
+		if (quantile != null) {
+			out.append(",quantile=\"").append(quantile).append('"');
+		}
+		out.append("} ").append(value).append('\n');
+	}
+
+	private static String seconds(long nanos) {
+		return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+	}
+}
@@ -0,0 +1,509 @@
+package server;
+
+import common.DeflateWireFormat;
+import common.Message;
+import common.Protocol;
+import common.TextWireFormat;
+import common.WireFormat;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking transport: a few selector threads frame and decode messages for all
+ * connections, and a bounded worker pool runs the ClientHandler (and DAO) work so a
+ * slow query never stalls socket I/O. Requests of one connection run in order.
+ * Compressed frames are only framed on the selector thread; the worker inflates them.
+ */
+public class NioServerTransport implements ServerTransport {
+	private static final Log LOG = Log.get(NioServerTransport.class);
+
+	private static final long MAX_PENDING_OUTPUT = 16L * 1024 * 1024;
+	// Pause after a failed accept (e.g. out of file descriptors), doubling while it keeps failing
+	private static final long ACCEPT_BACKOFF_INITIAL_MS = 10;
+	private static final long ACCEPT_BACKOFF_MAX_MS = 1000;
+
+	private final int port;
+	private final ServerContext context;
+	private final int ioThreads;
+	private final ThreadPoolExecutor workers;
+	private ServerSocketChannel serverChannel;
+	private SelectorLoop[] loops;
+	private Thread acceptThread;
+	private volatile boolean running = false;
+
+	public NioServerTransport(int port, ServerContext context, int ioThreads, int workerThreads, int workerQueue) {
+		this.port = port;
+		this.context = context;
+		this.ioThreads = ioThreads;
+		AtomicInteger workerCount = new AtomicInteger();
+		this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS,
+			new ArrayBlockingQueue<>(workerQueue),
+			r -> {
+				Thread t = new Thread(r, "quiz-worker-" + workerCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+	}
+
+	@Override
+	public void start() throws IOException {
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(port), 1024);
+		running = true;
+
+		loops = new SelectorLoop[ioThreads];
+		for (int i = 0; i < ioThreads; i++) {
+			loops[i] = new SelectorLoop();
+			Thread t = new Thread(loops[i], "quiz-io-" + (i + 1));
+			t.setDaemon(true);
+			t.start();
+		}
+
+		acceptThread = new Thread(this::acceptLoop, "quiz-accept");
+		acceptThread.start();
+	}
+
+	private void acceptLoop() {
+		int next = 0;
+		long backoff = 0;
+		while (running) {
+			SocketChannel channel = null;
+			try {
+				channel = serverChannel.accept();
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				loops[next++ % loops.length].register(channel);
+				backoff = 0;
+			} catch (IOException e) {
+				if (channel != null) {
+					closeQuietly(channel);
+				}
+				if (!running) {
+					break;
+				}
+				// A persistent failure would otherwise spin this thread and flood the log
+				backoff = backoff == 0 ? ACCEPT_BACKOFF_INITIAL_MS : Math.min(backoff * 2, ACCEPT_BACKOFF_MAX_MS);
+				LOG.warn("Error accepting connection, retrying in {} ms: {}", backoff, e.getMessage());
+				try {
+					Thread.sleep(backoff);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+		try {
+			if (serverChannel != null) {
+				serverChannel.close();
+			}
+		} catch (IOException e) {
+			LOG.warn("Error closing server channel: {}", e.getMessage());
+		}
+		if (loops != null) {
+			for (SelectorLoop loop : loops) {
+				loop.shutdown();
+			}
+		}
+		workers.shutdown();
+	}
+
+	private final class SelectorLoop implements Runnable {
+		private final Selector selector;
+		private final Queue<SocketChannel> pendingRegistrations = new ConcurrentLinkedQueue<>();
+		private final Queue<NioConnection> pendingFlushes = new ConcurrentLinkedQueue<>();
+		private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+
+		SelectorLoop() throws IOException {
+			this.selector = Selector.open();
+		}
+
+		void register(SocketChannel channel) {
+			pendingRegistrations.add(channel);
+			selector.wakeup();
+		}
+
+		void requestFlush(NioConnection connection) {
+			pendingFlushes.add(connection);
+			selector.wakeup();
+		}
+
+		void shutdown() {
+			try {
+				for (SelectionKey key : selector.keys()) {
+					key.channel().close();
+				}
+				selector.close();
+			} catch (IOException | ClosedSelectorException e) {
+				// already closed
+			}
+		}
+
+		/**
+		 * Serves its connections until the transport stops. A failure while handling one
+		 * connection closes only that connection; this thread is all the others have.
+		 */
+		@Override
+		public void run() {
+			while (running) {
+				try {
+					selector.select();
+				} catch (ClosedSelectorException e) {
+					return;
+				} catch (IOException e) {
+					if (running) {
+						LOG.error("Select failed", e);
+					}
+					continue;
+				}
+				registerPending();
+				flushPending();
+
+				Iterator<SelectionKey> keys;
+				try {
+					keys = selector.selectedKeys().iterator();
+				} catch (ClosedSelectorException e) {
+					return;
+				}
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					NioConnection connection = (NioConnection) key.attachment();
+					try {
+						if (!key.isValid()) {
+							connection.close();
+							continue;
+						}
+						if (key.isReadable()) {
+							read(connection);
+						}
+						if (key.isValid() && key.isWritable()) {
+							connection.flush();
+						}
+					} catch (RuntimeException e) {
+						fail(connection, e);
+					}
+				}
+			}
+		}
+
+		private void registerPending() {
+			SocketChannel channel;
+			while ((channel = pendingRegistrations.poll()) != null) {
+				try {
+					NioConnection connection = new NioConnection(channel, this);
+					connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+					LOG.info("Client connected address={}", channel.socket().getInetAddress());
+				} catch (IOException | RuntimeException e) {
+					closeQuietly(channel);
+				}
+			}
+		}
+
+		private void flushPending() {
+			NioConnection connection;
+			while ((connection = pendingFlushes.poll()) != null) {
+				connection.flushRequested.set(false);
+				try {
+					connection.flush();
+				} catch (RuntimeException e) {
+					fail(connection, e);
+				}
+			}
+		}
+
+		private void fail(NioConnection connection, RuntimeException e) {
+			LOG.error("Closing connection after unexpected error", e);
+			try {
+				connection.close();
+			} catch (RuntimeException closeError) {
+				closeQuietly(connection.channel);
+			}
+		}
+
+		private void read(NioConnection connection) {
+			readBuffer.clear();
+			try {
+				int n = connection.channel.read(readBuffer);
+				if (n < 0) {
+					LOG.info("Client disconnected address={}", connection.channel.socket().getInetAddress());
+					connection.close();
+					return;
+				}
+				readBuffer.flip();
+				connection.onBytes(readBuffer);
+			} catch (IOException e) {
+				LOG.info("Client disconnected: {}", e.getMessage());
+				connection.close();
+			} catch (RuntimeException e) {
+				// Decoding or negotiating a peer's bytes must never take the loop down
+				fail(connection, e);
+			}
+		}
+	}
+
+	private final class NioConnection implements MessageSink {
+		private final SocketChannel channel;
+		private final SelectorLoop loop;
+		private final ClientHandler handler;
+		private SelectionKey key;
+
+		// Undecoded inbound bytes [readStart, readEnd), only touched by the selector thread
+		private byte[] readBytes = new byte[256];
+		private int readStart = 0;
+		private int readEnd = 0;
+		private WireFormat readFormat = TextWireFormat.INSTANCE;
+		private volatile WireFormat writeFormat = TextWireFormat.INSTANCE;
+
+		private final Queue<Inbound> inbound = new ConcurrentLinkedQueue<>();
+		// Requests decoded but not yet handled; reading pauses while a client has too many queued
+		private final AtomicInteger queued = new AtomicInteger();
+		private volatile boolean readPaused = false;
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+		private final AtomicLong pendingOutput = new AtomicLong();
+		private final AtomicBoolean flushRequested = new AtomicBoolean();
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		NioConnection(SocketChannel channel, SelectorLoop loop) {
+			this.channel = channel;
+			this.loop = loop;
+			this.handler = new ClientHandler(this, context);
+		}
+
+		void onBytes(ByteBuffer buffer) {
+			append(buffer);
+			try {
+				int frameEnd;
+				while ((frameEnd = readFormat.frameEnd(readBytes, readStart, readEnd)) >= 0) {
+					if (readFormat instanceof DeflateWireFormat
+							&& ((DeflateWireFormat) readFormat).isCompressed(readBytes, readStart, frameEnd)) {
+						// Inflating may take up to a frame limit's worth of work per frame, which would
+						// hold up every connection on this loop; leave it to the worker
+						DeflateWireFormat deflate = (DeflateWireFormat) readFormat;
+						inbound.add(new Inbound(deflate, Arrays.copyOfRange(readBytes, readStart, frameEnd),
+							deflate.requestId(readBytes, readStart, frameEnd)));
+						readStart = frameEnd;
+					} else {
+						Message message = readFormat.decodeFrame(readBytes, readStart, frameEnd);
+						readStart = frameEnd;
+						// Bytes after a HELLO are already in the negotiated format, so switch
+						// here rather than waiting for the worker to handle it
+						if (Protocol.HELLO.equals(message.getCommand())) {
+							readFormat = ClientHandler.negotiate(message);
+						}
+						inbound.add(new Inbound(message));
+					}
+					queued.incrementAndGet();
+				}
+			} catch (IOException e) {
+				LOG.warn("Closing connection: {}", e.getMessage());
+				close();
+				return;
+			}
+			if (readStart == readEnd) {
+				readStart = readEnd = 0;
+			}
+			if (queued.get() >= ServerConfig.MAX_PIPELINED && !readPaused) {
+				readPaused = true;
+				// Re-check: the worker may have drained the queue before it could see the flag
+				if (queued.get() > ServerConfig.MAX_PIPELINED / 2) {
+					key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+				} else {
+					readPaused = false;
+				}
+			}
+			if (!inbound.isEmpty()) {
+				schedule();
+			}
+		}
+
+		private void append(ByteBuffer buffer) {
+			int n = buffer.remaining();
+			if (readEnd + n > readBytes.length) {
+				int pending = readEnd - readStart;
+				if (pending + n > readBytes.length) {
+					readBytes = Arrays.copyOfRange(readBytes, readStart,
+						readStart + Math.max(readBytes.length * 2, pending + n));
+				} else {
+					System.arraycopy(readBytes, readStart, readBytes, 0, pending);
+				}
+				readStart = 0;
+				readEnd = pending;
+			}
+			buffer.get(readBytes, readEnd, n);
+			readEnd += n;
+		}
+
+		private void schedule() {
+			if (!scheduled.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				workers.execute(this::drain);
+			} catch (RejectedExecutionException e) {
+				scheduled.set(false);
+				Inbound rejected;
+				while ((rejected = inbound.poll()) != null) {
+					queued.decrementAndGet();
+					send(Message.of(Protocol.ERROR, "Server busy, please retry"), rejected.requestId);
+				}
+			}
+		}
+
+		private void drain() {
+			Inbound request;
+			while (!closed.get() && (request = inbound.poll()) != null) {
+				queued.decrementAndGet();
+				Message message;
+				try {
+					message = request.decode();
+				} catch (IOException | RuntimeException e) {
+					LOG.warn("Closing connection: {}", e.getMessage());
+					close();
+					break;
+				}
+				handler.handleMessage(message);
+				if (readPaused && queued.get() <= ServerConfig.MAX_PIPELINED / 2) {
+					// flush() runs on the selector thread and restores OP_READ
+					readPaused = false;
+					if (flushRequested.compareAndSet(false, true)) {
+						loop.requestFlush(this);
+					}
+				}
+			}
+			scheduled.set(false);
+			if (!closed.get() && !inbound.isEmpty()) {
+				schedule();
+			}
+		}
+
+		@Override
+		public void send(Message message, int requestId) {
+			if (closed.get()) {
+				return;
+			}
+			long encodeStart = System.nanoTime();
+			byte[] bytes = writeFormat.encode(message, requestId);
+			Metrics.addSerializationTime(System.nanoTime() - encodeStart);
+			if (pendingOutput.addAndGet(bytes.length) > MAX_PENDING_OUTPUT) {
+				LOG.warn("Closing connection: client is not reading responses");
+				close();
+				return;
+			}
+			outbound.add(ByteBuffer.wrap(bytes));
+			if (flushRequested.compareAndSet(false, true)) {
+				loop.requestFlush(this);
+			}
+		}
+
+		@Override
+		public void setFormat(WireFormat format) {
+			writeFormat = format;
+		}
+
+		// Selector thread only
+		void flush() {
+			if (closed.get() || key == null || !key.isValid()) {
+				return;
+			}
+			try {
+				ByteBuffer buffer;
+				while ((buffer = outbound.peek()) != null) {
+					int written = channel.write(buffer);
+					pendingOutput.addAndGet(-written);
+					if (buffer.hasRemaining()) {
+						key.interestOps(readOps() | SelectionKey.OP_WRITE);
+						return;
+					}
+					outbound.poll();
+				}
+				key.interestOps(readOps());
+			} catch (IOException e) {
+				close();
+			}
+		}
+
+		private int readOps() {
+			return readPaused ? 0 : SelectionKey.OP_READ;
+		}
+
+		@Override
+		public void close() {
+			// Called from the selector thread and from workers (send on overflow); only one runs it
+			if (!closed.compareAndSet(false, true)) {
+				return;
+			}
+			closeQuietly(channel);
+			outbound.clear();
+			inbound.clear();
+			handler.connectionClosed();
+		}
+	}
+
+	/**
+	 * A request waiting for the worker: decoded, or a compressed frame still to inflate
+	 */
+	private static final class Inbound {
+		private final Message message;
+		private final WireFormat format;
+		private final byte[] frame;
+		private final int requestId;
+
+		Inbound(Message message) {
+			this.message = message;
+			this.format = null;
+			this.frame = null;
+			this.requestId = message.getRequestId();
+		}
+
+		Inbound(WireFormat format, byte[] frame, int requestId) {
+			this.message = null;
+			this.format = format;
+			this.frame = frame;
+			this.requestId = requestId;
+		}
+
+		Message decode() throws IOException {
+			if (message != null) {
+				return message;
+			}
+			Message decoded = format.decodeFrame(frame, 0, frame.length);
+			// The selector switches formats when it decodes a HELLO, which it cannot do here
+			if (Protocol.HELLO.equals(decoded.getCommand())) {
+				throw new IOException("Compressed HELLO");
+			}
+			return decoded;
+		}
+	}
+
+	private static void closeQuietly(SocketChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// ignore close errors
+		}
+	}
+}
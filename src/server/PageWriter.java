@@ -0,0 +1,65 @@
+package server;
+
+import common.Message;
+import common.Protocol;
+
+import java.util.function.Consumer;
+
+/**
+ * Writes one page of a paged response while its rows are still being read: rows are
+ * sent in ROWS frames of STREAM_CHUNK_ROWS, so neither side holds the whole page as a
+ * single message, and finish() sends PAGE_END|||nextAfterId (then the version, for a
+ * versioned read).
+ */
+final class PageWriter {
+	private final Consumer<Message> sender;
+	private final int limit;
+	private Message chunk;
+	private int rows = 0;
+	private int lastKey = 0;
+
+	PageWriter(Consumer<Message> sender, int limit) {
+		this.sender = sender;
+		this.limit = limit;
+	}
+
+	/**
+	 * Clamps a requested page size to 1..PAGE_SIZE_MAX
+	 */
+	static int pageSize(int requested) {
+		return Math.max(1, Math.min(requested, ServerConfig.PAGE_SIZE_MAX));
+	}
+
+	/**
+	 * Adds a row; key is what the next page starts after (the row's id)
+	 */
+	void add(int key, Object... row) {
+		if (chunk == null) {
+			chunk = new Message(Protocol.ROWS);
+		}
+		chunk.addRow(row);
+		lastKey = key;
+		rows++;
+		if (chunk.size() >= ServerConfig.STREAM_CHUNK_ROWS) {
+			sender.accept(chunk);
+			chunk = null;
+		}
+	}
+
+	void finish() {
+		finish(null);
+	}
+
+	void finish(String version) {
+		if (chunk != null) {
+			sender.accept(chunk);
+			chunk = null;
+		}
+		// A short page is the last one; a full page may be followed by an empty one
+		Message end = new Message(Protocol.PAGE_END).add(rows < limit ? 0 : lastKey);
+		if (version != null) {
+			end.add(version);
+		}
+		sender.accept(end);
+	}
+}
@@ -0,0 +1,96 @@
+package server;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Salted PBKDF2-HMAC-SHA256 password hashes, stored as
+ * pbkdf2$&lt;iterations&gt;$&lt;salt, base64&gt;$&lt;hash, base64&gt; in users.password.
+ *
+ * Rows that predate hashing hold the plain password; verify() still accepts them
+ * (see isHashed) so CredentialService can replace them on the next successful login.
+ * Hashing is deliberately slow: call it from CredentialService's executor, not from
+ * request threads.
+ */
+public final class PasswordHasher {
+	private static final String PREFIX = "pbkdf2$";
+	private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+	private static final int SALT_BYTES = 16;
+	private static final int HASH_BITS = 256;
+
+	private final int iterations;
+	private final SecureRandom random = new SecureRandom();
+
+	public PasswordHasher(int iterations) {
+		this.iterations = iterations;
+	}
+
+	public String hash(String password) {
+		byte[] salt = new byte[SALT_BYTES];
+		random.nextBytes(salt);
+		byte[] hash = pbkdf2(password, salt, iterations);
+		Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+		return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash);
+	}
+
+	public static boolean isHashed(String stored) {
+		return stored != null && stored.startsWith(PREFIX);
+	}
+
+	/**
+	 * Checks a password against a stored hash, or against a legacy plain-text value
+	 */
+	public boolean verify(String password, String stored) {
+		if (stored == null || password == null) {
+			return false;
+		}
+		if (!isHashed(stored)) {
+			return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+				stored.getBytes(StandardCharsets.UTF_8));
+		}
+		String[] parts = stored.split("\\$");
+		if (parts.length != 4) {
+			return false;
+		}
+		try {
+			int storedIterations = Integer.parseInt(parts[1]);
+			byte[] salt = Base64.getDecoder().decode(parts[2]);
+			byte[] expected = Base64.getDecoder().decode(parts[3]);
+			return MessageDigest.isEqual(pbkdf2(password, salt, storedIterations), expected);
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Whether a stored value should be replaced: plain text, or hashed with fewer iterations
+	 * than currently configured
+	 */
+	public boolean needsRehash(String stored) {
+		if (!isHashed(stored)) {
+			return true;
+		}
+		String[] parts = stored.split("\\$");
+		try {
+			return parts.length != 4 || Integer.parseInt(parts[1]) < iterations;
+		} catch (NumberFormatException e) {
+			return true;
+		}
+	}
+
+	private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+		PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+		try {
+			return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(ALGORITHM + " is not available", e);
+		} finally {
+			spec.clearPassword();
+		}
+	}
+}
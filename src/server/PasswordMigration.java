@@ -0,0 +1,42 @@
+package server;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Replaces the plain-text passwords left in the users table with PBKDF2 hashes.
+ * Logging in also migrates a user (see CredentialService), so this is only needed to
+ * clear out accounts that have not logged in since hashing was introduced. Safe to run
+ * while the server is up and to re-run after an interruption.
+ *
+ * Usage: java server.PasswordMigration [batchSize]
+ */
+public final class PasswordMigration {
+	private static final Log LOG = Log.get(PasswordMigration.class);
+
+	private PasswordMigration() {}
+
+	public static void main(String[] args) throws SQLException {
+		int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		QuizDAO dao = new QuizDAO();
+		PasswordHasher hasher = new PasswordHasher(ServerConfig.PBKDF2_ITERATIONS);
+
+		int migrated = 0;
+		int lastUserId = 0;
+		try {
+			Map<Integer, String> batch;
+			while (!(batch = dao.getUnhashedPasswords(lastUserId, batchSize)).isEmpty()) {
+				for (Map.Entry<Integer, String> row : batch.entrySet()) {
+					dao.updatePasswordHash(row.getKey(), hasher.hash(row.getValue()));
+					lastUserId = row.getKey();
+					migrated++;
+				}
+				LOG.info("Hashed {} passwords so far", migrated);
+			}
+			LOG.info("Password migration complete migrated={}", migrated);
+		} finally {
+			DatabaseConnection.closeConnection();
+			Log.flush();
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package server;
+
+import common.Message;
+import model.Question;
+import model.Quiz;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of quizzes with their questions, keyed by quiz id.
+ * Concurrent misses for the same quiz share one database load, and the least
+ * recently used quiz is evicted once the cache is full.
+ */
+public class QuizCache {
+	private final QuizRepository dao;
+	private final int maxEntries;
+	private final Map<Integer, CompletableFuture<Entry>> entries = new ConcurrentHashMap<>();
+	private final AtomicLong clock = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public QuizCache(QuizRepository dao, int maxEntries) {
+		this.dao = dao;
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Returns the cached quiz, loading it on a miss, or null if the quiz does not exist
+	 */
+	public Entry get(int quizId) throws SQLException {
+		CompletableFuture<Entry> future = entries.get(quizId);
+		if (future == null) {
+			CompletableFuture<Entry> loading = new CompletableFuture<>();
+			future = entries.putIfAbsent(quizId, loading);
+			if (future == null) {
+				misses.incrementAndGet();
+				load(quizId, loading);
+				future = loading;
+			} else {
+				hits.incrementAndGet();
+			}
+		} else {
+			hits.incrementAndGet();
+		}
+
+		try {
+			Entry entry = future.get();
+			if (entry != null) {
+				entry.lastAccess = clock.incrementAndGet();
+			}
+			return entry;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while loading quiz " + quizId, e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SQLException) {
+				throw (SQLException) cause;
+			}
+			throw new SQLException("Failed to load quiz " + quizId, cause);
+		}
+	}
+
+	private void load(int quizId, CompletableFuture<Entry> loading) {
+		try {
+			Quiz quiz = dao.getQuizWithQuestions(quizId);
+			if (quiz == null) {
+				// Don't remember misses: the id may be created later
+				entries.remove(quizId, loading);
+				loading.complete(null);
+				return;
+			}
+			loading.complete(new Entry(quiz, clock.incrementAndGet()));
+			evictIfFull();
+		} catch (SQLException | RuntimeException e) {
+			entries.remove(quizId, loading);
+			loading.completeExceptionally(e);
+		}
+	}
+
+	private void evictIfFull() {
+		while (entries.size() > maxEntries) {
+			Integer oldestId = null;
+			long oldestAccess = Long.MAX_VALUE;
+			for (Map.Entry<Integer, CompletableFuture<Entry>> e : entries.entrySet()) {
+				Entry entry = e.getValue().getNow(null);
+				if (entry != null && entry.lastAccess < oldestAccess) {
+					oldestAccess = entry.lastAccess;
+					oldestId = e.getKey();
+				}
+			}
+			if (oldestId == null) {
+				return;
+			}
+			entries.remove(oldestId);
+		}
+	}
+
+	public void invalidate(int quizId) {
+		entries.remove(quizId);
+	}
+
+	public long getHits() { return hits.get(); }
+	public long getMisses() { return misses.get(); }
+	public int size() { return entries.size(); }
+
+	/**
+	 * A cached quiz plus its compiled answer key and pre-serialized QUIZ_DATA responses.
+	 * The quiz is shared between connections and must be treated as read-only.
+	 */
+	public static class Entry {
+		private final Quiz quiz;
+		private final AnswerKey answerKey;
+		private final String version;
+		private volatile Message quizDataMessage;
+		// The same, ending with the version, for clients that cache it
+		private volatile Message versionedQuizDataMessage;
+		private volatile long lastAccess;
+
+		Entry(Quiz quiz, long lastAccess) {
+			this.quiz = quiz;
+			this.answerKey = AnswerKey.compile(quiz);
+			this.version = fingerprint(quiz);
+			this.lastAccess = lastAccess;
+		}
+
+		public Quiz getQuiz() { return quiz; }
+		public AnswerKey getAnswerKey() { return answerKey; }
+
+		/**
+		 * Version of the QUIZ_DATA a client sees (see Protocol.NOT_MODIFIED)
+		 */
+		public String getVersion() { return version; }
+
+		public Message getQuizDataMessage() { return quizDataMessage; }
+		public void setQuizDataMessage(Message quizDataMessage) { this.quizDataMessage = quizDataMessage; }
+
+		public Message getVersionedQuizDataMessage() { return versionedQuizDataMessage; }
+		public void setVersionedQuizDataMessage(Message message) { this.versionedQuizDataMessage = message; }
+	}
+
+	/**
+	 * Quizzes cannot be edited, so instead of a counter a quiz's version is a 64-bit FNV-1a
+	 * hash of what QUIZ_DATA shows: it is the same on every node and after restarts and
+	 * reloads, and only differs if a quiz id comes back with other content (a new database).
+	 */
+	static String fingerprint(Quiz quiz) {
+		long hash = 0xcbf29ce484222325L;
+		hash = fnv(hash, String.valueOf(quiz.getQuizId()));
+		hash = fnv(hash, quiz.getQuizName());
+		hash = fnv(hash, String.valueOf(quiz.getTotalQuestions()));
+		hash = fnv(hash, String.valueOf(quiz.getTimeLimit()));
+		for (Question q : quiz.getQuestions()) {
+			hash = fnv(hash, String.valueOf(q.getQuestionId()));
+			hash = fnv(hash, q.getQuestionText());
+			hash = fnv(hash, q.getOptionA());
+			hash = fnv(hash, q.getOptionB());
+			hash = fnv(hash, q.getOptionC());
+			hash = fnv(hash, q.getOptionD());
+		}
+		return Long.toHexString(hash);
+	}
+
+	private static long fnv(long hash, String value) {
+		if (value != null) {
+			for (int i = 0; i < value.length(); i++) {
+				hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+			}
+		}
+		// Separator, so ("ab", "c") and ("a", "bc") differ
+		return (hash ^ 0xff) * 0x100000001b3L;
+	}
+}
@@ -1,8 +1,10 @@
 package server;
 
+import model.ItemStats;
 import model.Question;
 import model.Quiz;
 import model.QuizAttempt;
+import model.StudentAnswer;
 import model.User;
 
 import java.sql.Connection;
@@ -10,31 +12,85 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-
-public class QuizDAO {
-	public User authenticateUser(String username, String password) throws SQLException {
-		String query = "SELECT * FROM users WHERE username = ? AND password = ?";
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * QuizRepository on the MySQL schema in database/quiz_schema.sql, using pooled
+ * connections from DatabaseConnection.
+ */
+public class QuizDAO implements QuizRepository {
+	private static final Log LOG = Log.get(QuizDAO.class);
+	// Question rows sent per executeBatch when creating quizzes
+	private static final int QUESTION_BATCH_ROWS = 1000;
+
+	/**
+	 * Looks a user up for login, including the stored password hash (see PasswordHasher)
+	 */
+	@Override
+	public User findUserByUsername(String username) throws SQLException {
+		String query = "SELECT user_id, username, password, full_name, role FROM users WHERE username = ?";
 		try (Connection conn = DatabaseConnection.getConnection();
 			 PreparedStatement stmt = conn.prepareStatement(query)) {
 
 			stmt.setString(1, username);
-			stmt.setString(2, password);
 
 			ResultSet rs = stmt.executeQuery();
 			if (rs.next()) {
-				return new User(
+				User user = new User(
 					rs.getInt("user_id"),
 					rs.getString("username"),
 					rs.getString("full_name"),
 					rs.getString("role")
 				);
+				user.setPassword(rs.getString("password"));
+				return user;
 			}
 		}
 		return null;
 	}
 
+	@Override
+	public void updatePasswordHash(int userId, String hash) throws SQLException {
+		String query = "UPDATE users SET password = ? WHERE user_id = ?";
+		try (Connection conn = DatabaseConnection.getConnection();
+			 PreparedStatement stmt = conn.prepareStatement(query)) {
+
+			stmt.setString(1, hash);
+			stmt.setInt(2, userId);
+			stmt.executeUpdate();
+		}
+	}
+
+	/**
+	 * Up to limit users whose password column still holds plain text, by user id
+	 */
+	public Map<Integer, String> getUnhashedPasswords(int afterUserId, int limit) throws SQLException {
+		String query = "SELECT user_id, password FROM users WHERE user_id > ? AND password NOT LIKE 'pbkdf2$%' " +
+			"ORDER BY user_id LIMIT ?";
+		Map<Integer, String> passwords = new LinkedHashMap<>();
+		try (Connection conn = DatabaseConnection.getConnection();
+			 PreparedStatement stmt = conn.prepareStatement(query)) {
+
+			stmt.setInt(1, afterUserId);
+			stmt.setInt(2, limit);
+
+			ResultSet rs = stmt.executeQuery();
+			while (rs.next()) {
+				passwords.put(rs.getInt("user_id"), rs.getString("password"));
+			}
+		}
+		return passwords;
+	}
+
+	@Override
 	public boolean registerUser(User user) throws SQLException {
 		String query = "INSERT INTO users (username, password, full_name, role) VALUES (?, ?, ?, ?)";
 		try (Connection conn = DatabaseConnection.getConnection();
@@ -49,44 +105,81 @@ public class QuizDAO {
 		}
 	}
 
-	public int createQuiz(Quiz quiz) throws SQLException {
+	/**
+	 * Inserts several quizzes and all their questions in one transaction, each table as one
+	 * JDBC batch (multi-row INSERTs with rewriteBatchedStatements). Either every quiz is
+	 * created or none is. Sets each quiz's id.
+	 *
+	 * @return generated quiz ids, in the same order as the quizzes
+	 */
+	@Override
+	public int[] createQuizzes(List<Quiz> quizzes) throws SQLException {
 		String quizQuery = "INSERT INTO quizzes (quiz_name, teacher_id, total_questions, time_limit) VALUES (?, ?, ?, ?)";
-		try (Connection conn = DatabaseConnection.getConnection();
-			 PreparedStatement stmt = conn.prepareStatement(quizQuery, Statement.RETURN_GENERATED_KEYS)) {
-
-			stmt.setString(1, quiz.getQuizName());
-			stmt.setInt(2, quiz.getTeacherId());
-			stmt.setInt(3, quiz.getTotalQuestions());
-			stmt.setInt(4, quiz.getTimeLimit());
-
-			int affectedRows = stmt.executeUpdate();
-			if (affectedRows > 0) {
-				ResultSet rs = stmt.getGeneratedKeys();
-				if (rs.next()) {
-					int quizId = rs.getInt(1);
-
-					String questionQuery = "INSERT INTO questions (quiz_id, question_text, option_a, option_b, option_c, option_d, correct_answer, question_order) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-					try (PreparedStatement qStmt = conn.prepareStatement(questionQuery)) {
-						for (int i = 0; i < quiz.getQuestions().size(); i++) {
-							Question q = quiz.getQuestions().get(i);
-							qStmt.setInt(1, quizId);
-							qStmt.setString(2, q.getQuestionText());
-							qStmt.setString(3, q.getOptionA());
-							qStmt.setString(4, q.getOptionB());
-							qStmt.setString(5, q.getOptionC());
-							qStmt.setString(6, q.getOptionD());
-							qStmt.setString(7, q.getCorrectAnswer());
-							qStmt.setInt(8, i + 1);
-							qStmt.executeUpdate();
-						}
+		try (Connection conn = DatabaseConnection.getConnection()) {
+			conn.setAutoCommit(false);
+			try (PreparedStatement stmt = conn.prepareStatement(quizQuery, Statement.RETURN_GENERATED_KEYS)) {
+				for (Quiz quiz : quizzes) {
+					stmt.setString(1, quiz.getQuizName());
+					stmt.setInt(2, quiz.getTeacherId());
+					stmt.setInt(3, quiz.getTotalQuestions());
+					stmt.setInt(4, quiz.getTimeLimit());
+					stmt.addBatch();
+				}
+				stmt.executeBatch();
+
+				int[] ids = new int[quizzes.size()];
+				int i = 0;
+				try (ResultSet rs = stmt.getGeneratedKeys()) {
+					while (rs.next() && i < ids.length) {
+						ids[i++] = rs.getInt(1);
 					}
-					return quizId;
 				}
+				if (i != ids.length) {
+					throw new SQLException("Expected " + ids.length + " generated keys but got " + i);
+				}
+				saveQuestions(conn, quizzes, ids);
+				conn.commit();
+				for (int q = 0; q < ids.length; q++) {
+					quizzes.get(q).setQuizId(ids[q]);
+				}
+				return ids;
+			} catch (SQLException e) {
+				conn.rollback();
+				throw e;
 			}
 		}
-		return -1;
 	}
 
+	private void saveQuestions(Connection conn, List<Quiz> quizzes, int[] quizIds) throws SQLException {
+		String query = "INSERT INTO questions (quiz_id, question_text, option_a, option_b, option_c, option_d, correct_answer, question_order) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			int rows = 0;
+			for (int i = 0; i < quizzes.size(); i++) {
+				List<Question> questions = quizzes.get(i).getQuestions();
+				for (int order = 0; order < questions.size(); order++) {
+					Question q = questions.get(order);
+					stmt.setInt(1, quizIds[i]);
+					stmt.setString(2, q.getQuestionText());
+					stmt.setString(3, q.getOptionA());
+					stmt.setString(4, q.getOptionB());
+					stmt.setString(5, q.getOptionC());
+					stmt.setString(6, q.getOptionD());
+					stmt.setString(7, q.getCorrectAnswer());
+					stmt.setInt(8, order + 1);
+					stmt.addBatch();
+					// Bounds the size of each multi-row INSERT on large imports
+					if (++rows % QUESTION_BATCH_ROWS == 0) {
+						stmt.executeBatch();
+					}
+				}
+			}
+			if (rows % QUESTION_BATCH_ROWS != 0) {
+				stmt.executeBatch();
+			}
+		}
+	}
+
+	@Override
 	public List<Quiz> getActiveQuizzes() throws SQLException {
 		List<Quiz> quizzes = new ArrayList<>();
 		String query = "SELECT q.*, u.full_name as teacher_name FROM quizzes q " +
@@ -98,20 +191,69 @@ public class QuizDAO {
 			 ResultSet rs = stmt.executeQuery(query)) {
 
 			while (rs.next()) {
-				Quiz quiz = new Quiz();
-				quiz.setQuizId(rs.getInt("quiz_id"));
-				quiz.setQuizName(rs.getString("quiz_name"));
-				quiz.setTeacherId(rs.getInt("teacher_id"));
-				quiz.setTeacherName(rs.getString("teacher_name"));
-				quiz.setTotalQuestions(rs.getInt("total_questions"));
-				quiz.setTimeLimit(rs.getInt("time_limit"));
-				quiz.setActive(rs.getBoolean("is_active"));
-				quizzes.add(quiz);
+				quizzes.add(readQuizListing(rs));
 			}
 		}
 		return quizzes;
 	}
 
+	/**
+	 * Ids only grow and quizzes are never edited or reactivated, so the newest id and the
+	 * count identify the list; both come from the idx_quiz_active index alone
+	 */
+	@Override
+	public String getActiveQuizzesVersion() throws SQLException {
+		String query = "SELECT MAX(quiz_id), COUNT(*) FROM quizzes WHERE is_active = TRUE";
+		try (Connection conn = DatabaseConnection.getConnection();
+			 Statement stmt = conn.createStatement();
+			 ResultSet rs = stmt.executeQuery(query)) {
+			rs.next();
+			return rs.getInt(1) + "-" + rs.getInt(2);
+		}
+	}
+
+	/**
+	 * Streams one page of active quizzes, newest first, to the handler while the rows are
+	 * read. Keyset pagination: pass 0 for the first page, then the id of the last quiz seen,
+	 * so a page is an index range scan on idx_quiz_active (is_active, quiz_id) however deep
+	 * the user scrolls, and quizzes created meanwhile do not shift later pages.
+	 */
+	@Override
+	public void streamActiveQuizzes(int afterQuizId, int limit, Consumer<Quiz> handler) throws SQLException {
+		String query = "SELECT q.quiz_id, q.quiz_name, q.teacher_id, q.total_questions, q.time_limit, q.is_active, " +
+			"u.full_name as teacher_name FROM quizzes q " +
+			"JOIN users u ON q.teacher_id = u.user_id " +
+			"WHERE q.is_active = TRUE AND q.quiz_id < ? " +
+			"ORDER BY q.quiz_id DESC LIMIT ?";
+
+		try (Connection conn = DatabaseConnection.getConnection();
+			 PreparedStatement stmt = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+			stmt.setInt(1, afterQuizId > 0 ? afterQuizId : Integer.MAX_VALUE);
+			stmt.setInt(2, limit);
+			// Connector/J hands rows over as they arrive instead of buffering the whole result
+			stmt.setFetchSize(Integer.MIN_VALUE);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					handler.accept(readQuizListing(rs));
+				}
+			}
+		}
+	}
+
+	private static Quiz readQuizListing(ResultSet rs) throws SQLException {
+		Quiz quiz = new Quiz();
+		quiz.setQuizId(rs.getInt("quiz_id"));
+		quiz.setQuizName(rs.getString("quiz_name"));
+		quiz.setTeacherId(rs.getInt("teacher_id"));
+		quiz.setTeacherName(rs.getString("teacher_name"));
+		quiz.setTotalQuestions(rs.getInt("total_questions"));
+		quiz.setTimeLimit(rs.getInt("time_limit"));
+		quiz.setActive(rs.getBoolean("is_active"));
+		return quiz;
+	}
+
+	@Override
 	public Quiz getQuizWithQuestions(int quizId) throws SQLException {
 		Quiz quiz = null;
 		String quizQuery = "SELECT q.*, u.full_name as teacher_name FROM quizzes q " +
@@ -157,6 +299,7 @@ public class QuizDAO {
 		return quiz;
 	}
 
+	@Override
 	public boolean deleteQuiz(int quizId) throws SQLException {
 		String query = "DELETE FROM quizzes WHERE quiz_id = ?";
 		try (Connection conn = DatabaseConnection.getConnection();
@@ -166,78 +309,149 @@ public class QuizDAO {
 		}
 	}
 
+	/**
+	 * Saves one attempt with its answers, and updates best_attempts, in one transaction
+	 */
+	@Override
 	public int saveQuizAttempt(QuizAttempt attempt) throws SQLException {
+		try {
+			return saveQuizAttempts(Collections.singletonList(attempt))[0];
+		} catch (RuntimeException e) {
+			// Callers only handle SQLException; they log it with the attempt's context
+			throw new SQLException("Failed to save quiz attempt: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Inserts several attempts, and their per-question answers, in one transaction
+	 * using JDBC batches (sent as multi-row INSERTs when rewriteBatchedStatements is on).
+	 * The same transaction upserts each student's row in best_attempts, so leaderboards
+	 * never see an attempt that is missing from it.
+	 *
+	 * @return generated attempt ids, in the same order as the attempts
+	 */
+	@Override
+	public int[] saveQuizAttempts(List<QuizAttempt> attempts) throws SQLException {
 		String query = "INSERT INTO quiz_attempts (quiz_id, student_id, score, total_questions, percentage, time_taken) VALUES (?, ?, ?, ?, ?, ?)";
-		try (Connection conn = DatabaseConnection.getConnection();
-			 PreparedStatement stmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
-
-			System.out.println("DEBUG: Preparing to save QuizAttempt");
-			System.out.println("  quizId=" + attempt.getQuizId());
-			System.out.println("  studentId=" + attempt.getStudentId());
-			System.out.println("  score=" + attempt.getScore());
-			System.out.println("  totalQuestions=" + attempt.getTotalQuestions());
-			System.out.println("  percentage=" + attempt.getPercentage());
-			System.out.println("  timeTaken=" + attempt.getTimeTaken());
-
-			stmt.setInt(1, attempt.getQuizId());
-			stmt.setInt(2, attempt.getStudentId());
-			stmt.setInt(3, attempt.getScore());
-			stmt.setInt(4, attempt.getTotalQuestions());
-			stmt.setDouble(5, attempt.getPercentage());
-			stmt.setInt(6, attempt.getTimeTaken());
-
-			System.out.println("DEBUG: Executing INSERT statement...");
-			int affectedRows = stmt.executeUpdate();
-			System.out.println("DEBUG: Affected rows = " + affectedRows);
-
-			if (affectedRows > 0) {
-				ResultSet rs = stmt.getGeneratedKeys();
-				if (rs.next()) {
-					int attemptId = rs.getInt(1);
-					System.out.println("DEBUG: Successfully saved QuizAttempt with ID = " + attemptId);
-					return attemptId;
+		try (Connection conn = DatabaseConnection.getConnection()) {
+			conn.setAutoCommit(false);
+			try (PreparedStatement stmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+				for (QuizAttempt attempt : attempts) {
+					stmt.setInt(1, attempt.getQuizId());
+					stmt.setInt(2, attempt.getStudentId());
+					stmt.setInt(3, attempt.getScore());
+					stmt.setInt(4, attempt.getTotalQuestions());
+					stmt.setDouble(5, attempt.getPercentage());
+					stmt.setInt(6, attempt.getTimeTaken());
+					stmt.addBatch();
+				}
+				stmt.executeBatch();
+
+				int[] ids = new int[attempts.size()];
+				int i = 0;
+				try (ResultSet rs = stmt.getGeneratedKeys()) {
+					while (rs.next() && i < ids.length) {
+						ids[i++] = rs.getInt(1);
+					}
+				}
+				if (i != ids.length) {
+					throw new SQLException("Expected " + ids.length + " generated keys but got " + i);
 				}
-			} else {
-				System.out.println("DEBUG: Insert failed - no rows affected");
+				saveStudentAnswers(conn, attempts, ids);
+				updateBestAttempts(conn, attempts, ids);
+				conn.commit();
+				return ids;
+			} catch (SQLException e) {
+				conn.rollback();
+				throw e;
 			}
-		} catch (SQLException e) {
-			System.out.println("ERROR: SQLException in saveQuizAttempt: " + e.getMessage());
-			System.out.println("Error Code: " + e.getErrorCode());
-			System.out.println("SQL State: " + e.getSQLState());
-			e.printStackTrace();
-			throw e;
-		} catch (Exception e) {
-			System.out.println("ERROR: Unexpected exception in saveQuizAttempt: " + e.getMessage());
-			e.printStackTrace();
-			throw new SQLException("Failed to save quiz attempt: " + e.getMessage(), e);
 		}
-		return -1;
 	}
 
+	private void saveStudentAnswers(Connection conn, List<QuizAttempt> attempts, int[] attemptIds) throws SQLException {
+		String query = "INSERT INTO student_answers (attempt_id, question_id, selected_answer, is_correct, time_taken) VALUES (?, ?, ?, ?, ?)";
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			int rows = 0;
+			for (int i = 0; i < attempts.size(); i++) {
+				for (StudentAnswer answer : attempts.get(i).getAnswers()) {
+					stmt.setInt(1, attemptIds[i]);
+					stmt.setInt(2, answer.getQuestionId());
+					if (answer.getSelectedAnswer() == null) {
+						stmt.setNull(3, Types.CHAR);
+					} else {
+						stmt.setString(3, answer.getSelectedAnswer());
+					}
+					stmt.setBoolean(4, answer.isCorrect());
+					if (answer.getTimeTaken() == null) {
+						stmt.setNull(5, Types.INTEGER);
+					} else {
+						stmt.setInt(5, answer.getTimeTaken());
+					}
+					stmt.addBatch();
+					rows++;
+				}
+			}
+			if (rows > 0) {
+				stmt.executeBatch();
+			}
+		}
+	}
+
+	/**
+	 * Keeps the better of the stored and the new attempt per (quiz, student): higher score,
+	 * then less time, then the earlier attempt. MySQL applies the assignments left to right,
+	 * so attempt_id is decided first and the other columns follow it.
+	 */
+	private void updateBestAttempts(Connection conn, List<QuizAttempt> attempts, int[] attemptIds) throws SQLException {
+		String query = "INSERT INTO best_attempts (quiz_id, student_id, score, time_taken, attempt_id) VALUES (?, ?, ?, ?, ?) " +
+			"ON DUPLICATE KEY UPDATE " +
+			"attempt_id = IF(VALUES(score) > score OR (VALUES(score) = score AND VALUES(time_taken) < time_taken), " +
+			"VALUES(attempt_id), attempt_id), " +
+			"score = IF(attempt_id = VALUES(attempt_id), VALUES(score), score), " +
+			"time_taken = IF(attempt_id = VALUES(attempt_id), VALUES(time_taken), time_taken)";
+		// Rows in key order, so concurrent batches lock them in the same order
+		Integer[] order = new Integer[attempts.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.<Integer>comparingInt(i -> attempts.get(i).getQuizId())
+			.thenComparingInt(i -> attempts.get(i).getStudentId())
+			.thenComparingInt(i -> attemptIds[i]));
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			for (int i : order) {
+				QuizAttempt attempt = attempts.get(i);
+				stmt.setInt(1, attempt.getQuizId());
+				stmt.setInt(2, attempt.getStudentId());
+				stmt.setInt(3, attempt.getScore());
+				stmt.setInt(4, attempt.getTimeTaken());
+				stmt.setInt(5, attemptIds[i]);
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+		}
+	}
+
+	/**
+	 * Top 10 of best_attempts: the first rows of idx_best_rank for the quiz, so the cost
+	 * does not grow with the number of attempts. The attempt rows are then read by primary key.
+	 */
+	@Override
 	public List<QuizAttempt> getLeaderboard(int quizId) throws SQLException {
 		List<QuizAttempt> leaderboard = new ArrayList<>();
-		String query = "SELECT qa.*, u.full_name as student_name, q.quiz_name " +
-			"FROM quiz_attempts qa " +
-			"JOIN users u ON qa.student_id = u.user_id " +
-			"JOIN quizzes q ON qa.quiz_id = q.quiz_id " +
-			"WHERE qa.quiz_id = ? AND qa.attempt_id IN ( " +
-			"  SELECT attempt_id FROM ( " +
-			"    SELECT attempt_id, ROW_NUMBER() OVER ( " +
-			"      PARTITION BY student_id " +
-			"      ORDER BY score DESC, time_taken ASC " +
-			"    ) as rn " +
-			"    FROM quiz_attempts " +
-			"    WHERE quiz_id = ? " +
-			"  ) ranked WHERE rn = 1 " +
-			") " +
-			"ORDER BY qa.score DESC, qa.time_taken ASC " +
+		String query = "SELECT qa.attempt_id, qa.quiz_id, qa.student_id, qa.score, qa.total_questions, " +
+			"qa.percentage, qa.time_taken, qa.attempt_date, u.full_name as student_name, q.quiz_name " +
+			"FROM best_attempts b " +
+			"JOIN quiz_attempts qa ON qa.attempt_id = b.attempt_id " +
+			"JOIN users u ON u.user_id = b.student_id " +
+			"JOIN quizzes q ON q.quiz_id = b.quiz_id " +
+			"WHERE b.quiz_id = ? " +
+			"ORDER BY b.score DESC, b.time_taken ASC, b.attempt_id ASC " +
 			"LIMIT 10";
 
 		try (Connection conn = DatabaseConnection.getConnection();
 			 PreparedStatement stmt = conn.prepareStatement(query)) {
 
 			stmt.setInt(1, quizId);
-			stmt.setInt(2, quizId);
 			ResultSet rs = stmt.executeQuery();
 
 			while (rs.next()) {
@@ -258,13 +472,19 @@ public class QuizDAO {
 		return leaderboard;
 	}
 
+	/**
+	 * Reads idx_attempt_student_date backwards; the index holds every column selected from
+	 * quiz_attempts, so there is no sort and no lookup into the table.
+	 */
+	@Override
 	public List<QuizAttempt> getStudentResults(int studentId) throws SQLException {
 		List<QuizAttempt> results = new ArrayList<>();
-		String query = "SELECT qa.*, q.quiz_name " +
+		String query = "SELECT qa.attempt_id, qa.quiz_id, qa.student_id, qa.score, qa.total_questions, " +
+			"qa.percentage, qa.time_taken, qa.attempt_date, q.quiz_name " +
 			"FROM quiz_attempts qa " +
 			"JOIN quizzes q ON qa.quiz_id = q.quiz_id " +
 			"WHERE qa.student_id = ? " +
-			"ORDER BY qa.attempt_date DESC";
+			"ORDER BY qa.attempt_date DESC, qa.attempt_id DESC";
 
 		try (Connection conn = DatabaseConnection.getConnection();
 			 PreparedStatement stmt = conn.prepareStatement(query)) {
@@ -273,19 +493,125 @@ public class QuizDAO {
 			ResultSet rs = stmt.executeQuery();
 
 			while (rs.next()) {
-				QuizAttempt attempt = new QuizAttempt();
-				attempt.setAttemptId(rs.getInt("attempt_id"));
-				attempt.setQuizId(rs.getInt("quiz_id"));
-				attempt.setStudentId(rs.getInt("student_id"));
-				attempt.setQuizName(rs.getString("quiz_name"));
-				attempt.setScore(rs.getInt("score"));
-				attempt.setTotalQuestions(rs.getInt("total_questions"));
-				attempt.setPercentage(rs.getDouble("percentage"));
-				attempt.setTimeTaken(rs.getInt("time_taken"));
-				attempt.setAttemptDate(rs.getTimestamp("attempt_date"));
-				results.add(attempt);
+				results.add(readStudentResult(rs));
 			}
 		}
 		return results;
 	}
+
+	/**
+	 * Streams one page of a student's attempts, newest first, to the handler while the rows
+	 * are read. Pass 0 for the first page, then the id of the last attempt seen; the range
+	 * scan uses idx_attempt_student (student_id, with the attempt_id primary key).
+	 */
+	@Override
+	public void streamStudentResults(int studentId, int afterAttemptId, int limit, Consumer<QuizAttempt> handler)
+			throws SQLException {
+		String query = "SELECT qa.*, q.quiz_name " +
+			"FROM quiz_attempts qa " +
+			"JOIN quizzes q ON qa.quiz_id = q.quiz_id " +
+			"WHERE qa.student_id = ? AND qa.attempt_id < ? " +
+			"ORDER BY qa.attempt_id DESC LIMIT ?";
+
+		try (Connection conn = DatabaseConnection.getConnection();
+			 PreparedStatement stmt = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+			stmt.setInt(1, studentId);
+			stmt.setInt(2, afterAttemptId > 0 ? afterAttemptId : Integer.MAX_VALUE);
+			stmt.setInt(3, limit);
+			stmt.setFetchSize(Integer.MIN_VALUE);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					handler.accept(readStudentResult(rs));
+				}
+			}
+		}
+	}
+
+	@Override
+	public List<ItemStats> getItemStats(int quizId) throws SQLException {
+		String query = "SELECT * FROM item_stats WHERE quiz_id = ?";
+		List<ItemStats> list = new ArrayList<>();
+		try (Connection conn = DatabaseConnection.getConnection();
+			 PreparedStatement stmt = conn.prepareStatement(query)) {
+
+			stmt.setInt(1, quizId);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					ItemStats stats = new ItemStats(rs.getInt("question_id"), rs.getInt("quiz_id"));
+					stats.setResponses(rs.getLong("responses"));
+					stats.setCorrect(rs.getLong("correct"));
+					stats.setOptionCount(0, rs.getLong("count_a"));
+					stats.setOptionCount(1, rs.getLong("count_b"));
+					stats.setOptionCount(2, rs.getLong("count_c"));
+					stats.setOptionCount(3, rs.getLong("count_d"));
+					stats.setBlank(rs.getLong("blank"));
+					stats.setSumScore(rs.getLong("sum_score"));
+					stats.setSumScoreSquares(rs.getLong("sum_score_sq"));
+					stats.setSumScoreCorrect(rs.getLong("sum_score_correct"));
+					list.add(stats);
+				}
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * One batched upsert that adds to the stored totals, so several nodes can flush the
+	 * same questions without reading them first
+	 */
+	@Override
+	public void addItemStats(List<ItemStats> increments) throws SQLException {
+		if (increments.isEmpty()) {
+			return;
+		}
+		String query = "INSERT INTO item_stats (question_id, quiz_id, responses, correct, count_a, count_b, count_c, " +
+			"count_d, blank, sum_score, sum_score_sq, sum_score_correct) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+			"ON DUPLICATE KEY UPDATE responses = responses + VALUES(responses), correct = correct + VALUES(correct), " +
+			"count_a = count_a + VALUES(count_a), count_b = count_b + VALUES(count_b), " +
+			"count_c = count_c + VALUES(count_c), count_d = count_d + VALUES(count_d), blank = blank + VALUES(blank), " +
+			"sum_score = sum_score + VALUES(sum_score), sum_score_sq = sum_score_sq + VALUES(sum_score_sq), " +
+			"sum_score_correct = sum_score_correct + VALUES(sum_score_correct)";
+		try (Connection conn = DatabaseConnection.getConnection();
+			 PreparedStatement stmt = conn.prepareStatement(query)) {
+
+			for (ItemStats stats : increments) {
+				stmt.setInt(1, stats.getQuestionId());
+				stmt.setInt(2, stats.getQuizId());
+				stmt.setLong(3, stats.getResponses());
+				stmt.setLong(4, stats.getCorrect());
+				for (int option = 0; option < 4; option++) {
+					stmt.setLong(5 + option, stats.getOptionCount(option));
+				}
+				stmt.setLong(9, stats.getBlank());
+				stmt.setLong(10, stats.getSumScore());
+				stmt.setLong(11, stats.getSumScoreSquares());
+				stmt.setLong(12, stats.getSumScoreCorrect());
+				stmt.addBatch();
+			}
+			try {
+				stmt.executeBatch();
+			} catch (SQLException e) {
+				// Class 23 (foreign key): the quiz was deleted since the counts were taken; nothing to keep
+				if (e.getSQLState() == null || !e.getSQLState().startsWith("23")) {
+					throw e;
+				}
+				LOG.debug("Item stats dropped for a deleted quiz: {}", e.getMessage());
+			}
+		}
+	}
+
+	private static QuizAttempt readStudentResult(ResultSet rs) throws SQLException {
+		QuizAttempt attempt = new QuizAttempt();
+		attempt.setAttemptId(rs.getInt("attempt_id"));
+		attempt.setQuizId(rs.getInt("quiz_id"));
+		attempt.setStudentId(rs.getInt("student_id"));
+		attempt.setQuizName(rs.getString("quiz_name"));
+		attempt.setScore(rs.getInt("score"));
+		attempt.setTotalQuestions(rs.getInt("total_questions"));
+		attempt.setPercentage(rs.getDouble("percentage"));
+		attempt.setTimeTaken(rs.getInt("time_taken"));
+		attempt.setAttemptDate(rs.getTimestamp("attempt_date"));
+		return attempt;
+	}
 }
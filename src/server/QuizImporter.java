@@ -0,0 +1,188 @@
+package server;
+
+import model.Question;
+import model.Quiz;
+import model.User;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bulk-loads quizzes from a CSV question bank, one question per row:
+ *
+ *   quiz_name,time_limit,question_text,option_a,option_b,option_c,option_d,correct_answer
+ *
+ * The header row names the columns (any order). Consecutive rows with the same
+ * quiz_name form one quiz. The file is streamed twice: first to validate every row, so
+ * a bad file imports nothing, then to insert the quizzes through QuizRepository.createQuizzes,
+ * several quizzes per transaction. Only the current batch is held in memory.
+ *
+ * Usage: java server.QuizImporter file.csv teacherUsername [quizzesPerTransaction]
+ *
+ * Quizzes are written straight to the database: connected dashboards see them on their
+ * next refresh rather than as a push. The quiz list version is read from the database
+ * (QuizRepository.getActiveQuizzesVersion), so clients that cache the list see them too.
+ */
+public final class QuizImporter {
+	private static final Log LOG = Log.get(QuizImporter.class);
+	private static final String[] COLUMNS = {
+		"quiz_name", "time_limit", "question_text", "option_a", "option_b", "option_c", "option_d", "correct_answer"
+	};
+	private static final int NAME = 0, TIME_LIMIT = 1, TEXT = 2, OPTION_A = 3, CORRECT = 7;
+
+	private final QuizRepository dao;
+	private final int teacherId;
+	private final int quizzesPerTransaction;
+
+	public QuizImporter(QuizRepository dao, int teacherId, int quizzesPerTransaction) {
+		this.dao = dao;
+		this.teacherId = teacherId;
+		this.quizzesPerTransaction = Math.max(1, quizzesPerTransaction);
+	}
+
+	public static void main(String[] args) throws IOException, SQLException {
+		if (args.length < 2) {
+			System.err.println("Usage: java server.QuizImporter file.csv teacherUsername [quizzesPerTransaction]");
+			System.exit(2);
+		}
+		int perTransaction = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+		QuizDAO dao = new QuizDAO();
+		try {
+			User teacher = dao.findUserByUsername(args[1]);
+			if (teacher == null || !teacher.isTeacher()) {
+				throw new IllegalArgumentException("No teacher account named " + args[1]);
+			}
+			QuizImporter importer = new QuizImporter(dao, teacher.getUserId(), perTransaction);
+			Path file = Paths.get(args[0]);
+			int questions = importer.validate(file);
+			LOG.info("Validated {} questions in {}", questions, file);
+			long start = System.nanoTime();
+			int quizzes = importer.importFile(file);
+			LOG.info("Imported quizzes={} questions={} in {} ms", quizzes, questions, (System.nanoTime() - start) / 1_000_000);
+		} finally {
+			DatabaseConnection.closeConnection();
+			Log.flush();
+		}
+	}
+
+	/**
+	 * Checks every row without touching the database
+	 *
+	 * @return the number of questions
+	 */
+	public int validate(Path file) throws IOException {
+		int questions = 0;
+		try (CsvReader csv = open(file)) {
+			int[] columns = header(csv);
+			List<String> row;
+			while ((row = csv.next()) != null) {
+				toQuestion(row, columns, csv.getLine());
+				timeLimit(row, columns, csv.getLine());
+				questions++;
+			}
+		}
+		return questions;
+	}
+
+	/**
+	 * @return the number of quizzes created
+	 */
+	public int importFile(Path file) throws IOException, SQLException {
+		int created = 0;
+		List<Quiz> batch = new ArrayList<>(quizzesPerTransaction);
+		Quiz current = null;
+		try (CsvReader csv = open(file)) {
+			int[] columns = header(csv);
+			List<String> row;
+			while ((row = csv.next()) != null) {
+				String name = field(row, columns[NAME]);
+				if (current == null || !current.getQuizName().equals(name)) {
+					if (current != null && batch.size() == quizzesPerTransaction) {
+						created += flush(batch);
+					}
+					current = new Quiz(name, teacherId, timeLimit(row, columns, csv.getLine()));
+					batch.add(current);
+				}
+				current.addQuestion(toQuestion(row, columns, csv.getLine()));
+			}
+		}
+		return created + flush(batch);
+	}
+
+	private int flush(List<Quiz> batch) throws SQLException {
+		if (batch.isEmpty()) {
+			return 0;
+		}
+		dao.createQuizzes(batch);
+		int created = batch.size();
+		LOG.debug("Committed {} quizzes", created);
+		batch.clear();
+		return created;
+	}
+
+	private static CsvReader open(Path file) throws IOException {
+		BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+		return new CsvReader(reader);
+	}
+
+	/**
+	 * Reads the header row; returns each expected column's position in the file
+	 */
+	private static int[] header(CsvReader csv) throws IOException {
+		List<String> names = csv.next();
+		if (names == null) {
+			throw new IOException("Empty file");
+		}
+		Map<String, Integer> positions = new HashMap<>();
+		for (int i = 0; i < names.size(); i++) {
+			positions.put(names.get(i).trim().toLowerCase(), i);
+		}
+		int[] columns = new int[COLUMNS.length];
+		for (int i = 0; i < COLUMNS.length; i++) {
+			Integer position = positions.get(COLUMNS[i]);
+			if (position == null) {
+				throw new IOException("Missing column " + COLUMNS[i]);
+			}
+			columns[i] = position;
+		}
+		return columns;
+	}
+
+	private static Question toQuestion(List<String> row, int[] columns, int line) throws IOException {
+		if (field(row, columns[NAME]).isEmpty() || field(row, columns[TEXT]).isEmpty()) {
+			throw new IOException("Line " + line + ": quiz_name and question_text are required");
+		}
+		String correct = field(row, columns[CORRECT]).toUpperCase();
+		if (correct.length() != 1 || correct.charAt(0) < 'A' || correct.charAt(0) > 'D') {
+			throw new IOException("Line " + line + ": correct_answer must be A, B, C or D");
+		}
+		return new Question(field(row, columns[TEXT]),
+			field(row, columns[OPTION_A]), field(row, columns[OPTION_A + 1]),
+			field(row, columns[OPTION_A + 2]), field(row, columns[OPTION_A + 3]), correct);
+	}
+
+	private static int timeLimit(List<String> row, int[] columns, int line) throws IOException {
+		try {
+			int seconds = Integer.parseInt(field(row, columns[TIME_LIMIT]));
+			if (seconds > 0) {
+				return seconds;
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new IOException("Line " + line + ": time_limit must be a positive number of seconds");
+	}
+
+	private static String field(List<String> row, int column) {
+		return column < row.size() ? row.get(column).trim() : "";
+	}
+}
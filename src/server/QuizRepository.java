@@ -0,0 +1,109 @@
+package server;
+
+import model.ItemStats;
+import model.Quiz;
+import model.QuizAttempt;
+import model.User;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Storage used by the server: QuizDAO on MySQL, or InMemoryQuizRepository for benches,
+ * load tests and running without a database (-Dquiz.repository=memory).
+ *
+ * Every method declares SQLException so callers handle both the same way. Returned
+ * objects belong to the caller; implementations must not hand out objects they keep.
+ */
+public interface QuizRepository {
+	/**
+	 * Looks a user up for login, including the stored password hash (see PasswordHasher)
+	 */
+	User findUserByUsername(String username) throws SQLException;
+
+	void updatePasswordHash(int userId, String hash) throws SQLException;
+
+	/**
+	 * @return false if the username is taken
+	 */
+	boolean registerUser(User user) throws SQLException;
+
+	/**
+	 * Stores the quiz and its questions atomically; sets and returns the new quiz id
+	 */
+	default int createQuiz(Quiz quiz) throws SQLException {
+		return createQuizzes(Collections.singletonList(quiz))[0];
+	}
+
+	/**
+	 * Stores several quizzes with their questions; either all are created or none is.
+	 * Sets each quiz's id.
+	 *
+	 * @return generated quiz ids, in the same order as the quizzes
+	 */
+	int[] createQuizzes(List<Quiz> quizzes) throws SQLException;
+
+	/**
+	 * Active quizzes without their questions, newest first
+	 */
+	List<Quiz> getActiveQuizzes() throws SQLException;
+
+	/**
+	 * One page of active quizzes, newest first, with ids below afterQuizId (0 = from the top)
+	 */
+	void streamActiveQuizzes(int afterQuizId, int limit, Consumer<Quiz> handler) throws SQLException;
+
+	/**
+	 * A cheap token for the active quiz list (see Protocol.NOT_MODIFIED): it changes whenever
+	 * a quiz is created or deleted, by any writer of the storage, and equal tokens mean the
+	 * same list. Read it before the list, so a change in between makes the next read a miss.
+	 */
+	String getActiveQuizzesVersion() throws SQLException;
+
+	/**
+	 * The quiz with its questions in order, or null
+	 */
+	Quiz getQuizWithQuestions(int quizId) throws SQLException;
+
+	boolean deleteQuiz(int quizId) throws SQLException;
+
+	/**
+	 * @return the new attempt id, or -1
+	 */
+	int saveQuizAttempt(QuizAttempt attempt) throws SQLException;
+
+	/**
+	 * Stores several attempts, with their answers, atomically
+	 *
+	 * @return generated attempt ids, in the same order as the attempts
+	 */
+	int[] saveQuizAttempts(List<QuizAttempt> attempts) throws SQLException;
+
+	/**
+	 * Each student's best attempt (highest score, then fastest), top 10
+	 */
+	List<QuizAttempt> getLeaderboard(int quizId) throws SQLException;
+
+	/**
+	 * A student's attempts, newest first
+	 */
+	List<QuizAttempt> getStudentResults(int studentId) throws SQLException;
+
+	/**
+	 * One page of a student's attempts, newest first, with ids below afterAttemptId (0 = from the top)
+	 */
+	void streamStudentResults(int studentId, int afterAttemptId, int limit, Consumer<QuizAttempt> handler)
+		throws SQLException;
+
+	/**
+	 * Item analysis totals of the quiz's questions; questions nobody has answered may be missing
+	 */
+	List<ItemStats> getItemStats(int quizId) throws SQLException;
+
+	/**
+	 * Adds each entry to the stored totals of its question (see ItemAnalysis)
+	 */
+	void addItemStats(List<ItemStats> increments) throws SQLException;
+}
@@ -1,68 +1,95 @@
 package server;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
 
 public class QuizServer {
-	private static final int PORT = 9999;
-	private ServerSocket serverSocket;
+	private static final Log LOG = Log.get(QuizServer.class);
+
+	private final int port;
+	private final ServerContext context;
+	private ServerTransport transport;
+	private AdminEndpoint adminEndpoint;
 	private boolean running = false;
 
 	public QuizServer() {
-		try {
-			serverSocket = new ServerSocket(PORT);
-			running = true;
-			System.out.println("===========================================");
-			System.out.println("   Quiz Server Started on Port " + PORT);
-			System.out.println("===========================================");
-		} catch (IOException e) {
-			System.err.println("Error starting server: " + e.getMessage());
-			System.exit(1);
-		}
+		this(ServerConfig.PORT);
+	}
+
+	public QuizServer(int port) {
+		this(port, new ServerContext());
+	}
+
+	public QuizServer(int port, ServerContext context) {
+		this.port = port;
+		this.context = context;
 	}
 
 	public void start() {
-		if (!DatabaseConnection.testConnection()) {
-			System.err.println("Failed to connect to database. Please check database configuration.");
-			System.err.println("Make sure MySQL is running and quiz_system database is created.");
+		if (context.getRepository() instanceof QuizDAO && !DatabaseConnection.testConnection()) {
+			LOG.error("Failed to connect to database. Make sure MySQL is running and the quiz_system database is created.");
+			Log.flush();
 			return;
 		}
 
-		System.out.println("Waiting for client connections...\n");
+		transport = createTransport(ServerConfig.MODE, port, context);
+		try {
+			transport.start();
+			running = true;
+		} catch (IOException e) {
+			LOG.error("Error starting server: {}", e.getMessage());
+			Log.flush();
+			System.exit(1);
+		}
 
-		while (running) {
+		context.getMetrics().registerMBeans();
+		if (ServerConfig.ADMIN_PORT > 0) {
+			adminEndpoint = new AdminEndpoint(ServerConfig.ADMIN_PORT, context.getMetrics());
 			try {
-				Socket clientSocket = serverSocket.accept();
-				ClientHandler handler = new ClientHandler(clientSocket);
-				Thread clientThread = new Thread(handler);
-				clientThread.start();
+				adminEndpoint.start();
 			} catch (IOException e) {
-				if (running) {
-					System.err.println("Error accepting connection: " + e.getMessage());
-				}
+				LOG.warn("Admin endpoint not started: {}", e.getMessage());
+				adminEndpoint = null;
 			}
 		}
+
+		LOG.info("Quiz server started port={} mode={} repository={}", port, ServerConfig.MODE,
+			context.getRepository().getClass().getSimpleName());
+	}
+
+	public static ServerTransport createTransport(String mode, int port, ServerContext context) {
+		switch (mode) {
+			case "thread":
+				return new BlockingServerTransport(port, context);
+			case "virtual":
+				return new BlockingServerTransport(port, context, VirtualThreads.factory("quiz-client-"));
+			case "nio":
+				return new NioServerTransport(port, context, ServerConfig.IO_THREADS,
+					ServerConfig.WORKER_THREADS, ServerConfig.WORKER_QUEUE);
+			default:
+				throw new IllegalArgumentException("Unknown server mode: " + mode);
+		}
 	}
 
 	public void stop() {
-		running = false;
-		try {
-			if (serverSocket != null && !serverSocket.isClosed()) {
-				serverSocket.close();
-			}
-			DatabaseConnection.closeConnection();
-			System.out.println("Server stopped.");
-		} catch (IOException e) {
-			System.err.println("Error stopping server: " + e.getMessage());
+		if (running) {
+			running = false;
+			transport.stop();
+		}
+		if (adminEndpoint != null) {
+			adminEndpoint.stop();
 		}
+		context.getMetrics().unregisterMBeans();
+		context.shutdown();
+		DatabaseConnection.closeConnection();
+		LOG.info("Server stopped");
+		Log.flush();
 	}
 
 	public static void main(String[] args) {
 		QuizServer server = new QuizServer();
 
 		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-			System.out.println("\nShutting down server...");
+			LOG.info("Shutting down server");
 			server.stop();
 		}));
 
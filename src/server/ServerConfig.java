@@ -0,0 +1,76 @@
+package server;
+
+/**
+ * Server settings, overridable with -Dquiz.* system properties
+ */
+public final class ServerConfig {
+	private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+	public static final int PORT = Integer.getInteger("quiz.port", 9999);
+
+	// "nio" (selector threads + worker pool), "thread" (one platform thread per connection)
+	// or "virtual" (one virtual thread per connection, JDK 21+)
+	public static final String MODE = System.getProperty("quiz.server.mode", "nio");
+
+	public static final int IO_THREADS = Integer.getInteger("quiz.io.threads", Math.max(1, Math.min(4, CORES / 2)));
+	public static final int WORKER_THREADS = Integer.getInteger("quiz.worker.threads", Math.max(8, CORES * 4));
+	public static final int WORKER_QUEUE = Integer.getInteger("quiz.worker.queue", 10000);
+
+	// Requests one connection may have queued (pipelined) before the server stops reading from it
+	public static final int MAX_PIPELINED = Integer.getInteger("quiz.pipeline.max", 64);
+
+	// Whether clients may negotiate the length-prefixed binary protocol (text is always accepted)
+	public static final boolean BINARY_PROTOCOL = Boolean.parseBoolean(System.getProperty("quiz.protocol.binary", "true"));
+
+	// Whether binary clients may also negotiate compression, the smallest body worth
+	// compressing, and the zlib level (1 = fastest, 9 = smallest)
+	public static final boolean DEFLATE_PROTOCOL = Boolean.parseBoolean(System.getProperty("quiz.protocol.deflate", "true"));
+	public static final int DEFLATE_MIN_BYTES = Integer.getInteger("quiz.deflate.minBytes", 512);
+	public static final int DEFLATE_LEVEL = Integer.getInteger("quiz.deflate.level", 1);
+
+	// Quizzes kept in memory with their questions and encoded QUIZ_DATA response
+	public static final int QUIZ_CACHE_SIZE = Integer.getInteger("quiz.cache.quizzes", 256);
+
+	// Write-behind attempt persistence: queue bound, rows per batch, and how long a
+	// FINISH_QUIZ may wait for queue space before it is rejected
+	public static final int ATTEMPT_QUEUE = Integer.getInteger("quiz.attempts.queue", 5000);
+	public static final int ATTEMPT_BATCH_SIZE = Integer.getInteger("quiz.attempts.batchSize", 200);
+	public static final long ATTEMPT_OFFER_TIMEOUT_MS = Long.getLong("quiz.attempts.offerTimeoutMs", 2000);
+
+	// How often item analysis counts are written to item_stats, and how stale a teacher's
+	// view may get of what other cluster nodes have written
+	public static final long ITEM_ANALYSIS_FLUSH_MS = Long.getLong("quiz.items.flushMs", 10_000);
+
+	// How often subscription changes are coalesced and pushed
+	public static final long PUSH_INTERVAL_MS = Long.getLong("quiz.push.intervalMs", 250);
+	// Pushes a thread-per-connection subscriber may have waiting to be written before it is
+	// disconnected as too slow (NIO connections are bounded by their output buffer instead)
+	public static final int PUSH_QUEUE = Integer.getInteger("quiz.push.queue", 64);
+
+	// Paged responses: largest page a client may ask for, and rows per ROWS frame
+	public static final int PAGE_SIZE_MAX = Integer.getInteger("quiz.page.max", 500);
+	public static final int STREAM_CHUNK_ROWS = Integer.getInteger("quiz.stream.chunkRows", 50);
+
+	// Storage: "mysql" (QuizDAO) or "memory" (InMemoryQuizRepository, lost on restart,
+	// optionally seeded from a QuizImporter CSV file)
+	public static final String REPOSITORY = System.getProperty("quiz.repository", "mysql");
+	public static final String REPOSITORY_SEED = System.getProperty("quiz.repository.seed");
+
+	// Loopback-only port serving plain-text metrics (see AdminEndpoint); 0 disables it
+	public static final int ADMIN_PORT = Integer.getInteger("quiz.admin.port", 9998);
+
+	// How long a session survives its connection dropping, for the client to RESUME it
+	public static final long SESSION_RESUME_WINDOW_MS = Long.getLong("quiz.session.resumeWindowMs", 600_000);
+
+	// Password hashing: PBKDF2 iterations for new hashes, threads and queue bound of the
+	// verification pool, how long a LOGIN waits for it, and how long a verified password is
+	// remembered (0 disables) for how many users
+	public static final int PBKDF2_ITERATIONS = Integer.getInteger("quiz.auth.iterations", 120_000);
+	public static final int AUTH_THREADS = Integer.getInteger("quiz.auth.threads", Math.max(2, CORES / 2));
+	public static final int AUTH_QUEUE = Integer.getInteger("quiz.auth.queue", 256);
+	public static final long AUTH_TIMEOUT_MS = Long.getLong("quiz.auth.timeoutMs", 5000);
+	public static final long AUTH_CACHE_TTL_MS = Long.getLong("quiz.auth.cacheTtlMs", 60_000);
+	public static final int AUTH_CACHE_SIZE = Integer.getInteger("quiz.auth.cacheSize", 10_000);
+
+	private ServerConfig() {}
+}
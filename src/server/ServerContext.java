@@ -0,0 +1,151 @@
+package server;
+
+import model.Quiz;
+import model.User;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.function.ToLongFunction;
+
+/**
+ * Server-wide services shared by every ClientHandler. Given a ClusterBackend, the node
+ * shares sessions and cache changes with the other nodes of a cluster (see ClusterSync).
+ */
+public class ServerContext {
+	private static final Log LOG = Log.get(ServerContext.class);
+
+	private final QuizRepository repository;
+	private final QuizCache quizCache;
+	private final AttemptWriter attemptWriter;
+	private final LeaderboardEngine leaderboards;
+	private final SubscriptionHub subscriptions;
+	private final CredentialService credentials;
+	private final ItemAnalysis itemAnalysis;
+	private final SessionTable sessions = new SessionTable(ServerConfig.SESSION_RESUME_WINDOW_MS);
+	private final Metrics metrics = new Metrics();
+	// Null when running as a single node
+	private final ClusterSync cluster;
+
+	public ServerContext() {
+		this(defaultRepository());
+	}
+
+	public ServerContext(QuizRepository repository) {
+		this(repository, null);
+	}
+
+	public ServerContext(QuizRepository repository, ClusterBackend clusterBackend) {
+		this.repository = repository;
+		this.quizCache = new QuizCache(repository, ServerConfig.QUIZ_CACHE_SIZE);
+		this.attemptWriter = new AttemptWriter(repository, ServerConfig.ATTEMPT_QUEUE,
+			ServerConfig.ATTEMPT_BATCH_SIZE, ServerConfig.ATTEMPT_OFFER_TIMEOUT_MS);
+		this.leaderboards = new LeaderboardEngine(repository, quizCache);
+		this.subscriptions = new SubscriptionHub(leaderboards, ServerConfig.PUSH_INTERVAL_MS);
+		this.credentials = new CredentialService(repository, new PasswordHasher(ServerConfig.PBKDF2_ITERATIONS),
+			ServerConfig.AUTH_THREADS, ServerConfig.AUTH_QUEUE, ServerConfig.AUTH_TIMEOUT_MS,
+			ServerConfig.AUTH_CACHE_TTL_MS, ServerConfig.AUTH_CACHE_SIZE);
+		this.itemAnalysis = new ItemAnalysis(repository, ServerConfig.ITEM_ANALYSIS_FLUSH_MS);
+		attemptWriter.addSaveListener(leaderboards::record);
+		attemptWriter.addSaveListener(subscriptions::attemptSaved);
+		if (clusterBackend != null) {
+			this.cluster = new ClusterSync(clusterBackend, quizCache, leaderboards, itemAnalysis, subscriptions, sessions);
+			attemptWriter.addSaveListener(cluster::attemptSaved);
+		} else {
+			this.cluster = null;
+		}
+
+		metrics.addGauge("quiz_cache_entries", quizCache::size);
+		metrics.addGauge("quiz_cache_hits_total", quizCache::getHits);
+		metrics.addGauge("quiz_cache_misses_total", quizCache::getMisses);
+		metrics.addGauge("quiz_sessions", sessions::size);
+		metrics.addGauge("quiz_deflate_raw_bytes_total", ClientHandler.DEFLATE::getRawBytes);
+		metrics.addGauge("quiz_deflate_encoded_bytes_total", ClientHandler.DEFLATE::getEncodedBytes);
+		metrics.addGauge("quiz_auth_queued", credentials::queuedVerifications);
+		metrics.addGauge("quiz_db_pool_active", () -> poolStat(ConnectionPool.Stats::getActive));
+		metrics.addGauge("quiz_db_pool_idle", () -> poolStat(ConnectionPool.Stats::getIdle));
+		metrics.addGauge("quiz_db_pool_waiting", () -> poolStat(ConnectionPool.Stats::getWaiting));
+	}
+
+	/**
+	 * Call after a quiz has been created; updates caches and subscribers on every node
+	 */
+	public void quizAdded(Quiz quiz, String teacherName) {
+		quizCache.invalidate(quiz.getQuizId());
+		subscriptions.quizAdded(quiz, teacherName);
+		if (cluster != null) {
+			cluster.quizAdded(quiz, teacherName);
+		}
+	}
+
+	/**
+	 * Call after a quiz has been deleted; updates caches and subscribers on every node
+	 */
+	public void quizRemoved(int quizId) {
+		quizCache.invalidate(quizId);
+		leaderboards.invalidate(quizId);
+		itemAnalysis.invalidate(quizId);
+		subscriptions.quizRemoved(quizId);
+		if (cluster != null) {
+			cluster.quizRemoved(quizId);
+		}
+	}
+
+	/**
+	 * MySQL, or with -Dquiz.repository=memory an in-memory store holding the default
+	 * accounts plus the quizzes in -Dquiz.repository.seed (a QuizImporter CSV), if given
+	 */
+	private static QuizRepository defaultRepository() {
+		if (!"memory".equals(ServerConfig.REPOSITORY)) {
+			return new QuizDAO();
+		}
+		InMemoryQuizRepository repository = InMemoryQuizRepository.withDefaultAccounts();
+		if (ServerConfig.REPOSITORY_SEED != null) {
+			Path file = Paths.get(ServerConfig.REPOSITORY_SEED);
+			try {
+				User teacher = repository.findUserByUsername("teacher");
+				QuizImporter importer = new QuizImporter(repository, teacher.getUserId(), 50);
+				importer.validate(file);
+				LOG.info("Seeded in-memory repository quizzes={} file={}", importer.importFile(file), file);
+			} catch (IOException | SQLException | IllegalArgumentException e) {
+				LOG.error("Could not seed in-memory repository from {}: {}", file, e.getMessage());
+			}
+		}
+		return repository;
+	}
+
+	private static long poolStat(ToLongFunction<ConnectionPool.Stats> stat) {
+		ConnectionPool.Stats stats = DatabaseConnection.getPoolStats();
+		return stats == null ? 0 : stat.applyAsLong(stats);
+	}
+
+	/**
+	 * Flushes pending work; call before the database pool is closed
+	 */
+	public void shutdown() {
+		attemptWriter.close();
+		itemAnalysis.shutdown();
+		subscriptions.shutdown();
+		credentials.shutdown();
+		sessions.shutdown();
+		if (cluster != null) {
+			cluster.shutdown();
+		}
+	}
+
+	public QuizRepository getRepository() { return repository; }
+	public QuizCache getQuizCache() { return quizCache; }
+	public AttemptWriter getAttemptWriter() { return attemptWriter; }
+	public LeaderboardEngine getLeaderboards() { return leaderboards; }
+	public SubscriptionHub getSubscriptions() { return subscriptions; }
+	public CredentialService getCredentials() { return credentials; }
+	public ItemAnalysis getItemAnalysis() { return itemAnalysis; }
+	public SessionTable getSessions() { return sessions; }
+
+	/**
+	 * Current version of the active quiz list (see Protocol.NOT_MODIFIED)
+	 */
+	public String getQuizListVersion() throws SQLException { return repository.getActiveQuizzesVersion(); }
+	public Metrics getMetrics() { return metrics; }
+}
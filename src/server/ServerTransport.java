@@ -0,0 +1,12 @@
+package server;
+
+import java.io.IOException;
+
+/**
+ * Accepts client sockets and feeds their protocol lines into ClientHandlers
+ */
+public interface ServerTransport {
+	void start() throws IOException;
+
+	void stop();
+}
@@ -0,0 +1,200 @@
+package server;
+
+import model.User;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Logged-in sessions by token, so a client whose socket drops can RESUME on a new
+ * connection without logging in again or restarting its quiz.
+ *
+ * A session is attached to one connection at a time. When that connection closes the
+ * session is kept for the resume window and then swept; resuming attaches it to the
+ * new connection and closes the old one if it is somehow still open, so the session's
+ * AttemptSession is only ever used by one ClientHandler at a time. Sessions live only
+ * in memory: after a server restart clients have to log in again.
+ *
+ * In a cluster a Replica (ClusterSync) keeps a copy of each session in the shared
+ * backend, so a client that the load balancer sends to another node can resume there.
+ */
+public class SessionTable {
+	private static final Log LOG = Log.get(SessionTable.class);
+	private static final int TOKEN_BYTES = 24;
+
+	/**
+	 * One login: the user, the quiz in progress (if any) and the connection using it
+	 */
+	public static final class Session {
+		private final String token;
+		private final User user;
+		private final AtomicReference<MessageSink> owner;
+		private volatile AttemptSession attempt;
+		// When the owning connection closed; 0 while attached
+		private volatile long detachedAt = 0;
+
+		Session(String token, User user, MessageSink owner) {
+			this.token = token;
+			this.user = user;
+			this.owner = new AtomicReference<>(owner);
+		}
+
+		public String getToken() { return token; }
+		public User getUser() { return user; }
+		public AttemptSession getAttempt() { return attempt; }
+		public void setAttempt(AttemptSession attempt) { this.attempt = attempt; }
+	}
+
+	/**
+	 * Copies sessions to where other nodes can pick them up
+	 */
+	interface Replica {
+		// Called when a session is created, its quiz progress changes, or its connection closes
+		void save(Session session);
+
+		// A session this node does not have, or null; the replica announces the move
+		Session load(String token);
+
+		void remove(Session session);
+	}
+
+	private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+	private volatile Replica replica;
+	private final SecureRandom random = new SecureRandom();
+	private final long resumeWindowMillis;
+	private final ScheduledExecutorService sweeper;
+
+	public SessionTable(long resumeWindowMillis) {
+		this.resumeWindowMillis = resumeWindowMillis;
+		this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "quiz-sessions");
+			t.setDaemon(true);
+			return t;
+		});
+		long period = Math.max(1000, resumeWindowMillis / 4);
+		sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Starts a session for a user who just logged in on the given connection
+	 */
+	public Session create(User user, MessageSink owner) {
+		byte[] bytes = new byte[TOKEN_BYTES];
+		random.nextBytes(bytes);
+		String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+		Session session = new Session(token, user, owner);
+		sessions.put(token, session);
+		changed(session);
+		return session;
+	}
+
+	void setReplica(Replica replica) {
+		this.replica = replica;
+	}
+
+	/**
+	 * Call after changing a session's quiz progress
+	 */
+	public void changed(Session session) {
+		Replica current = replica;
+		if (current != null) {
+			current.save(session);
+		}
+	}
+
+	/**
+	 * Moves a session to a new connection; null if the token is unknown or expired
+	 */
+	public Session resume(String token, MessageSink owner) {
+		if (token == null) {
+			return null;
+		}
+		Session session = sessions.get(token);
+		Replica current = replica;
+		if (session == null && current != null) {
+			session = current.load(token);
+		}
+		if (session == null || isExpired(session, System.currentTimeMillis())) {
+			return null;
+		}
+		MessageSink previous = session.owner.getAndSet(owner);
+		session.detachedAt = 0;
+		// The sweeper may have just removed it
+		sessions.putIfAbsent(token, session);
+		if (previous != null && previous != owner) {
+			// A half-open socket the client has given up on
+			previous.close();
+		}
+		return session;
+	}
+
+	/**
+	 * Called when a connection closes; the session stays resumable for the resume window
+	 */
+	public void detach(Session session, MessageSink owner) {
+		if (session.owner.compareAndSet(owner, null)) {
+			session.detachedAt = System.currentTimeMillis();
+			changed(session);
+		}
+	}
+
+	/**
+	 * Drops the local copy of a session that another node has taken over
+	 */
+	void evict(String token) {
+		Session session = sessions.remove(token);
+		if (session != null) {
+			MessageSink previous = session.owner.getAndSet(null);
+			if (previous != null) {
+				previous.close();
+			}
+		}
+	}
+
+	/**
+	 * Ends a session for good (explicit DISCONNECT)
+	 */
+	public void remove(Session session) {
+		sessions.remove(session.token, session);
+		Replica current = replica;
+		if (current != null) {
+			current.remove(session);
+		}
+	}
+
+	public int size() {
+		return sessions.size();
+	}
+
+	public void shutdown() {
+		sweeper.shutdownNow();
+	}
+
+	private boolean isExpired(Session session, long now) {
+		long detachedAt = session.detachedAt;
+		return detachedAt != 0 && now - detachedAt > resumeWindowMillis;
+	}
+
+	private void sweep() {
+		long now = System.currentTimeMillis();
+		int swept = 0;
+		for (Session session : sessions.values()) {
+			if (isExpired(session, now) && sessions.remove(session.token, session)) {
+				Replica current = replica;
+				if (current != null) {
+					current.remove(session);
+				}
+				swept++;
+			}
+		}
+		if (swept > 0) {
+			LOG.debug("Expired {} sessions", swept);
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package server;
+
+import common.Message;
+import common.Protocol;
+import model.Quiz;
+import model.QuizAttempt;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes quiz list and leaderboard changes to subscribed connections.
+ *
+ * Events only record what changed. A publisher thread turns everything that changed
+ * during one interval into a single delta per topic, encodes it once (shared message)
+ * and hands the same bytes to every subscriber, so a burst of FINISH_QUIZ during a
+ * live exam costs one push per interval rather than one write per attempt per viewer.
+ *
+ * Deltas are sent untagged (request id 0):
+ *   QUIZ_LIST_DELTA|||row...          rows are (+, id, name, teacher, questions, timeLimit) or (-, id)
+ *   LEADERBOARD_DELTA|||quizId|||size|||row...   rows are (rank, name, score, total, percentage, time)
+ *                                               for each rank whose entry changed; size is the new length
+ */
+public class SubscriptionHub {
+	private static final Log LOG = Log.get(SubscriptionHub.class);
+
+	private static final String ADDED = "+";
+	private static final String REMOVED = "-";
+
+	private final LeaderboardEngine leaderboards;
+	private final Set<MessageSink> quizListSubscribers = ConcurrentHashMap.newKeySet();
+	private final Map<Integer, Set<MessageSink>> leaderboardSubscribers = new ConcurrentHashMap<>();
+
+	// Quiz list changes since the last publish, by quiz id so an add and a delete cancel out
+	private final Map<Integer, Message.Row> pendingQuizChanges = new LinkedHashMap<>();
+	private final ReentrantLock pendingLock = new ReentrantLock();
+	private final Set<Integer> dirtyLeaderboards = ConcurrentHashMap.newKeySet();
+	// The board as last pushed, which subscribers' tables currently show
+	private final Map<Integer, List<QuizAttempt>> published = new ConcurrentHashMap<>();
+
+	private final ScheduledExecutorService publisher;
+
+	public SubscriptionHub(LeaderboardEngine leaderboards, long intervalMillis) {
+		this.leaderboards = leaderboards;
+		this.publisher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "quiz-push");
+			t.setDaemon(true);
+			return t;
+		});
+		publisher.scheduleWithFixedDelay(this::publish, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public void subscribeQuizzes(MessageSink sink) {
+		quizListSubscribers.add(sink);
+	}
+
+	public void unsubscribeQuizzes(MessageSink sink) {
+		quizListSubscribers.remove(sink);
+	}
+
+	/**
+	 * Call after sending the subscriber its snapshot; later deltas apply on top of it
+	 */
+	public void subscribeLeaderboard(int quizId, List<QuizAttempt> snapshot, MessageSink sink) {
+		published.putIfAbsent(quizId, snapshot);
+		// Added inside compute so it cannot land in a set that unsubscribe has just dropped
+		leaderboardSubscribers.compute(quizId, (id, sinks) -> {
+			if (sinks == null) {
+				sinks = ConcurrentHashMap.newKeySet();
+			}
+			sinks.add(sink);
+			return sinks;
+		});
+	}
+
+	public void unsubscribeLeaderboard(int quizId, MessageSink sink) {
+		Set<MessageSink> remaining = leaderboardSubscribers.computeIfPresent(quizId, (id, sinks) -> {
+			sinks.remove(sink);
+			return sinks.isEmpty() ? null : sinks;
+		});
+		if (remaining == null) {
+			published.remove(quizId);
+		}
+	}
+
+	public void unsubscribeAll(MessageSink sink) {
+		quizListSubscribers.remove(sink);
+		for (Integer quizId : leaderboardSubscribers.keySet()) {
+			unsubscribeLeaderboard(quizId, sink);
+		}
+	}
+
+	public void quizAdded(Quiz quiz, String teacherName) {
+		pendingLock.lock();
+		try {
+			pendingQuizChanges.put(quiz.getQuizId(), new Message.Row(ADDED, quiz.getQuizId(), quiz.getQuizName(),
+				teacherName, quiz.getTotalQuestions(), quiz.getTimeLimit()));
+		} finally {
+			pendingLock.unlock();
+		}
+	}
+
+	public void quizRemoved(int quizId) {
+		pendingLock.lock();
+		try {
+			Message.Row previous = pendingQuizChanges.remove(quizId);
+			if (previous == null || !ADDED.equals(previous.getString(0))) {
+				pendingQuizChanges.put(quizId, new Message.Row(REMOVED, quizId));
+			}
+		} finally {
+			pendingLock.unlock();
+		}
+		dirtyLeaderboards.remove(quizId);
+		leaderboardSubscribers.remove(quizId);
+		published.remove(quizId);
+	}
+
+	/**
+	 * Save listener for AttemptWriter; registered after LeaderboardEngine.record
+	 */
+	public void attemptSaved(QuizAttempt attempt) {
+		if (leaderboardSubscribers.containsKey(attempt.getQuizId())) {
+			dirtyLeaderboards.add(attempt.getQuizId());
+		}
+	}
+
+	public void shutdown() {
+		publisher.shutdownNow();
+	}
+
+	private void publish() {
+		try {
+			publishQuizList();
+			for (Integer quizId : new ArrayList<>(dirtyLeaderboards)) {
+				dirtyLeaderboards.remove(quizId);
+				publishLeaderboard(quizId);
+			}
+		} catch (Exception e) {
+			// Keep the publisher alive; the next change publishes again
+			LOG.warn("Push failed", e);
+		}
+	}
+
+	private void publishQuizList() {
+		List<Message.Row> changes;
+		pendingLock.lock();
+		try {
+			if (pendingQuizChanges.isEmpty()) {
+				return;
+			}
+			changes = new ArrayList<>(pendingQuizChanges.values());
+			pendingQuizChanges.clear();
+		} finally {
+			pendingLock.unlock();
+		}
+		if (quizListSubscribers.isEmpty()) {
+			return;
+		}
+
+		Message delta = new Message(Protocol.QUIZ_LIST_DELTA);
+		for (Message.Row change : changes) {
+			delta.add(change);
+		}
+		fanOut(delta.share(), quizListSubscribers);
+	}
+
+	private void publishLeaderboard(int quizId) throws SQLException {
+		Set<MessageSink> sinks = leaderboardSubscribers.get(quizId);
+		if (sinks == null || sinks.isEmpty()) {
+			published.remove(quizId);
+			return;
+		}
+		List<QuizAttempt> current = leaderboards.get(quizId);
+		List<QuizAttempt> previous = published.getOrDefault(quizId, Collections.emptyList());
+		published.put(quizId, current);
+
+		Message delta = new Message(Protocol.LEADERBOARD_DELTA).add(quizId).add(current.size());
+		boolean changed = current.size() != previous.size();
+		for (int i = 0; i < current.size(); i++) {
+			QuizAttempt attempt = current.get(i);
+			if (i >= previous.size() || previous.get(i).getAttemptId() != attempt.getAttemptId()) {
+				delta.addRow(i + 1, attempt.getStudentName(), attempt.getScore(), attempt.getTotalQuestions(),
+					String.format("%.2f", attempt.getPercentage()), attempt.getTimeTaken());
+				changed = true;
+			}
+		}
+		if (changed) {
+			fanOut(delta.share(), sinks);
+		}
+	}
+
+	private static void fanOut(Message delta, Set<MessageSink> sinks) {
+		for (MessageSink sink : sinks) {
+			sink.push(delta);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to JDK 21 virtual threads while the code base still compiles for Java 11.
+ * The builder API is looked up reflectively once; on older JDKs isSupported() is false.
+ */
+public final class VirtualThreads {
+	private static final Method OF_VIRTUAL;
+	private static final Method NAME;
+	private static final Method FACTORY;
+
+	static {
+		Method ofVirtual = null;
+		Method name = null;
+		Method factory = null;
+		try {
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			name = builder.getMethod("name", String.class, long.class);
+			factory = builder.getMethod("factory");
+		} catch (ReflectiveOperationException e) {
+			// JDK < 21: virtual threads are not available
+		}
+		OF_VIRTUAL = ofVirtual;
+		NAME = name;
+		FACTORY = factory;
+	}
+
+	private VirtualThreads() {}
+
+	public static boolean isSupported() {
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * A factory for virtual threads named prefix0, prefix1, ...
+	 *
+	 * @throws UnsupportedOperationException when running on a JDK without virtual threads
+	 */
+	public static ThreadFactory factory(String prefix) {
+		if (!isSupported()) {
+			throw new UnsupportedOperationException("Virtual threads need JDK 21 or newer (running "
+				+ System.getProperty("java.version") + ")");
+		}
+		try {
+			Object builder = OF_VIRTUAL.invoke(null);
+			builder = NAME.invoke(builder, prefix, 0L);
+			return (ThreadFactory) FACTORY.invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Could not create virtual thread factory", e);
+		}
+	}
+}